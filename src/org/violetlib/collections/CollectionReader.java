@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.violetlib.collections.impl.CollectionReaderImpl;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Reads collections written by a {@link CollectionWriter}. The collections must be read in the order in which they
+  were written, using the same kinds of element codecs.
+  <p>
+  Trees are rebuilt directly from their nodes, without adding elements one at a time. Nodes that were shared by the
+  collections when they were written are shared by the collections that are read. A reader is not thread safe.
+  <p>
+  A hash trie map is stored with the hash codes of its keys. If the hash code of a key that is read differs from the
+  stored hash code, as it may for keys that use identity hash codes, the map (and every hash trie map read after it
+  from the same stream) is rebuilt using the current hash codes, and does not share structure with other maps.
+*/
+
+public interface CollectionReader
+  extends Closeable
+{
+    /**
+      Create a reader. The stream header is read immediately.
+      @param in The stream.
+      @throws IOException if the stream does not start with a valid header.
+    */
+
+    static @NotNull CollectionReader create(@NotNull InputStream in)
+      throws IOException
+    {
+        return CollectionReaderImpl.create(in);
+    }
+
+    /**
+      Read a list.
+      @param codec The codec used to read the elements.
+      @throws IOException if the next collection in the stream is not a list.
+    */
+
+    <V> @NotNull IList<V> readList(@NotNull ElementCodec<? extends V> codec)
+      throws IOException;
+
+    /**
+      Read a set.
+      @param codec The codec used to read the elements.
+      @throws IOException if the next collection in the stream is not a set.
+    */
+
+    <V> @NotNull ISet<V> readSet(@NotNull ElementCodec<? extends V> codec)
+      throws IOException;
+
+    /**
+      Read a map.
+      @param keyCodec The codec used to read the keys.
+      @param valueCodec The codec used to read the values.
+      @throws IOException if the next collection in the stream is not a map.
+    */
+
+    <K,V> @NotNull IMap<K,V> readMap(@NotNull ElementCodec<? extends K> keyCodec,
+                                     @NotNull ElementCodec<? extends V> valueCodec)
+      throws IOException;
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.violetlib.collections.impl.CollectionWriterImpl;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Writes collections to a stream using a compact binary format, which can be read using a {@link CollectionReader}.
+  <p>
+  Lists implemented as RRB trees and maps implemented as hash tries are written node by node. A node that has already
+  been written to the stream, as part of the same collection or an earlier one, is written as a reference to the
+  earlier node. Writing several versions of a persistent collection therefore writes the structure they share only
+  once, and reading them restores the sharing. Other collections are written as a sequence of elements or bindings.
+  A hash trie map is written with the hash codes of its keys; the sharing is restored only if the keys have the same
+  hash codes when they are read. Strings and boxed integers satisfy this requirement.
+  <p>
+  The elements, keys, and values are written using element codecs supplied by the caller. A writer is not thread
+  safe.
+*/
+
+public interface CollectionWriter
+  extends Closeable
+{
+    /**
+      Create a writer. The stream header is written immediately.
+      @param out The stream.
+    */
+
+    static @NotNull CollectionWriter create(@NotNull OutputStream out)
+      throws IOException
+    {
+        return CollectionWriterImpl.create(out);
+    }
+
+    /**
+      Write a list.
+      @param list The list.
+      @param codec The codec used to write the elements.
+    */
+
+    <V> void writeList(@NotNull IList<V> list, @NotNull ElementCodec<? super V> codec)
+      throws IOException;
+
+    /**
+      Write a set.
+      @param set The set.
+      @param codec The codec used to write the elements.
+    */
+
+    <V> void writeSet(@NotNull ISet<V> set, @NotNull ElementCodec<? super V> codec)
+      throws IOException;
+
+    /**
+      Write a map.
+      @param map The map.
+      @param keyCodec The codec used to write the keys.
+      @param valueCodec The codec used to write the values.
+    */
+
+    <K,V> void writeMap(@NotNull IMap<K,V> map,
+                        @NotNull ElementCodec<? super K> keyCodec,
+                        @NotNull ElementCodec<? super V> valueCodec)
+      throws IOException;
+
+    /**
+      Write any buffered data to the stream.
+    */
+
+    void flush()
+      throws IOException;
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.jetbrains.annotations.*;
+
+/**
+  Writes and reads the elements, keys, or values of collections using a binary encoding.
+
+  @param <T> The type of the elements.
+  @see CollectionWriter
+  @see CollectionReader
+*/
+
+public interface ElementCodec<T>
+{
+    /**
+      A codec for strings. A string is encoded as its length in bytes followed by its UTF-8 encoding.
+    */
+
+    @NotNull ElementCodec<String> STRING = new ElementCodec<String>()
+    {
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull String value)
+          throws IOException
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public @NotNull String read(@NotNull DataInput in)
+          throws IOException
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+      A codec for integers.
+    */
+
+    @NotNull ElementCodec<Integer> INTEGER = new ElementCodec<Integer>()
+    {
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull Integer value)
+          throws IOException
+        {
+            out.writeInt(value);
+        }
+
+        @Override
+        public @NotNull Integer read(@NotNull DataInput in)
+          throws IOException
+        {
+            return in.readInt();
+        }
+    };
+
+    /**
+      A codec for long integers.
+    */
+
+    @NotNull ElementCodec<Long> LONG = new ElementCodec<Long>()
+    {
+        @Override
+        public void write(@NotNull DataOutput out, @NotNull Long value)
+          throws IOException
+        {
+            out.writeLong(value);
+        }
+
+        @Override
+        public @NotNull Long read(@NotNull DataInput in)
+          throws IOException
+        {
+            return in.readLong();
+        }
+    };
+
+    /**
+      Write an element.
+    */
+
+    void write(@NotNull DataOutput out, @NotNull T value)
+      throws IOException;
+
+    /**
+      Read an element written by {@link #write}.
+      @return the element, which must not be null.
+    */
+
+    @NotNull T read(@NotNull DataInput in)
+      throws IOException;
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An estimate of the memory used by the internal representation of one or more collections. An object that is shared
+  by several collections, or reachable by several paths, is counted once.
+  <p>
+  The estimate includes the objects and arrays that implement the collections, such as tree nodes, list nodes, hash
+  buckets, and size tables. It does not include the elements, keys, and values, unless they are themselves
+  collections implemented by this library. The sizes of objects are estimated using a typical object layout: a 12 byte
+  object header, 4 byte object references, and 8 byte alignment.
+
+  @see ICollections#footprint
+*/
+
+public @Immutable interface Footprint
+{
+    /**
+      Return the number of root collections.
+    */
+
+    int getRootCount();
+
+    /**
+      Return the estimated number of bytes used by all of the root collections together.
+    */
+
+    long getTotalBytes();
+
+    /**
+      Return the estimated number of bytes used by one root collection, as if the other roots did not exist.
+      @param index The index of the root collection.
+      @throws IndexOutOfBoundsException if {@code index} is not a valid root index.
+    */
+
+    long getRetainedBytes(int index)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return the estimated number of bytes used by objects that are reachable from more than one root collection. It is
+      the difference between the sum of the retained sizes of the roots and the total size.
+    */
+
+    long getSharedBytes();
+
+    /**
+      Return the number of objects counted in the total size.
+    */
+
+    int getObjectCount();
+
+    /**
+      Return the estimated number of bytes used by the instances of each representation. The keys are the names of the
+      implementation classes; array types are identified by their element types, for example {@code Object[]}.
+    */
+
+    @NotNull IMap<String,Long> getBytesByRepresentation();
+
+    /**
+      Return the number of instances of each representation.
+    */
+
+    @NotNull IMap<String,Integer> getCountsByRepresentation();
+}
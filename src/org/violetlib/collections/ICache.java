@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import javax.annotation.CheckReturnValue;
+
+import org.violetlib.collections.impl.CacheImpl;
+import org.violetlib.types.Option;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An immutable cache: a map with a bounded number of bindings. When a binding is added to a full cache, the binding
+  selected by the eviction policy is removed. The {@link #LRU} policy evicts the binding that was least recently used.
+  The {@link #LFU} policy evicts the binding that was least frequently used, breaking ties by recency.
+  <p>
+  A cache is a persistent value: an operation that uses or updates a binding returns a new cache, leaving the original
+  cache unchanged. Lookup, use and update take time logarithmic in the capacity of the cache. A cache also records
+  the number of uses that found a binding (hits), the number that did not (misses), and the number of evictions. To
+  share a cache between threads, use an {@link ICacheRef}.
+  <p>
+  Null keys and values are not permitted.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public @Immutable @CheckReturnValue interface ICache<K,V>
+{
+    @NotNull Option LRU = Option.named("Least recently used");
+    @NotNull Option LFU = Option.named("Least frequently used");
+
+    /**
+      Return an empty cache that uses the least recently used eviction policy.
+      @param capacity The maximum number of bindings.
+      @throws IllegalArgumentException if {@code capacity} is not positive.
+    */
+
+    static <K,V> @NotNull ICache<K,V> create(int capacity)
+    {
+        return CacheImpl.create(capacity, false);
+    }
+
+    /**
+      Return an empty cache.
+      @param capacity The maximum number of bindings.
+      @param policy The eviction policy, either {@link #LRU} or {@link #LFU}.
+      @throws IllegalArgumentException if {@code capacity} is not positive.
+    */
+
+    static <K,V> @NotNull ICache<K,V> create(int capacity, @NotNull Option policy)
+    {
+        return CacheImpl.create(capacity, policy == LFU);
+    }
+
+    /**
+      Return the maximum number of bindings.
+    */
+
+    int capacity();
+
+    /**
+      Return true if and only if the cache contains no bindings.
+    */
+
+    boolean isEmpty();
+
+    /**
+      Return the number of bindings.
+    */
+
+    int size();
+
+    /**
+      Return the value associated with the specified key. This method does not count as a use of the binding.
+      @param key The key.
+      @return the value associated with {@code key}, or null if none.
+    */
+
+    @Nullable V get(@NotNull K key);
+
+    boolean containsKey(@NotNull K key);
+
+    /**
+      Return a cache that records a use of the specified key. If the key is bound, the use is counted as a hit and the
+      binding becomes the most recently used. Otherwise, the use is counted as a miss.
+      @param key The key.
+      @return the updated cache.
+    */
+
+    @NotNull ICache<K,V> touching(@NotNull K key);
+
+    /**
+      Return a cache with a possibly updated binding for the specified key. Replacing the value of an existing binding
+      counts as a use of the binding, but not as a hit. Adding a binding to a full cache evicts a binding.
+
+      @param key The key whose value is specified.
+      @param value The value to be associated with {@code key}. If null, the returned cache will have no binding for
+      {@code key}.
+      @return the updated cache.
+    */
+
+    @NotNull ICache<K,V> extending(@NotNull K key, @Nullable V value);
+
+    /**
+      Return the bindings of the cache as a map.
+    */
+
+    @NotNull IMap<K,V> asMap();
+
+    /**
+      Return the number of uses of a key that found a binding.
+    */
+
+    long getHitCount();
+
+    /**
+      Return the number of uses of a key that did not find a binding.
+    */
+
+    long getMissCount();
+
+    /**
+      Return the number of bindings that have been evicted to make room for new bindings.
+    */
+
+    long getEvictionCount();
+}
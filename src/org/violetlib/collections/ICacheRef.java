@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.util.function.Function;
+
+import org.violetlib.collections.impl.CacheRefImpl;
+import org.violetlib.types.Option;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A cell containing an immutable cache, which allows the cache to be shared between threads without locking. Each
+  operation computes a new cache from the current cache and installs it using an atomic compare-and-set operation. The
+  current cache can be obtained using {@link #get()}; it is a consistent snapshot.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public interface ICacheRef<K,V>
+  extends IRef<ICache<K,V>>
+{
+    /**
+      Create a cell containing an empty cache that uses the least recently used eviction policy.
+      @param capacity The maximum number of bindings.
+      @throws IllegalArgumentException if {@code capacity} is not positive.
+    */
+
+    static <K,V> @NotNull ICacheRef<K,V> create(int capacity)
+    {
+        return CacheRefImpl.create(ICache.create(capacity));
+    }
+
+    /**
+      Create a cell containing an empty cache.
+      @param capacity The maximum number of bindings.
+      @param policy The eviction policy, either {@link ICache#LRU} or {@link ICache#LFU}.
+      @throws IllegalArgumentException if {@code capacity} is not positive.
+    */
+
+    static <K,V> @NotNull ICacheRef<K,V> create(int capacity, @NotNull Option policy)
+    {
+        return CacheRefImpl.create(ICache.create(capacity, policy));
+    }
+
+    /**
+      Create a cell containing the specified cache.
+    */
+
+    static <K,V> @NotNull ICacheRef<K,V> create(@NotNull ICache<K,V> cache)
+    {
+        return CacheRefImpl.create(cache);
+    }
+
+    /**
+      Return the value currently bound to a key and record the use of the key.
+      @param key The key.
+      @return the value, or null if none.
+    */
+
+    @Nullable V get(@NotNull K key);
+
+    /**
+      Return the value currently bound to a key, binding the key if it is not currently bound. The use of the key is
+      recorded.
+      @param key The key.
+      @param f Called with the key to obtain the value. The function may be called more than once. It must not return
+      null.
+      @return the value bound to the key.
+    */
+
+    @NotNull V computeIfAbsent(@NotNull K key, @NotNull Function<@NotNull K,@NotNull V> f);
+
+    /**
+      Bind a key to a value.
+      @param key The key.
+      @param value The value.
+      @return the value previously bound to the key, or null if none.
+    */
+
+    @Nullable V put(@NotNull K key, @NotNull V value);
+
+    /**
+      Remove the binding of a key.
+      @param key The key.
+      @return the value previously bound to the key, or null if none.
+    */
+
+    @Nullable V remove(@NotNull K key);
+}
@@ -236,6 +236,23 @@ public @CheckReturnValue interface ICollection<V>
 
     default <E> @NotNull E[] toJavaArray(@NotNull E[] template)
     {
-        return toJavaList().toArray(template);
+        int size = size();
+        @SuppressWarnings("unchecked")
+        E[] a = template.length >= size
+          ? template
+          : (E[]) java.lang.reflect.Array.newInstance(template.getClass().getComponentType(), size);
+        IIterator<V> it = iterator();
+        int count = 0;
+        while (count < size) {
+            int n = it.nextBatch(a, count, size - count);
+            if (n == 0) {
+                break;
+            }
+            count += n;
+        }
+        if (a.length > count) {
+            a[count] = null;
+        }
+        return a;
     }
 }
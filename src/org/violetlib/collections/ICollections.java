@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import org.violetlib.collections.impl.FootprintEstimator;
+import org.violetlib.collections.impl.InternPool;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Operations that apply to immutable collections of all kinds.
+  <p>
+  The intern operations canonicalize immutable collections: equal collections are replaced by a single shared instance.
+  An application that holds many equal collections can use interning to reduce its memory use. Interned collections
+  that are equal are identical, which allows the equality test to succeed without examining the elements.
+  <p>
+  Interning is opt-in. The pool of canonical instances uses weak references, so it does not prevent unused collections
+  from being collected. The hash code of a collection is computed when it is interned; collection implementations that
+  cache their hash codes make interning the same instance again inexpensive. Only immutable collections whose elements
+  are immutable should be interned.
+  <p>
+  The footprint operation estimates the memory used by the internal representation of collections, taking account of
+  the structure that they share.
+*/
+
+public final @NoInstances class ICollections
+{
+    private ICollections()
+    {
+        throw new AssertionError("ICollections may not be instantiated");
+    }
+
+    private static final @NotNull InternPool<Object> POOL = InternPool.create();
+
+    /**
+      Return the canonical instance of a list.
+      @param list The list.
+      @return a list equal to {@code list}, which is the same instance for all equal lists.
+    */
+
+    public static <V> @NotNull IList<V> intern(@NotNull IList<V> list)
+    {
+        return (IList<V>) POOL.intern(list);
+    }
+
+    /**
+      Return the canonical instance of a set.
+      @param set The set.
+      @return a set equal to {@code set}, which is the same instance for all equal sets.
+    */
+
+    public static <V> @NotNull ISet<V> intern(@NotNull ISet<V> set)
+    {
+        return (ISet<V>) POOL.intern(set);
+    }
+
+    /**
+      Return the canonical instance of a map.
+      @param map The map.
+      @return a map equal to {@code map}, which is the same instance for all equal maps.
+    */
+
+    public static <K,V> @NotNull IMap<K,V> intern(@NotNull IMap<K,V> map)
+    {
+        return (IMap<K,V>) POOL.intern(map);
+    }
+
+    /**
+      Return the number of intern operations that returned an existing canonical instance.
+    */
+
+    public static long getInternHitCount()
+    {
+        return POOL.getHitCount();
+    }
+
+    /**
+      Return the number of intern operations that installed a new canonical instance.
+    */
+
+    public static long getInternMissCount()
+    {
+        return POOL.getMissCount();
+    }
+
+    /**
+      Return the number of canonical instances currently held by the intern pool.
+    */
+
+    public static int getInternPoolSize()
+    {
+        return POOL.size();
+    }
+
+    /**
+      Estimate the memory used by the internal representation of one or more collections. Objects shared by several
+      collections are counted once in the total, so the footprint of two versions of a collection shows how much of
+      their structure is shared. The estimate is computed by traversing the representation, using typical object layout
+      sizes; it does not require instrumentation. The time required is proportional to the size of the representation.
+      @param roots The collections.
+      @return the estimate.
+    */
+
+    public static @NotNull Footprint footprint(@NotNull Object @NotNull ... roots)
+    {
+        return FootprintEstimator.estimate(roots);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.util.function.BinaryOperator;
+import javax.annotation.CheckReturnValue;
+
+import org.violetlib.collections.impl.IntMapImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An immutable map whose keys are int values. The keys are not boxed. Null values are not permitted.
+  <p>
+  The bindings are visited in increasing key order. Operations that extend a map share structure with the original
+  map.
+
+  @param <V> The type of the values.
+*/
+
+public @Immutable @CheckReturnValue interface IIntMap<V>
+{
+    interface Visitor<V>
+    {
+        void visit(int key, @NotNull V value);
+    }
+
+    interface FVisitor<V,R>
+    {
+        @Nullable R visit(int key, @NotNull V value);
+    }
+
+    /**
+      Return a map containing no bindings.
+    */
+
+    static <V> @NotNull IIntMap<V> empty()
+    {
+        return IntMapImpl.empty();
+    }
+
+    /**
+      Return a map containing one binding.
+    */
+
+    static <V> @NotNull IIntMap<V> singleton(int key, @NotNull V value)
+    {
+        return IntMapImpl.<V>empty().extending(key, value);
+    }
+
+    /**
+      Return a new map builder.
+    */
+
+    static <V> @NotNull IntMapBuilder<V> builder()
+    {
+        return IntMapImpl.builder();
+    }
+
+    /**
+      Indicate whether this map is empty.
+      @return true if and only if this map contains no bindings.
+    */
+
+    boolean isEmpty();
+
+    /**
+      Return the number of bindings in this map.
+    */
+
+    int size();
+
+    /**
+      Return the value bound to a key.
+      @param key The key.
+      @return the associated value, or null if none.
+    */
+
+    @Nullable V get(int key);
+
+    /**
+      Indicate whether a key is bound in this map.
+      @param key The key.
+      @return true if and only if this map contains a binding for the key.
+    */
+
+    boolean containsKey(int key);
+
+    /**
+      Return the smallest key in this map.
+      @throws IllegalStateException if this map is empty.
+    */
+
+    int firstKey()
+      throws IllegalStateException;
+
+    /**
+      Return the largest key in this map.
+      @throws IllegalStateException if this map is empty.
+    */
+
+    int lastKey()
+      throws IllegalStateException;
+
+    /**
+      Visit the bindings of this map in increasing key order.
+    */
+
+    void visit(@NotNull Visitor<V> visitor);
+
+    /**
+      Visit the bindings of this map in increasing key order until the visitor returns a non-null result.
+      @return the first non-null result returned by the visitor, or {@code defaultResult} if none.
+    */
+
+    <R> @Nullable R find(@NotNull FVisitor<V,R> visitor, @Nullable R defaultResult);
+
+    /**
+      Return a map that extends this map with the specified binding.
+      @param key The key.
+      @param value The value. If null, any existing binding for the key is removed.
+      @return the new map.
+    */
+
+    @NotNull IIntMap<V> extending(int key, @Nullable V value);
+
+    /**
+      Return a map that extends this map with the specified bindings. If a key is bound in both maps, the binding in
+      {@code bindings} is used.
+      @param bindings The bindings to add.
+      @return the new map.
+    */
+
+    @NotNull IIntMap<V> extending(@NotNull IIntMap<V> bindings);
+
+    /**
+      Return a map that contains the bindings of this map and another map.
+      @param other The other map.
+      @param combiner Called to obtain the value for a key that is bound in both maps. The value from this map is the
+      first argument. The combiner must not return null.
+      @return the merged map.
+    */
+
+    @NotNull IIntMap<V> merge(@NotNull IIntMap<V> other, @NotNull BinaryOperator<V> combiner);
+
+    /**
+      Return a map with the same bindings as this map that implements {@link IMap}. The keys are boxed on demand.
+      Lookups do not modify this map.
+    */
+
+    @NotNull IMap<Integer,V> asMap();
+}
@@ -55,4 +55,29 @@ public interface IIterator<E>
 
     @Override
     @NotNull E next();
+
+    /**
+      Transfer the next elements of the iteration into an array. This method allows an iterator over a collection
+      whose elements are stored in arrays to transfer elements in blocks rather than one element at a time.
+      @param dest The array to receive the elements.
+      @param offset The index in {@code dest} where the first element is stored.
+      @param max The maximum number of elements to transfer.
+      @return the number of elements transferred. If {@code max} is positive, zero is returned only if the iteration
+      has no more elements.
+      @throws IndexOutOfBoundsException if {@code offset} or {@code max} is negative or the designated range exceeds
+      the bounds of {@code dest}.
+    */
+
+    default int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+    {
+        if (offset < 0 || max < 0 || offset > dest.length - max) {
+            throw new IndexOutOfBoundsException();
+        }
+        int count = 0;
+        while (count < max && hasNext()) {
+            dest[offset + count] = next();
+            count++;
+        }
+        return count;
+    }
 }
@@ -9,13 +9,19 @@
 package org.violetlib.collections;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collector;
 import javax.annotation.CheckReturnValue;
 
 import org.violetlib.collections.impl.Impl;
 import org.violetlib.collections.impl.ListBuilderImpl;
+import org.violetlib.collections.impl.ListDiff;
+import org.violetlib.collections.impl.ListImplSupport;
+import org.violetlib.collections.impl.ListSearch;
 import org.violetlib.collections.impl.ListSliceImpl;
+import org.violetlib.collections.impl.ListViewImpl;
+import org.violetlib.collections.impl.ParallelListSupport;
 import org.violetlib.collections.impl.RRBList;
 import org.violetlib.types.Option;
 
@@ -34,6 +40,7 @@ public @Immutable @CheckReturnValue interface IList<V>
   extends ICollection<V>, Iterable<V>
 {
     @NotNull Option NO_DUPLICATES = Option.named("No duplicates list");
+    @NotNull Option CONCURRENT = Option.named("Concurrent list builder");
 
     /**
       Return a list containing no elements.
@@ -84,12 +91,18 @@ public @Immutable @CheckReturnValue interface IList<V>
 
     /**
       Return a new list builder.
-      @option If the option is {@link #NO_DUPLICATES}, the returned list builder will ignore duplicate elements.
+      @option If the option is {@link #NO_DUPLICATES}, the returned list builder will ignore duplicate elements. If
+      the option is {@link #CONCURRENT}, the returned list builder may be used by multiple threads concurrently; the
+      elements added by each thread appear in the order they were added, but the elements added by different threads
+      may be interleaved in any order.
       @return the list builder.
     */
 
     static <V> @NotNull ListBuilder<V> builder(@Nullable Option option)
     {
+        if (option == CONCURRENT) {
+            return Impl.getConcurrentListBuilder();
+        }
         return option == NO_DUPLICATES ? ListBuilderImpl.create(false) : ListBuilderImpl.create(true);
     }
 
@@ -580,6 +593,19 @@ public @Immutable @CheckReturnValue interface IList<V>
         return ListSliceImpl.create(this, start, end);
     }
 
+    /**
+      Return a lazy view of the elements of this list. Operations on the view, such as map and filter, are deferred
+      until a terminal operation is performed, at which time all of the stages are performed in a single traversal of
+      this list without creating intermediate lists.
+      <p>
+      The view holds a strong reference to this list.
+    */
+
+    default @NotNull IListView<V> view()
+    {
+        return ListViewImpl.create(this);
+    }
+
     /**
       Return a list containing the same elements as this list, but in the reverse order.
       <p>
@@ -702,6 +728,117 @@ public @Immutable @CheckReturnValue interface IList<V>
 
     <R> @NotNull IList<R> mapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper);
 
+    /**
+      Return a list containing the result of applying a mapper to each list element. The mapper calls are performed in
+      parallel using the common fork/join pool.
+      @param mapper Maps elements of the list to elements of the result. The mapper must not return null. It may be
+      called concurrently on multiple threads, in no particular order.
+      @return a list containing the results of the mapper calls.
+    */
+
+    default <R> @NotNull IList<R> parallelMap(@NotNull Function<@NotNull V,@NotNull R> mapper)
+    {
+        return parallelMap(mapper, ForkJoinPool.commonPool());
+    }
+
+    /**
+      Return a list containing the result of applying a mapper to each list element. The mapper calls are performed in
+      parallel using the specified fork/join pool.
+      @param mapper Maps elements of the list to elements of the result. The mapper must not return null. It may be
+      called concurrently on multiple threads, in no particular order.
+      @param pool The pool used to perform the mapper calls.
+      @return a list containing the results of the mapper calls.
+    */
+
+    default <R> @NotNull IList<R> parallelMap(@NotNull Function<@NotNull V,@NotNull R> mapper,
+                                              @NotNull ForkJoinPool pool)
+    {
+        return ParallelListSupport.map(this, mapper, pool);
+    }
+
+    /**
+      Return a list containing the result of applying a mapper to each list element. The mapper calls are performed in
+      parallel using the common fork/join pool.
+      @param mapper Maps elements of the list to elements of the result. If the mapper returns null, no element is
+      added to the result. The mapper may be called concurrently on multiple threads, in no particular order.
+      @return a list containing the non-null results of the mapper calls, in the order of the corresponding elements.
+    */
+
+    default <R> @NotNull IList<R> parallelMapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper)
+    {
+        return parallelMapFilter(mapper, ForkJoinPool.commonPool());
+    }
+
+    /**
+      Return a list containing the result of applying a mapper to each list element. The mapper calls are performed in
+      parallel using the specified fork/join pool.
+      @param mapper Maps elements of the list to elements of the result. If the mapper returns null, no element is
+      added to the result. The mapper may be called concurrently on multiple threads, in no particular order.
+      @param pool The pool used to perform the mapper calls.
+      @return a list containing the non-null results of the mapper calls, in the order of the corresponding elements.
+    */
+
+    default <R> @NotNull IList<R> parallelMapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper,
+                                                    @NotNull ForkJoinPool pool)
+    {
+        return ParallelListSupport.mapFilter(this, mapper, pool);
+    }
+
+    /**
+      Visit each element of the list in parallel using the common fork/join pool.
+      @param visitor The visitor to call on the list elements. It may be called concurrently on multiple threads, in no
+      particular order.
+    */
+
+    default void parallelVisit(@NotNull Visitor<V> visitor)
+    {
+        parallelVisit(visitor, ForkJoinPool.commonPool());
+    }
+
+    /**
+      Visit each element of the list in parallel using the specified fork/join pool.
+      @param visitor The visitor to call on the list elements. It may be called concurrently on multiple threads, in no
+      particular order.
+      @param pool The pool used to perform the visitor calls.
+    */
+
+    default void parallelVisit(@NotNull Visitor<V> visitor, @NotNull ForkJoinPool pool)
+    {
+        //noinspection ResultOfMethodCallIgnored
+        parallelFind(ListImplSupport.toFindVisitor(visitor), pool);
+    }
+
+    /**
+      Visit the elements of the list in parallel using the common fork/join pool until the visitor returns a non-null
+      result.
+      @param visitor The visitor to call on the list elements. It may be called concurrently on multiple threads, in no
+      particular order. Once a result has been found, the visitor is not called on elements that follow the element
+      that produced the result, but it may be called on other elements.
+      @return the non-null result returned by the visitor for the first element (in list order) for which the visitor
+      returned a non-null result, or null if none.
+    */
+
+    default <R> @Nullable R parallelFind(@NotNull FindVisitor<V,R> visitor)
+    {
+        return parallelFind(visitor, ForkJoinPool.commonPool());
+    }
+
+    /**
+      Visit the elements of the list in parallel using the specified fork/join pool until the visitor returns a
+      non-null result.
+      @param visitor The visitor to call on the list elements. It may be called concurrently on multiple threads, in no
+      particular order. Once a result has been found, the visitor is not called on elements that follow the element
+      that produced the result, but it may be called on other elements.
+      @param pool The pool used to perform the visitor calls.
+      @return the non-null result returned by the visitor for the first element (in list order) for which the visitor
+      returned a non-null result, or null if none.
+    */
+
+    default <R> @Nullable R parallelFind(@NotNull FindVisitor<V,R> visitor, @NotNull ForkJoinPool pool)
+    {
+        return ParallelListSupport.find(this, visitor, pool);
+    }
+
     /**
       Return a list containing the same elements as this list, but in the reverse order.
     */
@@ -731,6 +868,67 @@ public @Immutable @CheckReturnValue interface IList<V>
 
     @NotNull IList<V> sort(@NotNull Comparator<? super V> c);
 
+    /**
+      Search this list for an element using binary search. The list must be sorted using the specified comparator;
+      otherwise, the result is undefined. If this list is an RRB list, the search descends the tree directly.
+
+      @param key The value to search for.
+      @param c The comparator used to sort this list.
+      @return the index of an element that compares equal to {@code key}, if there is one; otherwise,
+      {@code (-(insertion point) - 1)}, where the insertion point is the value that would be returned by
+      {@link #lowerBound}.
+    */
+
+    default int binarySearch(@NotNull V key, @NotNull Comparator<? super V> c)
+    {
+        return ListSearch.binarySearch(this, key, c);
+    }
+
+    /**
+      Return the index of the first element that does not compare less than the specified value. The list must be
+      sorted using the specified comparator; otherwise, the result is undefined.
+
+      @param key The value.
+      @param c The comparator used to sort this list.
+      @return the index of the first element that is greater than or equal to {@code key}, or the size of the list if
+      there is no such element.
+    */
+
+    default int lowerBound(@NotNull V key, @NotNull Comparator<? super V> c)
+    {
+        return ListSearch.lowerBound(this, key, c);
+    }
+
+    /**
+      Return the index of the first element that compares greater than the specified value. The list must be sorted
+      using the specified comparator; otherwise, the result is undefined.
+
+      @param key The value.
+      @param c The comparator used to sort this list.
+      @return the index of the first element that is greater than {@code key}, or the size of the list if there is no
+      such element.
+    */
+
+    default int upperBound(@NotNull V key, @NotNull Comparator<? super V> c)
+    {
+        return ListSearch.upperBound(this, key, c);
+    }
+
+    /**
+      Merge this list with another list. Both lists must be sorted using the specified comparator. The merge is
+      stable: elements of this list precede equal elements of the other list. If the lists do not overlap, the result
+      is created by concatenation.
+
+      @param other The other list.
+      @param c The comparator used to sort both lists.
+      @return a sorted list containing the elements of both lists.
+    */
+
+    default @NotNull IList<V> mergeSorted(@NotNull IList<? extends V> other, @NotNull Comparator<? super V> c)
+    {
+        return ListSearch.mergeSorted(this, other, c);
+    }
+
     /**
       Return a list with a new value for the specified element.
 
@@ -794,6 +992,35 @@ public @Immutable @CheckReturnValue interface IList<V>
         return replacingAll(position, 0, values);
     }
 
+    /**
+      Return a patch that transforms this list into another list. The patch contains a minimal or nearly minimal
+      sequence of edits. If both lists are RRB lists, elements in subtrees shared by the two lists are not examined, so
+      comparing two versions of a large list that differ by a few edits is fast.
+
+      @param other The other list.
+      @return a patch that, when applied to this list, produces a list equal to {@code other}.
+    */
+
+    default @NotNull ListPatch<V> diff(@NotNull IList<V> other)
+    {
+        return ListDiff.diff(this, other);
+    }
+
+    /**
+      Return a list created by applying a patch to this list. The edits are applied using {@link #replacingAll}; if this
+      list is an RRB list, each edit takes logarithmic time.
+
+      @param patch The patch.
+      @return a list as described.
+      @throws IllegalArgumentException if the patch applies to a list of a different size.
+    */
+
+    default @NotNull IList<V> applyPatch(@NotNull ListPatch<? extends V> patch)
+      throws IllegalArgumentException
+    {
+        return ListDiff.apply(this, patch);
+    }
+
     @Override
     default Spliterator<V> spliterator() {
         return Spliterators.spliterator(iterator(), size(), IMMUTABLE | NONNULL | SIZED | ORDERED);
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import javax.annotation.CheckReturnValue;
+
+import org.violetlib.collections.impl.ListMultimapImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An immutable multimap that associates a list of values with each key. A value may appear more than once in the list
+  associated with a key. Added values are appended to the end of the list.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public @Immutable @CheckReturnValue interface IListMultimap<K,V>
+  extends IMultimap<K,V>
+{
+    /**
+      Return a multimap containing no values.
+    */
+
+    static <K,V> @NotNull IListMultimap<K,V> empty()
+    {
+        return ListMultimapImpl.empty();
+    }
+
+    /**
+      Return a multimap that associates the lists of values in a map with the corresponding keys.
+      @param map The map. Keys bound to empty lists are ignored.
+    */
+
+    static <K,V> @NotNull IListMultimap<K,V> create(@NotNull IMap<K,IList<V>> map)
+    {
+        return ListMultimapImpl.create(map);
+    }
+
+    @Override
+    @NotNull IList<V> get(@NotNull K key);
+
+    @Override
+    @NotNull IListMultimap<K,V> put(@NotNull K key, @NotNull V value);
+
+    @Override
+    @NotNull IListMultimap<K,V> putAll(@NotNull K key, @NotNull ICollection<? extends V> values);
+
+    /**
+      Return a multimap with all instances of a value removed from the list associated with a key.
+      @param key The key.
+      @param value The value to remove.
+      @return the new multimap, or this multimap if the value is not associated with the key.
+    */
+
+    @Override
+    @NotNull IListMultimap<K,V> remove(@NotNull K key, @NotNull Object value);
+
+    @Override
+    @NotNull IListMultimap<K,V> removeAll(@NotNull K key);
+
+    @Override
+    @NotNull IMap<K,IList<V>> asMap();
+}
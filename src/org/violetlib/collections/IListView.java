@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  A lazy view of the elements of a list, obtained by calling {@link IList#view}.
+  <p>
+  Intermediate operations, such as {@link #map} and {@link #filter}, return a new view without examining any elements.
+  The accumulated stages are fused and performed in a single traversal of the source list when a terminal operation,
+  such as {@link #toList} or {@link #find}, is invoked. No intermediate lists are created. Terminal operations that can
+  stop early, such as {@link #find} and {@link #optionalFirst}, examine only as many source elements as needed.
+  <p>
+  A view does not copy the source list. Each terminal operation performs a new traversal, so the functions supplied to
+  intermediate operations may be called more than once for the same source element if a view is used more than once.
+
+  @param <V> The type of the elements.
+*/
+
+public @Immutable interface IListView<V>
+  extends IIterable<V>
+{
+    /**
+      Return a view that applies a mapper to each element of this view.
+      @param mapper Maps elements of this view to elements of the result. The mapper must not return null.
+    */
+
+    <R> @NotNull IListView<R> map(@NotNull Function<@NotNull V,@NotNull R> mapper);
+
+    /**
+      Return a view that applies a mapper to each element of this view.
+      @param mapper Maps elements of this view to elements of the result. If the mapper returns null, no element is
+      included in the result.
+    */
+
+    <R> @NotNull IListView<R> mapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper);
+
+    /**
+      Return a view containing the elements of this view that satisfy a predicate.
+      @param predicate The predicate.
+    */
+
+    @NotNull IListView<V> filter(@NotNull Predicate<? super V> predicate);
+
+    /**
+      Return a view containing at most the specified number of initial elements of this view.
+      @param count The maximum number of elements.
+      @throws IllegalArgumentException if {@code count} is negative.
+    */
+
+    @NotNull IListView<V> limit(int count)
+      throws IllegalArgumentException;
+
+    /**
+      Return a view that omits the specified number of initial elements of this view.
+      @param count The number of elements to omit.
+      @throws IllegalArgumentException if {@code count} is negative.
+    */
+
+    @NotNull IListView<V> skip(int count)
+      throws IllegalArgumentException;
+
+    /**
+      Return a view containing the elements of this view in the reverse order.
+      If this view has no stages other than map, mapFilter, and filter, the reversal is performed by traversing the
+      source list in the reverse order. Otherwise, this view is materialized.
+    */
+
+    @NotNull IListView<V> reverse();
+
+    /**
+      Return a list containing the elements of this view.
+      If this view has no map, mapFilter, or filter stages, the list is obtained from the source list using {@link
+      IList#getElements}, which may share structure with the source list.
+    */
+
+    @NotNull IList<V> toList();
+
+    /**
+      Visit each element of this view in order.
+      @param visitor The visitor to call on the elements.
+    */
+
+    void visit(@NotNull Visitor<V> visitor);
+
+    /**
+      Visit the elements of this view in order until the visitor returns a non-null result.
+      @param visitor The visitor to call on the elements.
+      @return the first non-null result returned by the visitor, or null if none.
+    */
+
+    <R> @Nullable R find(@NotNull FindVisitor<V,R> visitor);
+
+    /**
+      Return the first element of this view.
+      @return the first element, or null if this view is empty.
+    */
+
+    @Nullable V optionalFirst();
+
+    /**
+      Indicate whether this view is empty.
+      @return true if and only if this view contains no elements.
+    */
+
+    default boolean isEmpty()
+    {
+        return optionalFirst() == null;
+    }
+
+    /**
+      Return the number of elements in this view.
+    */
+
+    int count();
+
+    /**
+      Return an iterator over the elements of this view. The stages are performed as the iterator advances.
+    */
+
+    @Override
+    @NotNull IIterator<V> iterator();
+}
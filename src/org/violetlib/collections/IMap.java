@@ -10,10 +10,12 @@ package org.violetlib.collections;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 import javax.annotation.CheckReturnValue;
 
 import org.violetlib.collections.impl.EmptyMap;
 import org.violetlib.collections.impl.Impl;
+import org.violetlib.collections.impl.MapDiff;
 import org.violetlib.types.Option;
 import org.violetlib.types.UndefinedValueError;
 
@@ -31,6 +33,10 @@ public @Immutable @CheckReturnValue interface IMap<K,V>
   extends IIterable<Binding<K,V>>
 {
     @NotNull Option ORDERED = Option.named("Ordered Map");
+    @NotNull Option FROZEN = Option.named("Frozen Map");
+    @NotNull Option CONCURRENT = Option.named("Concurrent map builder");
+    @NotNull Option MEMOIZE = Option.named("Memoized mapped map");
+    @NotNull Option EAGER = Option.named("Eager mapped map");
 
     interface Visitor<K,V>
     {
@@ -42,6 +48,31 @@ public @Immutable @CheckReturnValue interface IMap<K,V>
         @Nullable R visit(@NotNull K key, @NotNull V element);
     }
 
+    /**
+      Receives the differences between two maps.
+    */
+
+    interface DiffListener<K,V>
+    {
+        /**
+          Called for a binding whose key is present only in the second map.
+        */
+
+        void added(@NotNull K key, @NotNull V value);
+
+        /**
+          Called for a binding whose key is present only in the first map.
+        */
+
+        void removed(@NotNull K key, @NotNull V value);
+
+        /**
+          Called for a key whose values in the two maps are not equal.
+        */
+
+        void changed(@NotNull K key, @NotNull V oldValue, @NotNull V newValue);
+    }
+
     /**
       Return a map containing no bindings.
     */
@@ -81,12 +112,23 @@ public @Immutable @CheckReturnValue interface IMap<K,V>
     /**
       Return a new map builder.
       @param option If option is {@link #ORDERED}, the iteration order of the map will be based on the order in which
-      the keys were first added.
+      the keys were first added. If option is {@link #FROZEN}, the map will use a compact representation that is
+      optimized for lookup. Such a map is best suited for a map that is read many times and rarely or never extended.
+      If option is {@link #CONCURRENT}, the builder may be used by multiple threads concurrently.
     */
 
     static <K,V> @NotNull MapBuilder<K,V> builder(@NotNull Option option)
     {
-        return option == ORDERED ? Impl.getOrderedMapBuilder() : Impl.getMapBuilder();
+        if (option == ORDERED) {
+            return Impl.getOrderedMapBuilder();
+        }
+        if (option == FROZEN) {
+            return Impl.getFrozenMapBuilder();
+        }
+        if (option == CONCURRENT) {
+            return Impl.getConcurrentMapBuilder();
+        }
+        return Impl.getMapBuilder();
     }
 
     /**
@@ -101,11 +143,15 @@ public @Immutable @CheckReturnValue interface IMap<K,V>
     /**
       Return a new map list builder.
       @param option If option is {@link #ORDERED}, the iteration order of the map list will be based on the order in
-      which keys and elements were first added.
+      which keys and elements were first added. If option is {@link #CONCURRENT}, the builder may be used by multiple
+      threads concurrently.
     */
 
     static <K,V> @NotNull MapListBuilder<K,V> mapListBuilder(@NotNull Option option)
     {
+        if (option == CONCURRENT) {
+            return Impl.getConcurrentMapListBuilder();
+        }
         return option == ORDERED ? Impl.getOrderedMapListBuilder() : Impl.getMapListBuilder();
     }
 
@@ -138,8 +184,23 @@ public @Immutable @CheckReturnValue interface IMap<K,V>
         return Impl.createMap(map);
     }
 
+    /**
+      Return a map containing the specified bindings using a compact representation that is optimized for lookup.
+      Such a map is best suited for a map that is read many times and rarely or never extended.
+    */
+
+    static <K,V> @NotNull IMap<K,V> createFrozen(@NotNull Map<? extends K,? extends V> map)
+    {
+        return Impl.createFrozenMap(map);
+    }
+
     /**
       Return a map containing the specified bindings using weak references to the keys.
+      <p>
+      The binding of a key disappears from the map when the key is collected. Because bindings may disappear at any
+      time, the {@code size} of the map is computed by counting the remaining bindings, which takes time proportional to
+      the number of entries, and {@code isEmpty} may examine the entries of collected keys that have not yet been
+      purged.
     */
 
     static <K,V> @NotNull IMap<K,V> createWeak(@NotNull Map<? extends K,? extends V> map)
@@ -235,6 +296,53 @@ public @Immutable @CheckReturnValue interface IMap<K,V>
         return b.value();
     }
 
+    /**
+      Return a virtual map whose values are obtained by applying a function to the values of this map. The function is
+      applied each time a value is accessed.
+      @param mapper The function. If it returns null for a value, the corresponding key is not a key of the returned
+      map.
+    */
+
+    default <R> @NotNull IMap<K,R> mapValues(@NotNull Function<? super V,? extends R> mapper)
+    {
+        return Impl.createMappedMap(this, mapper::apply, false);
+    }
+
+    /**
+      Return a map whose values are obtained by applying a function to the values of this map.
+      @param mapper The function. If it returns null for a value, the corresponding key is not a key of the returned
+      map.
+      @param option If option is {@link #MEMOIZE}, the returned map is a virtual map that applies the function at most
+      once for each key, when the value is first needed, and retains the result. Such a map is best suited for an
+      expensive function whose results are read repeatedly. If option is {@link #EAGER}, the function is applied to
+      every value before this method returns, and the returned map contains the results. If this map is a hash map or
+      array map, as created by {@link #create} and by map builders, or a hash trie map, the returned map shares the
+      structure of this map, so the keys are not rehashed; the bindings of other maps are copied into a new map. For
+      any other option, the returned map is a virtual map that applies the function each time a value is accessed.
+    */
+
+    default <R> @NotNull IMap<K,R> mapValues(@NotNull Function<? super V,? extends R> mapper, @NotNull Option option)
+    {
+        if (option == EAGER) {
+            return Impl.createMaterializedMappedMap(this, mapper::apply);
+        }
+        return Impl.createMappedMap(this, mapper::apply, option == MEMOIZE);
+    }
+
+    /**
+      Report the differences between this map and another map, in an unspecified order. If both maps are hash tries,
+      subtries shared by the two maps are skipped, so the cost of comparing two versions of a large map is proportional
+      to the number of changed bindings.
+      @param other The other map.
+      @param listener The listener that receives the bindings that are added, removed, or changed in {@code other},
+      relative to this map.
+    */
+
+    default void diff(@NotNull IMap<K,V> other, @NotNull DiffListener<? super K,? super V> listener)
+    {
+        MapDiff.diff(this, other, listener);
+    }
+
     /**
       Return a new Java map containing the bindings of this map.
     */
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.violetlib.collections.impl.MapRefImpl;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A cell containing an immutable map, with operations that update the binding of a single key. The map is initially
+  represented using a hash trie, so that each update attempt creates only the nodes on the path to one key. A retried
+  update therefore costs little more than a lookup.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public interface IMapRef<K,V>
+  extends IRef<IMap<K,V>>
+{
+    /**
+      Create a cell containing an empty map.
+    */
+
+    static <K,V> @NotNull IMapRef<K,V> create()
+    {
+        return MapRefImpl.create(IMap.empty());
+    }
+
+    /**
+      Create a cell containing the bindings of the specified map.
+    */
+
+    static <K,V> @NotNull IMapRef<K,V> create(@NotNull IMap<K,V> map)
+    {
+        return MapRefImpl.create(map);
+    }
+
+    /**
+      Return the value currently bound to a key.
+      @param key The key.
+      @return the value, or null if none.
+    */
+
+    @Nullable V get(@NotNull K key);
+
+    /**
+      Update the binding of a key.
+      @param key The key.
+      @param f Called with the key and the currently bound value (or null) to obtain the new value. A null result
+      removes the binding. The function may be called more than once.
+      @return the new value, or null if the key is not bound.
+    */
+
+    @Nullable V compute(@NotNull K key, @NotNull BiFunction<@NotNull K,@Nullable V,@Nullable V> f);
+
+    /**
+      Bind a key to a value if the key is not currently bound.
+      @param key The key.
+      @param f Called with the key to obtain the value. The function may be called more than once. It must not return
+      null.
+      @return the value bound to the key.
+    */
+
+    @NotNull V computeIfAbsent(@NotNull K key, @NotNull Function<@NotNull K,@NotNull V> f);
+
+    /**
+      Bind a key to a value.
+      @param key The key.
+      @param value The value.
+      @return the value previously bound to the key, or null if none.
+    */
+
+    @Nullable V put(@NotNull K key, @NotNull V value);
+
+    /**
+      Remove the binding of a key.
+      @param key The key.
+      @return the value previously bound to the key, or null if none.
+    */
+
+    @Nullable V remove(@NotNull K key);
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import javax.annotation.CheckReturnValue;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An immutable map from keys to collections of values. A key is present only if it has at least one associated value.
+  Null keys and values are not permitted.
+  <p>
+  Operations that add or remove values return a new multimap that shares structure with the original multimap. The
+  cost of adding or removing the values of one key is logarithmic in the number of keys. The number of keys and the
+  total number of values are available in constant time.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+  @see IListMultimap
+  @see ISetMultimap
+*/
+
+public @Immutable @CheckReturnValue interface IMultimap<K,V>
+{
+    /**
+      Indicate whether this multimap is empty.
+      @return true if and only if this multimap contains no values.
+    */
+
+    boolean isEmpty();
+
+    /**
+      Return the number of keys that have associated values.
+    */
+
+    int keyCount();
+
+    /**
+      Return the total number of values associated with all keys.
+    */
+
+    int size();
+
+    /**
+      Indicate whether a key has associated values.
+      @param key The key.
+      @return true if and only if at least one value is associated with the key.
+    */
+
+    boolean containsKey(@NotNull Object key);
+
+    /**
+      Return the values associated with a key.
+      @param key The key.
+      @return the values, which are empty if no values are associated with the key.
+    */
+
+    @NotNull ICollection<V> get(@NotNull K key);
+
+    /**
+      Return the keys that have associated values.
+    */
+
+    @NotNull ISet<K> keySet();
+
+    /**
+      Return a multimap that associates an additional value with a key.
+      @param key The key.
+      @param value The value.
+      @return the new multimap.
+    */
+
+    @NotNull IMultimap<K,V> put(@NotNull K key, @NotNull V value);
+
+    /**
+      Return a multimap that associates additional values with a key.
+      @param key The key.
+      @param values The values.
+      @return the new multimap.
+    */
+
+    @NotNull IMultimap<K,V> putAll(@NotNull K key, @NotNull ICollection<? extends V> values);
+
+    /**
+      Return a multimap with a value removed from the values associated with a key.
+      @param key The key.
+      @param value The value to remove.
+      @return the new multimap, or this multimap if the value is not associated with the key.
+    */
+
+    @NotNull IMultimap<K,V> remove(@NotNull K key, @NotNull Object value);
+
+    /**
+      Return a multimap with all values associated with a key removed.
+      @param key The key.
+      @return the new multimap, or this multimap if no values are associated with the key.
+    */
+
+    @NotNull IMultimap<K,V> removeAll(@NotNull K key);
+
+    /**
+      Visit each key and value pair. The values associated with one key are visited consecutively.
+    */
+
+    void visit(@NotNull IMap.Visitor<K,V> visitor);
+
+    /**
+      Return a map from each key to its associated values. The map shares structure with this multimap.
+    */
+
+    @NotNull IMap<K,? extends ICollection<V>> asMap();
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.util.function.UnaryOperator;
+
+import org.violetlib.collections.impl.RefImpl;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A mutable cell containing a reference to a value, typically an immutable collection, that can be shared between
+  threads without locking. Updates are performed by computing a new value from the current value and installing it
+  using an atomic compare-and-set operation. If another thread installs a value first, the update is retried after an
+  exponentially increasing delay.
+  <p>
+  Because an update function may be called more than once for a single update, it should have no side effects. The
+  cell records the number of successful updates and the number of retries, which can be used to identify cells that are
+  subject to heavy contention.
+
+  @param <T> The type of the value.
+*/
+
+public interface IRef<T>
+{
+    /**
+      Create a cell.
+      @param value The initial value.
+    */
+
+    static <T> @NotNull IRef<T> create(@NotNull T value)
+    {
+        return RefImpl.create(value);
+    }
+
+    /**
+      Return the current value.
+    */
+
+    @NotNull T get();
+
+    /**
+      Replace the current value.
+      @param value The new value.
+    */
+
+    void set(@NotNull T value);
+
+    /**
+      Replace the current value if it is the expected value. Values are compared by identity.
+      @param expected The expected value.
+      @param value The new value.
+      @return true if and only if the value was replaced.
+    */
+
+    boolean compareAndSet(@NotNull T expected, @NotNull T value);
+
+    /**
+      Replace the current value with the result of applying a function to the current value.
+      @param f The function. It may be called more than once. It must not return null.
+      @return the new value.
+    */
+
+    @NotNull T update(@NotNull UnaryOperator<T> f);
+
+    /**
+      Replace the current value with the result of applying a function to the current value.
+      @param f The function. It may be called more than once. It must not return null.
+      @return the value that was replaced.
+    */
+
+    @NotNull T getAndUpdate(@NotNull UnaryOperator<T> f);
+
+    /**
+      Return the number of values installed by the update operations of this cell.
+    */
+
+    long getUpdateCount();
+
+    /**
+      Return the number of times that an update operation of this cell was retried because another thread changed the
+      value.
+    */
+
+    long getRetryCount();
+}
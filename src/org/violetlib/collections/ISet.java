@@ -16,6 +16,7 @@ import java.util.function.Predicate;
 import javax.annotation.CheckReturnValue;
 
 import org.violetlib.collections.impl.Impl;
+import org.violetlib.collections.impl.MapDiff;
 import org.violetlib.types.Option;
 
 import org.jetbrains.annotations.*;
@@ -31,6 +32,7 @@ public @Immutable @CheckReturnValue interface ISet<V>
   extends ICollection<V>, IIterable<V>
 {
     @NotNull Option ORDERED = Option.named("Ordered Set");
+    @NotNull Option CONCURRENT = Option.named("Concurrent set builder");
 
     /**
       Return an empty set.
@@ -96,11 +98,15 @@ public @Immutable @CheckReturnValue interface ISet<V>
 
       @return the builder.
       @param <V> The type of set elements.
-      @param option
+      @param option If option is {@link #CONCURRENT}, the returned builder may be used by multiple threads
+      concurrently, and the iteration order of the set is unspecified.
     */
 
     static <V> @NotNull SetBuilder<V> builder(Option option)
     {
+        if (option == CONCURRENT) {
+            return Impl.getConcurrentSetBuilder();
+        }
         return option == ORDERED ? Impl.getOrderedSetBuilder() : Impl.getSetBuilder();
     }
 
@@ -247,6 +253,19 @@ public @Immutable @CheckReturnValue interface ISet<V>
         return b.values();
     }
 
+    /**
+      Return the differences between this set and another set. If both sets are hash tries, subtries shared by the two
+      sets are skipped, so the cost of comparing two versions of a large set is proportional to the number of changed
+      elements.
+      @param other The other set.
+      @return the elements that are added and removed in {@code other}, relative to this set.
+    */
+
+    default @NotNull SetDiff<V> diff(@NotNull ISet<V> other)
+    {
+        return MapDiff.diff(this, other);
+    }
+
     default @NotNull ISet<V> intersecting(@NotNull ISet<?> other)
     {
         return intersection(this, other);
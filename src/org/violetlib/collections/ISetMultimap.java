@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import javax.annotation.CheckReturnValue;
+
+import org.violetlib.collections.impl.SetMultimapImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An immutable multimap that associates a set of values with each key. Adding a value that is already associated with
+  a key has no effect.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public @Immutable @CheckReturnValue interface ISetMultimap<K,V>
+  extends IMultimap<K,V>
+{
+    /**
+      Return a multimap containing no values.
+    */
+
+    static <K,V> @NotNull ISetMultimap<K,V> empty()
+    {
+        return SetMultimapImpl.empty();
+    }
+
+    /**
+      Return a multimap that associates the sets of values in a map with the corresponding keys.
+      @param map The map. Keys bound to empty sets are ignored.
+    */
+
+    static <K,V> @NotNull ISetMultimap<K,V> create(@NotNull IMap<K,ISet<V>> map)
+    {
+        return SetMultimapImpl.create(map);
+    }
+
+    /**
+      Indicate whether a value is associated with a key.
+      @param key The key.
+      @param value The value.
+      @return true if and only if the value is a member of the set associated with the key.
+    */
+
+    boolean contains(@NotNull K key, @NotNull Object value);
+
+    @Override
+    @NotNull ISet<V> get(@NotNull K key);
+
+    @Override
+    @NotNull ISetMultimap<K,V> put(@NotNull K key, @NotNull V value);
+
+    @Override
+    @NotNull ISetMultimap<K,V> putAll(@NotNull K key, @NotNull ICollection<? extends V> values);
+
+    @Override
+    @NotNull ISetMultimap<K,V> remove(@NotNull K key, @NotNull Object value);
+
+    @Override
+    @NotNull ISetMultimap<K,V> removeAll(@NotNull K key);
+
+    @Override
+    @NotNull IMap<K,ISet<V>> asMap();
+}
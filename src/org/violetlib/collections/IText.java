@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.io.Reader;
+import javax.annotation.CheckReturnValue;
+
+import org.violetlib.collections.impl.TextImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An immutable sequence of characters that supports efficient editing of large texts.
+  <p>
+  A text is represented as a balanced tree whose leaves are arrays of characters. Inserting, removing, and replacing
+  characters, obtaining a subsequence, and concatenating texts take logarithmic time; the result shares most of its
+  structure with the original texts. Each node records the number of line separators that it contains, so that
+  converting between lines and character offsets also takes logarithmic time. A line separator is a line feed
+  character.
+  <p>
+  Two texts are equal if they contain the same characters. The hash code of a text is the hash code of the equivalent
+  string.
+*/
+
+public @Immutable @CheckReturnValue interface IText
+  extends CharSequence
+{
+    /**
+      Return a text containing no characters.
+    */
+
+    static @NotNull IText empty()
+    {
+        return TextImpl.empty();
+    }
+
+    /**
+      Return a text containing the specified characters.
+      @param s The characters. If {@code s} is a text, it is returned.
+    */
+
+    static @NotNull IText of(@NotNull CharSequence s)
+    {
+        return TextImpl.create(s);
+    }
+
+    /**
+      Return true if this text contains no characters.
+    */
+
+    boolean isEmpty();
+
+    /**
+      Return a subsequence of this text.
+      @param start The offset of the first character of the subsequence.
+      @param end The offset following the last character of the subsequence.
+      @return a text containing the specified characters.
+      @throws IndexOutOfBoundsException if {@code start} or {@code end} is out of range, or {@code start} is greater
+      than {@code end}.
+    */
+
+    @Override
+    @NotNull IText subSequence(int start, int end)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return a text with additional characters added at the end.
+      @param s The characters to be appended.
+    */
+
+    @NotNull IText appending(@NotNull CharSequence s);
+
+    /**
+      Return a text with additional characters added at the beginning.
+      @param s The characters to be prepended.
+    */
+
+    @NotNull IText prepending(@NotNull CharSequence s);
+
+    /**
+      Return a text with additional characters inserted.
+      @param index The offset at which the characters are inserted.
+      @param s The characters to be inserted.
+      @throws IndexOutOfBoundsException if {@code index} is less than zero or greater than the length of this text.
+    */
+
+    @NotNull IText inserting(int index, @NotNull CharSequence s)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return a text with characters removed.
+      @param index The offset of the first character to remove.
+      @param count The number of characters to remove.
+      @throws IndexOutOfBoundsException if the specified characters are not all present in this text.
+    */
+
+    @NotNull IText removing(int index, int count)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return a text with characters replaced.
+      @param index The offset of the first character to replace.
+      @param count The number of characters to replace.
+      @param s The replacement characters.
+      @throws IndexOutOfBoundsException if the specified characters are not all present in this text.
+    */
+
+    @NotNull IText replacing(int index, int count, @NotNull CharSequence s)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return the number of lines in this text, which is one more than the number of line separators.
+    */
+
+    int getLineCount();
+
+    /**
+      Return the offset of the first character of a line.
+      @param line The line index.
+      @throws IndexOutOfBoundsException if {@code line} does not identify a line of this text.
+    */
+
+    int getLineStart(int line)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return the index of the line containing a character.
+      @param index The offset of the character. The length of this text is also accepted, identifying the last line.
+      @throws IndexOutOfBoundsException if {@code index} is less than zero or greater than the length of this text.
+    */
+
+    int getLineIndex(int index)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return a line of this text, excluding its line separator.
+      @param line The line index.
+      @throws IndexOutOfBoundsException if {@code line} does not identify a line of this text.
+    */
+
+    @NotNull IText getLine(int line)
+      throws IndexOutOfBoundsException;
+
+    /**
+      Return a view of this text that is optimized for sequential access, such as by a regular expression matcher or a
+      parser. The view remembers the most recently accessed leaf, so that accessing nearby characters does not search
+      the tree. The view is not thread safe.
+    */
+
+    @NotNull CharSequence asCharSequence();
+
+    /**
+      Return a reader that reads the characters of this text without copying them into a single array.
+    */
+
+    @NotNull Reader asReader();
+}
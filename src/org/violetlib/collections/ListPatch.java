@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import org.violetlib.collections.impl.ListPatchImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  A description of the changes that transform one list into another. A patch is created by {@link IList#diff} and
+  applied by {@link IList#applyPatch}.
+  <p>
+  A patch is a sequence of edits, ordered by their positions in the source list. Each edit replaces a range of elements
+  of the source list with zero or more new elements. The ranges do not overlap and are not adjacent.
+
+  @param <V> The type of the list elements.
+*/
+
+public @Immutable interface ListPatch<V>
+{
+    /**
+      Create a patch.
+      @param sourceSize The size of the list to which the patch applies.
+      @param edits The edits, ordered by position.
+      @throws IllegalArgumentException if the edits are not ordered, overlap, or extend beyond the source list.
+    */
+
+    static <V> @NotNull ListPatch<V> create(int sourceSize, @NotNull IList<Edit<V>> edits)
+      throws IllegalArgumentException
+    {
+        return ListPatchImpl.create(sourceSize, edits);
+    }
+
+    /**
+      Return the size of the list to which this patch applies.
+    */
+
+    int getSourceSize();
+
+    /**
+      Return the size of the list produced by applying this patch.
+    */
+
+    int getTargetSize();
+
+    /**
+      Return true if this patch makes no changes.
+    */
+
+    boolean isEmpty();
+
+    /**
+      Return the edits, ordered by their positions in the source list.
+    */
+
+    @NotNull IList<Edit<V>> getEdits();
+
+    /**
+      A replacement of a range of elements.
+
+      @param <V> The type of the list elements.
+    */
+
+    @Immutable interface Edit<V>
+    {
+        /**
+          Create an edit.
+          @param index The index in the source list of the first element to replace.
+          @param removeCount The number of elements to replace.
+          @param values The new elements.
+          @throws IllegalArgumentException if {@code index} or {@code removeCount} is negative, or the edit makes no
+          change.
+        */
+
+        static <V> @NotNull Edit<V> create(int index, int removeCount, @NotNull IList<V> values)
+          throws IllegalArgumentException
+        {
+            return ListPatchImpl.createEdit(index, removeCount, values);
+        }
+
+        /**
+          Return the index in the source list of the first element to replace.
+        */
+
+        int getIndex();
+
+        /**
+          Return the number of elements of the source list that are replaced.
+        */
+
+        int getRemoveCount();
+
+        /**
+          Return the new elements.
+        */
+
+        @NotNull IList<V> getValues();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import org.jetbrains.annotations.*;
+
+/**
+  An interface for a builder of maps with long keys. The builder is a mutable object that accepts a sequence of bindings
+  and creates a map containing those bindings.
+
+  @param <V> The type of the values.
+*/
+
+public interface LongMapBuilder<V>
+{
+    /**
+      Indicate whether or not a binding is specified for a key.
+      @param key The key.
+      @return true if and only if a binding is specified for the key.
+    */
+
+    boolean containsKey(long key);
+
+    /**
+      Return the value currently bound to a key
+      @param key The key.
+      @return the associated value, or null if none.
+    */
+
+    @Nullable V get(long key);
+
+    /**
+      Add a binding to be included in the map, replacing any previously added binding with the same key.
+
+      @param key The key.
+      @param value The value.
+    */
+
+    void put(long key, @NotNull V value);
+
+    /**
+      Optionally add a binding to be included in the map, replacing any previously added binding with the same key.
+
+      @param key The key.
+      @param value The value. If null, this method has no effect.
+    */
+
+    default void putOptional(long key, @Nullable V value)
+    {
+        if (value != null) {
+            put(key, value);
+        }
+    }
+
+    /**
+      Add the bindings of a map, replacing any previously added bindings with the same keys.
+
+      @param bindings The bindings to add.
+    */
+
+    void addAll(@NotNull ILongMap<V> bindings);
+
+    /**
+      Remove any previously added binding for a key.
+      @param key The key.
+    */
+
+    void remove(long key);
+
+    /**
+      Remove all previously supplied bindings.
+    */
+
+    void reset();
+
+    /**
+      Indicate whether the map created in the current state would be empty.
+      @return true if and only if the map would be empty.
+    */
+
+    boolean isEmpty();
+
+    /**
+      Return the number of bindings that would be contained in the map created in the current state.
+      @return the number of elements.
+    */
+
+    int size();
+
+    /**
+      Return a map containing the previously supplied (and not removed) bindings.
+      @return the map.
+    */
+
+    @NotNull ILongMap<V> value();
+}
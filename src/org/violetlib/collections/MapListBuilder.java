@@ -71,4 +71,18 @@ public interface MapListBuilder<K,V>
     */
 
     @NotNull IMap<K,IList<V>> value();
+
+    /**
+      Return a multimap containing the keys associated with their lists of values. The multimap can be extended
+      efficiently.
+    */
+
+    default @NotNull IListMultimap<K,V> multimap()
+    {
+        IListMultimap<K,V> result = IListMultimap.empty();
+        for (K key : keys()) {
+            result = result.putAll(key, getValues(key));
+        }
+        return result;
+    }
 }
@@ -79,4 +79,18 @@ public interface MapSetBuilder<K,V>
     */
 
     @NotNull IMap<K,ISet<V>> value();
+
+    /**
+      Return a multimap containing the keys associated with their sets of values. The multimap can be extended
+      efficiently.
+    */
+
+    default @NotNull ISetMultimap<K,V> multimap()
+    {
+        ISetMultimap<K,V> result = ISetMultimap.empty();
+        for (K key : keys()) {
+            result = result.putAll(key, getValues(key));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.violetlib.collections.impl.MappedCollectionsImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Operations that write large immutable lists and maps to files and map those files into memory.
+  <p>
+  A mapped list or map reads its contents directly from the mapped file. Opening one does not read the elements or
+  bindings, and the elements, keys, and values are decoded, using the supplied element codecs, only when they are
+  accessed. The contents are not held on the heap, so they are not scanned by the garbage collector. A mapped list
+  supports access by index. A mapped map locates keys using a hash table stored in the file, so the hash codes of the
+  keys must not vary from one execution to another; strings and boxed integers satisfy this requirement.
+  <p>
+  Mapped collections are immutable and may be used wherever a list or map is accepted. Operations that return a
+  modified collection return a collection in memory. A mapped file must not be modified while it is mapped. The
+  mapping is released when the collection is no longer reachable. An error reading a mapped file when a collection is
+  accessed is reported as an {@link java.io.UncheckedIOException}.
+*/
+
+public final @NoInstances class MappedCollections
+{
+    private MappedCollections()
+    {
+        throw new AssertionError("MappedCollections may not be instantiated");
+    }
+
+    /**
+      Write a list to a file that can be mapped using {@link #mapList}. An existing file is replaced.
+      @param file The file.
+      @param list The list.
+      @param codec The codec used to write the elements.
+    */
+
+    public static <V> void writeList(@NotNull Path file, @NotNull IList<V> list, @NotNull ElementCodec<? super V> codec)
+      throws IOException
+    {
+        MappedCollectionsImpl.writeList(file, list, codec);
+    }
+
+    /**
+      Write a map to a file that can be mapped using {@link #mapMap}. An existing file is replaced.
+      @param file The file.
+      @param map The map.
+      @param keyCodec The codec used to write the keys.
+      @param valueCodec The codec used to write the values.
+      @throws IllegalArgumentException if the map has too many bindings to be represented.
+    */
+
+    public static <K,V> void writeMap(@NotNull Path file,
+                                      @NotNull IMap<K,V> map,
+                                      @NotNull ElementCodec<? super K> keyCodec,
+                                      @NotNull ElementCodec<? super V> valueCodec)
+      throws IOException, IllegalArgumentException
+    {
+        MappedCollectionsImpl.writeMap(file, map, keyCodec, valueCodec);
+    }
+
+    /**
+      Map a file written by {@link #writeList}.
+      @param file The file.
+      @param codec The codec used to read the elements.
+      @return a list whose elements are read from the file.
+      @throws IOException if the file cannot be mapped or does not contain a list.
+    */
+
+    public static <V> @NotNull IList<V> mapList(@NotNull Path file, @NotNull ElementCodec<? extends V> codec)
+      throws IOException
+    {
+        return MappedCollectionsImpl.mapList(file, codec);
+    }
+
+    /**
+      Map a file written by {@link #writeMap}.
+      @param file The file.
+      @param keyCodec The codec used to read the keys.
+      @param valueCodec The codec used to read the values.
+      @return a map whose bindings are read from the file.
+      @throws IOException if the file cannot be mapped or does not contain a map.
+    */
+
+    public static <K,V> @NotNull IMap<K,V> mapMap(@NotNull Path file,
+                                                  @NotNull ElementCodec<? extends K> keyCodec,
+                                                  @NotNull ElementCodec<? extends V> valueCodec)
+      throws IOException
+    {
+        return MappedCollectionsImpl.mapMap(file, keyCodec, valueCodec);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections;
+
+import org.violetlib.collections.impl.SetDiffImpl;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  The differences between two sets, as returned by {@link ISet#diff}.
+
+  @param <V> The type of the set elements.
+*/
+
+public @Immutable interface SetDiff<V>
+{
+    /**
+      Create a set difference.
+      @param added The elements present only in the second set.
+      @param removed The elements present only in the first set.
+    */
+
+    static <V> @NotNull SetDiff<V> create(@NotNull ISet<V> added, @NotNull ISet<V> removed)
+    {
+        return SetDiffImpl.create(added, removed);
+    }
+
+    /**
+      Return the elements that are present only in the second set.
+    */
+
+    @NotNull ISet<V> getAdded();
+
+    /**
+      Return the elements that are present only in the first set.
+    */
+
+    @NotNull ISet<V> getRemoved();
+
+    /**
+      Return true if the two sets are equal.
+    */
+
+    default boolean isEmpty()
+    {
+        return getAdded().isEmpty() && getRemoved().isEmpty();
+    }
+}
@@ -55,4 +55,13 @@ import org.violetlib.annotations.Immutable;
         nextIndex = i + 1;
         return (V) elements[i];
     }
+
+    @Override
+    public int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+    {
+        int count = Math.min(max, lastIndex + 1 - nextIndex);
+        System.arraycopy(elements, nextIndex, dest, offset, count);
+        nextIndex += count;
+        return count;
+    }
 }
@@ -9,6 +9,7 @@
 package org.violetlib.collections.impl;
 
 import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.violetlib.collections.Binding;
 import org.violetlib.collections.IIterator;
@@ -39,6 +40,7 @@ public final @Immutable class ArrayMapImpl<K,V>
     private final @NotNull Object @NotNull [] data;
     private volatile ISet<K> keySet;
     private volatile ISet<V> valueSet;
+    private int hashCode;  // cached, zero if not yet computed
 
     private ArrayMapImpl(@NotNull Map<? extends K, ? extends V> bindings)
     {
@@ -64,6 +66,41 @@ public final @Immutable class ArrayMapImpl<K,V>
         this.data = data;
     }
 
+    private ArrayMapImpl(@NotNull Object @NotNull [] data)
+    {
+        this.data = data;
+    }
+
+    /**
+      Return a map with the same keys as this map, in the same order, whose values are obtained by applying a function
+      to the bindings of this map.
+      @param mapper The function. If it returns null for a binding, the key is not a key of the returned map.
+    */
+
+    public <R> @NotNull IMap<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> mapper)
+    {
+        int length = data.length;
+        Object[] newData = new Object[length];
+        int count = 0;
+        for (int index = 0; index < length; index += 2) {
+            K key = (K) data[index];
+            R value = mapper.apply(key, (V) data[index + 1]);
+            if (value != null) {
+                newData[count++] = key;
+                newData[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return IMap.empty();
+        }
+        if (count != length) {
+            Object[] trimmed = new Object[count];
+            System.arraycopy(newData, 0, trimmed, 0, count);
+            newData = trimmed;
+        }
+        return new ArrayMapImpl<>(newData);
+    }
+
     @Override
     public boolean isEmpty()
     {
@@ -199,7 +236,12 @@ public final @Immutable class ArrayMapImpl<K,V>
     @Override
     public int hashCode()
     {
-        return MapEquality.computeHashCode(this);
+        int h = hashCode;
+        if (h == 0) {
+            h = MapEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
     }
 
     @Override
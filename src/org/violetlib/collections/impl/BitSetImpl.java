@@ -0,0 +1,592 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+
+import org.violetlib.collections.FindVisitor;
+import org.violetlib.collections.ICollection;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.collections.Visitor;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+import static java.util.Spliterator.*;
+
+/**
+  An implementation of an immutable set whose elements belong to a dense domain, either small non-negative integers or
+  the constants of one enum class. Each possible element is represented by one bit in an array of words. Membership
+  tests examine a single bit; union, intersection, and difference of two sets with the same domain are performed one
+  word at a time. The elements are visited in increasing order of their indexes in the domain.
+  <p>
+  If an operation would produce an element outside the domain, or an integer set that is too sparse to be represented
+  compactly, the result uses the default set representation.
+
+  @param <V> The type of the elements.
+*/
+
+public final @Immutable class BitSetImpl<V>
+  implements ISet<V>
+{
+    /**
+      Create a set containing the specified elements, if the elements belong to a dense domain.
+      @param elements The elements. Duplicates are permitted.
+      @param count The number of elements to use from the array.
+      @return the set, or null if the elements are not suitable for this representation.
+      @throws IllegalArgumentException if the elements include null.
+    */
+
+    public static <V> @Nullable ISet<V> createOptional(@Nullable Object @NotNull [] elements, int count)
+      throws IllegalArgumentException
+    {
+        if (count == 0) {
+            return null;
+        }
+        Object first = elements[0];
+        if (first == null) {
+            throw new IllegalArgumentException("Null elements are not permitted");
+        }
+        Domain domain = getDomain(first);
+        if (domain == null) {
+            return null;
+        }
+        int maximumIndex = -1;
+        for (int i = 0; i < count; i++) {
+            Object e = elements[i];
+            if (e == null) {
+                throw new IllegalArgumentException("Null elements are not permitted");
+            }
+            int index = domain.indexOf(e);
+            if (index < 0) {
+                return null;
+            }
+            maximumIndex = Math.max(maximumIndex, index);
+        }
+        if (!domain.isAcceptable(maximumIndex, count)) {
+            return null;
+        }
+        long[] words = new long[wordIndex(maximumIndex) + 1];
+        for (int i = 0; i < count; i++) {
+            int index = domain.indexOf(elements[i]);
+            words[wordIndex(index)] |= bit(index);
+        }
+        return new BitSetImpl<>(domain, words);
+    }
+
+    /**
+      Create a set containing the elements of a Java collection, if the elements belong to a dense domain. The domain
+      of the first element is checked before the other elements are examined, so an unsuitable collection is rejected
+      at little cost.
+      @return the set, or null if the elements are not suitable for this representation.
+      @throws IllegalArgumentException if the elements include null.
+    */
+
+    public static <V> @Nullable ISet<V> createOptional(@NotNull Collection<? extends V> elements)
+      throws IllegalArgumentException
+    {
+        if (elements.isEmpty()) {
+            return null;
+        }
+        Object first = elements.iterator().next();
+        if (first == null) {
+            throw new IllegalArgumentException("Null elements are not permitted");
+        }
+        Domain domain = getDomain(first);
+        if (domain == null || domain.indexOf(first) < 0) {
+            return null;
+        }
+        int count = 0;
+        int maximumIndex = -1;
+        for (Object e : elements) {
+            if (e == null) {
+                throw new IllegalArgumentException("Null elements are not permitted");
+            }
+            int index = domain.indexOf(e);
+            if (index < 0) {
+                return null;
+            }
+            maximumIndex = Math.max(maximumIndex, index);
+            count++;
+        }
+        if (!domain.isAcceptable(maximumIndex, count)) {
+            return null;
+        }
+        long[] words = new long[wordIndex(maximumIndex) + 1];
+        for (Object e : elements) {
+            // A concurrent collection may have gained elements since the first pass; they may be omitted
+            int index = domain.indexOf(e);
+            if (index >= 0 && index <= maximumIndex) {
+                words[wordIndex(index)] |= bit(index);
+            }
+        }
+        return new BitSetImpl<>(domain, words);
+    }
+
+    private static final int WORD_SHIFT = 6;
+
+    /**
+      The number of possible elements, relative to the number of actual elements, above which an integer set is
+      considered too sparse for this representation. With this ratio, the words of the set occupy no more space than
+      the nodes of a hash set.
+    */
+
+    private static final int MAXIMUM_SPARSENESS = 256;
+
+    private final @NotNull Domain domain;
+    private final long @NotNull [] words;  // the last word is not zero
+    private final int size;
+
+    private BitSetImpl(@NotNull Domain domain, long @NotNull [] words)
+    {
+        this.domain = domain;
+        this.words = words;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        this.size = count;
+    }
+
+    /**
+      Create a set from the specified words, which may have trailing zero words.
+    */
+
+    private @NotNull ISet<V> create(long @NotNull [] words)
+    {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) {
+            length--;
+        }
+        if (length == 0) {
+            return SimpleSet.empty();
+        }
+        if (Arrays.equals(words, this.words)) {
+            return this;
+        }
+        return new BitSetImpl<>(domain, length == words.length ? words : Arrays.copyOf(words, length));
+    }
+
+    private static int wordIndex(int index)
+    {
+        return index >>> WORD_SHIFT;
+    }
+
+    private static long bit(int index)
+    {
+        return 1L << index;
+    }
+
+    private @NotNull V element(int index)
+    {
+        return (V) domain.valueOf(index);
+    }
+
+    private boolean isPresent(int index)
+    {
+        int w = wordIndex(index);
+        return w < words.length && (words[w] & bit(index)) != 0;
+    }
+
+    private int getMaximumIndex()
+    {
+        int last = words.length - 1;
+        return (last << WORD_SHIFT) + 63 - Long.numberOfLeadingZeros(words[last]);
+    }
+
+    /**
+      Return the other set as a bit set with the same domain, if it is one.
+    */
+
+    private @Nullable BitSetImpl<?> compatible(@NotNull ICollection<?> other)
+    {
+        if (other instanceof BitSetImpl) {
+            BitSetImpl<?> s = (BitSetImpl<?>) other;
+            if (s.domain.equals(domain)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private @NotNull ISet<V> generalize()
+    {
+        return SimpleSet.collect(this);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return false;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean contains(@NotNull Object target)
+    {
+        int index = domain.indexOf(target);
+        return index >= 0 && isPresent(index);
+    }
+
+    @Override
+    public @NotNull IIterator<V> iterator()
+    {
+        return new MyIterator();
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<V> visitor)
+    {
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int index = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+                visitor.visit(element(index));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FindVisitor<V,R> visitor)
+    {
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int index = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+                R result = visitor.visit(element(index));
+                if (result != null) {
+                    return result;
+                }
+                word &= word - 1;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public @NotNull ISet<V> extending(@NotNull V value)
+    {
+        int index = domain.indexOf(value);
+        if (index < 0 || !domain.isAcceptable(Math.max(index, getMaximumIndex()), size + 1)) {
+            return generalize().extending(value);
+        }
+        if (isPresent(index)) {
+            return this;
+        }
+        long[] newWords = Arrays.copyOf(words, Math.max(words.length, wordIndex(index) + 1));
+        newWords[wordIndex(index)] |= bit(index);
+        return new BitSetImpl<>(domain, newWords);
+    }
+
+    @Override
+    public @NotNull ISet<V> extendingAll(@NotNull ICollection<? extends V> values)
+    {
+        BitSetImpl<?> other = compatible(values);
+        if (other != null) {
+            long[] longer = other.words.length > words.length ? other.words : words;
+            long[] shorter = longer == words ? other.words : words;
+            long[] newWords = longer.clone();
+            for (int i = 0; i < shorter.length; i++) {
+                newWords[i] |= shorter[i];
+            }
+            BitSetImpl<V> result = new BitSetImpl<>(domain, newWords);
+            if (result.size == size) {
+                return this;
+            }
+            if (domain.isAcceptable(result.getMaximumIndex(), result.size)) {
+                return result;
+            }
+        }
+        if (values.isEmpty()) {
+            return this;
+        }
+        SetBuilder<V> b = ISet.builder();
+        visit(b::add);
+        values.visit(b::add);
+        return b.values();
+    }
+
+    @Override
+    public @NotNull ISet<V> removing(@NotNull Object value)
+    {
+        int index = domain.indexOf(value);
+        if (index < 0 || !isPresent(index)) {
+            return this;
+        }
+        long[] newWords = words.clone();
+        newWords[wordIndex(index)] &= ~bit(index);
+        return create(newWords);
+    }
+
+    @Override
+    public @NotNull ISet<V> removingAll(@NotNull ISet<?> values)
+    {
+        BitSetImpl<?> other = compatible(values);
+        if (other != null) {
+            long[] newWords = words.clone();
+            int length = Math.min(words.length, other.words.length);
+            for (int i = 0; i < length; i++) {
+                newWords[i] &= ~other.words[i];
+            }
+            return create(newWords);
+        }
+        return ISet.super.removingAll(values);
+    }
+
+    @Override
+    public @NotNull ISet<V> intersecting(@NotNull ISet<?> other)
+    {
+        BitSetImpl<?> s = compatible(other);
+        if (s != null) {
+            int length = Math.min(words.length, s.words.length);
+            long[] newWords = new long[length];
+            for (int i = 0; i < length; i++) {
+                newWords[i] = words[i] & s.words[i];
+            }
+            return create(newWords);
+        }
+        return ISet.super.intersecting(other);
+    }
+
+    @Override
+    public <R> @NotNull ISet<R> map(@NotNull Function<V,R> mapper)
+    {
+        SetBuilder<R> b = ISet.builder();
+        visit(v -> {
+            R replacement = mapper.apply(v);
+            if (replacement != null) {
+                b.add(replacement);
+            }
+        });
+        return b.values();
+    }
+
+    @Override
+    public @NotNull Spliterator<V> spliterator()
+    {
+        return Spliterators.spliterator(iterator(), size(), IMMUTABLE | NONNULL | SIZED | DISTINCT);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return SetEquality.computeHashCode(this);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof BitSetImpl) {
+            BitSetImpl<?> other = (BitSetImpl<?>) obj;
+            if (other.domain.equals(domain)) {
+                return Arrays.equals(words, other.words);
+            }
+        }
+
+        ISet<?> otherSet = Extensions.getExtension(obj, ISet.class);
+        if (otherSet == null) {
+            return false;
+        }
+
+        return SetEquality.isEqual(this, otherSet);
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        StringBuilder b = new StringBuilder();
+        b.append('{');
+        for (V e : this) {
+            if (b.length() > 1) {
+                b.append(' ');
+            }
+            b.append(e.toString());
+        }
+        b.append('}');
+        return b.toString();
+    }
+
+    private class MyIterator
+      implements IIterator<V>
+    {
+        private int wordIndex;
+        private long remaining;
+
+        public MyIterator()
+        {
+            remaining = words[0];
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (remaining == 0) {
+                if (++wordIndex >= words.length) {
+                    wordIndex = words.length;
+                    return false;
+                }
+                remaining = words[wordIndex];
+            }
+            return true;
+        }
+
+        @Override
+        public @NotNull V next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int index = (wordIndex << WORD_SHIFT) + Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return element(index);
+        }
+    }
+
+    private static @Nullable Domain getDomain(@NotNull Object e)
+    {
+        if (e instanceof Integer) {
+            return IntegerDomain.INSTANCE;
+        }
+        if (e instanceof Enum) {
+            return ENUM_DOMAINS.get(((Enum<?>) e).getDeclaringClass());
+        }
+        return null;
+    }
+
+    private static final @NotNull ClassValue<EnumDomain> ENUM_DOMAINS = new ClassValue<EnumDomain>()
+    {
+        @Override
+        protected @NotNull EnumDomain computeValue(@NotNull Class<?> type)
+        {
+            return new EnumDomain(type);
+        }
+    };
+
+    /**
+      A domain maps its members to consecutive indexes starting at zero.
+    */
+
+    private static abstract class Domain
+    {
+        /**
+          Return the index of an object in this domain.
+          @return the index, or -1 if the object is not a member of this domain.
+        */
+
+        public abstract int indexOf(@NotNull Object o);
+
+        public abstract @NotNull Object valueOf(int index);
+
+        /**
+          Indicate whether a set of this domain with the specified maximum index and number of elements is suitably
+          dense.
+        */
+
+        public abstract boolean isAcceptable(int maximumIndex, int count);
+    }
+
+    private static final class IntegerDomain
+      extends Domain
+    {
+        public static final @NotNull IntegerDomain INSTANCE = new IntegerDomain();
+
+        @Override
+        public int indexOf(@NotNull Object o)
+        {
+            if (o instanceof Integer) {
+                int value = (Integer) o;
+                return value >= 0 ? value : -1;
+            }
+            return -1;
+        }
+
+        @Override
+        public @NotNull Object valueOf(int index)
+        {
+            return index;
+        }
+
+        @Override
+        public boolean isAcceptable(int maximumIndex, int count)
+        {
+            return maximumIndex < Math.max(64, (long) count * MAXIMUM_SPARSENESS);
+        }
+    }
+
+    private static final class EnumDomain
+      extends Domain
+    {
+        private final @NotNull Class<?> elementType;
+        private final @NotNull Object @NotNull [] constants;
+
+        public EnumDomain(@NotNull Class<?> elementType)
+        {
+            this.elementType = elementType;
+            this.constants = elementType.getEnumConstants();
+        }
+
+        @Override
+        public int indexOf(@NotNull Object o)
+        {
+            if (o instanceof Enum) {
+                Enum<?> e = (Enum<?>) o;
+                if (e.getDeclaringClass() == elementType) {
+                    return e.ordinal();
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public @NotNull Object valueOf(int index)
+        {
+            return constants[index];
+        }
+
+        @Override
+        public boolean isAcceptable(int maximumIndex, int count)
+        {
+            return true;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj)
+        {
+            return obj instanceof EnumDomain && ((EnumDomain) obj).elementType == elementType;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return elementType.hashCode();
+        }
+    }
+}
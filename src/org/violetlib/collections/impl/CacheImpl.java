@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.ICache;
+import org.violetlib.collections.IMap;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable cache. The bindings are stored in a hash trie map, which maps each key to an entry
+  containing the value and the priority of the binding. A second trie maps priorities to keys; its first leaf
+  identifies the binding to evict. Using or updating a binding replaces one entry in each trie, creating a number of
+  nodes bounded by the depth of the tries.
+  <p>
+  Priorities are assigned from a clock that advances on each use. For the LRU policy, the priority is the time of the
+  last use. For the LFU policy, the use count occupies the high bits of the priority, so that less frequently used
+  bindings are evicted first, and the low bits hold the time of the last use. The use count saturates at
+  {@link #MAX_FREQUENCY}; the time wraps after 2<sup>40</sup> uses, which can only disturb the order of bindings with
+  equal use counts.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class CacheImpl<K,V>
+  implements ICache<K,V>
+{
+    public static <K,V> @NotNull ICache<K,V> create(int capacity, boolean isLFU)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        return new CacheImpl<>(capacity, isLFU, HashTrieMapImpl.empty(), null, 0, 0, 0, 0);
+    }
+
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_FREQUENCY = (1 << (63 - TIME_BITS)) - 1;
+
+    private final int capacity;
+    private final boolean isLFU;
+    private final @NotNull HashTrieMapImpl<K,Entry<V>> entries;
+    private final @Nullable LongTrie.Node order;  // maps priorities to keys
+    private final long clock;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    private CacheImpl(int capacity,
+                      boolean isLFU,
+                      @NotNull HashTrieMapImpl<K,Entry<V>> entries,
+                      @Nullable LongTrie.Node order,
+                      long clock,
+                      long hits,
+                      long misses,
+                      long evictions)
+    {
+        this.capacity = capacity;
+        this.isLFU = isLFU;
+        this.entries = entries;
+        this.order = order;
+        this.clock = clock;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    private static final @Immutable class Entry<V>
+    {
+        public final @NotNull V value;
+        public final long priority;
+        public final int frequency;
+
+        public Entry(@NotNull V value, long priority, int frequency)
+        {
+            this.value = value;
+            this.priority = priority;
+            this.frequency = frequency;
+        }
+    }
+
+    private long priority(int frequency)
+    {
+        return isLFU ? ((long) frequency << TIME_BITS) | (clock & TIME_MASK) : clock;
+    }
+
+    @Override
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public int size()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        Entry<V> e = entries.get(key);
+        return e != null ? e.value : null;
+    }
+
+    @Override
+    public boolean containsKey(@NotNull K key)
+    {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public @NotNull CacheImpl<K,V> touching(@NotNull K key)
+    {
+        Entry<V> e = entries.get(key);
+        if (e == null) {
+            return new CacheImpl<>(capacity, isLFU, entries, order, clock, hits, misses + 1, evictions);
+        }
+        return use(key, e, e.value, hits + 1);
+    }
+
+    @Override
+    public @NotNull CacheImpl<K,V> extending(@NotNull K key, @Nullable V value)
+    {
+        Entry<V> e = entries.get(key);
+
+        if (value == null) {
+            if (e == null) {
+                return this;
+            }
+            LongTrie.Node newOrder = LongTrie.with(order, e.priority, null);
+            return new CacheImpl<>(capacity, isLFU, entries.extending(key, null), newOrder,
+              clock, hits, misses, evictions);
+        }
+
+        if (e != null) {
+            return use(key, e, value, hits);
+        }
+
+        HashTrieMapImpl<K,Entry<V>> newEntries = entries;
+        LongTrie.Node newOrder = order;
+        long newEvictions = evictions;
+        if (newEntries.size() >= capacity) {
+            LongTrie.Leaf victim = LongTrie.getFirst(newOrder);
+            assert victim != null;
+            newEntries = newEntries.extending((K) victim.value, null);
+            newOrder = LongTrie.with(newOrder, victim.getKey(), null);
+            newEvictions++;
+        }
+        long p = priority(1);
+        newEntries = newEntries.extending(key, new Entry<>(value, p, 1));
+        newOrder = LongTrie.with(newOrder, p, key);
+        return new CacheImpl<>(capacity, isLFU, newEntries, newOrder, clock + 1, hits, misses, newEvictions);
+    }
+
+    /**
+      Return a cache that records a use of an existing binding, possibly with a new value.
+    */
+
+    private @NotNull CacheImpl<K,V> use(@NotNull K key, @NotNull Entry<V> e, @NotNull V value, long newHits)
+    {
+        int frequency = Math.min(e.frequency + 1, MAX_FREQUENCY);
+        long p = priority(frequency);
+        LongTrie.Node newOrder = LongTrie.with(LongTrie.with(order, e.priority, null), p, key);
+        HashTrieMapImpl<K,Entry<V>> newEntries = entries.extending(key, new Entry<>(value, p, frequency));
+        return new CacheImpl<>(capacity, isLFU, newEntries, newOrder, clock + 1, newHits, misses, evictions);
+    }
+
+    @Override
+    public @NotNull IMap<K,V> asMap()
+    {
+        return entries.mapValues((k, e) -> e.value);
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hits;
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return misses;
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictions;
+    }
+}
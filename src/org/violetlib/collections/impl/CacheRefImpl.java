@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.function.Function;
+
+import org.violetlib.collections.ICache;
+import org.violetlib.collections.ICacheRef;
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+
+/**
+  An implementation of a lock-free cell containing an immutable cache.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final class CacheRefImpl<K,V>
+  extends RefImpl<ICache<K,V>>
+  implements ICacheRef<K,V>
+{
+    public static <K,V> @NotNull ICacheRef<K,V> create(@NotNull ICache<K,V> cache)
+    {
+        return new CacheRefImpl<>(cache);
+    }
+
+    private CacheRefImpl(@NotNull ICache<K,V> cache)
+    {
+        super(cache);
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        for (int retries = 0; ; retries++) {
+            ICache<K,V> current = get();
+            V value = current.get(key);
+            if (attempt(current, current.touching(key), retries)) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public @NotNull V computeIfAbsent(@NotNull K key, @NotNull Function<@NotNull K,@NotNull V> f)
+    {
+        for (int retries = 0; ; retries++) {
+            ICache<K,V> current = get();
+            V value = current.get(key);
+            if (value != null) {
+                if (attempt(current, current.touching(key), retries)) {
+                    return value;
+                }
+                continue;
+            }
+            V newValue = f.apply(key);
+            if (newValue == null) {
+                throw UndefinedValueError.create("Function must not return null");
+            }
+            if (attempt(current, current.touching(key).extending(key, newValue), retries)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public @Nullable V put(@NotNull K key, @NotNull V value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        return replace(key, value);
+    }
+
+    @Override
+    public @Nullable V remove(@NotNull K key)
+    {
+        return replace(key, null);
+    }
+
+    private @Nullable V replace(@NotNull K key, @Nullable V value)
+    {
+        for (int retries = 0; ; retries++) {
+            ICache<K,V> current = get();
+            V oldValue = current.get(key);
+            if (attempt(current, current.extending(key, value), retries)) {
+                return oldValue;
+            }
+        }
+    }
+}
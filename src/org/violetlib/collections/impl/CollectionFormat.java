@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Constants that define the binary format used by the collection writer and reader.
+  <p>
+  A stream starts with {@link #MAGIC} and {@link #VERSION}. Each collection starts with a collection tag. A list
+  written as a tree is followed by its size, its depth, and its root node. A map written as a trie is followed by its
+  root node, or {@link #NONE} if it is empty. A flat collection is followed by its size and its elements or
+  alternating keys and values.
+  <p>
+  Each node starts with a node tag. A reference is followed by the index of a node written earlier; nodes are indexed
+  in the order in which they were first written, in the same index space for all collections in the stream. An RRB
+  leaf is followed by its length and its elements. An RRB branch is followed by its child count, a flag indicating the
+  presence of a size table, the length and contents of the size table if present, and its children. A trie leaf is
+  followed by its stored key, its binding count, and its bindings. A trie branch is followed by its prefix, its mask,
+  and its two children.
+  <p>
+  A mapped file, which is read in place rather than as a stream, starts with {@link #MAGIC}, {@link #VERSION}, a
+  collection tag, the element or binding count, and the table capacity, which is zero for a list. The header is
+  followed by a table of long integers. For a list, the table contains the file position of each element. For a map,
+  the table is an open-addressed hash table of {@link #MAPPED_SLOT_HASH_BITS} bits of the spread hash code of a key,
+  followed by the file position of its binding; an empty slot is zero. The elements or the bindings, which are keys
+  followed by their values, follow the table in iteration order.
+*/
+
+/* package private */ final @NoInstances class CollectionFormat
+{
+    private CollectionFormat()
+    {
+        throw new AssertionError("CollectionFormat may not be instantiated");
+    }
+
+    public static final int MAGIC = 0x56434F4C;  // "VCOL"
+    public static final int VERSION = 1;
+
+    // collection tags
+    public static final byte RRB_LIST = 1;
+    public static final byte FLAT_LIST = 2;
+    public static final byte FLAT_SET = 3;
+    public static final byte TRIE_MAP = 4;
+    public static final byte FLAT_MAP = 5;
+    public static final byte MAPPED_LIST = 6;
+    public static final byte MAPPED_MAP = 7;
+
+    // mapped files
+    public static final int MAPPED_HEADER_SIZE = 24;
+    public static final int MAPPED_POSITION_BITS = 40;
+    public static final int MAPPED_SLOT_HASH_BITS = 64 - MAPPED_POSITION_BITS;
+    public static final long MAPPED_POSITION_MASK = (1L << MAPPED_POSITION_BITS) - 1;
+
+    // node tags
+    public static final byte NONE = 0;
+    public static final byte REFERENCE = 1;
+    public static final byte LEAF = 2;
+    public static final byte BRANCH = 3;
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.violetlib.collections.CollectionReader;
+import org.violetlib.collections.ElementCodec;
+import org.violetlib.collections.IList;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+
+import org.jetbrains.annotations.*;
+
+import static org.violetlib.collections.impl.CollectionFormat.*;
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.installSizes;
+
+/**
+  An implementation of a collection reader.
+*/
+
+public final class CollectionReaderImpl
+  implements CollectionReader
+{
+    public static @NotNull CollectionReader create(@NotNull InputStream in)
+      throws IOException
+    {
+        return new CollectionReaderImpl(in);
+    }
+
+    private final @NotNull DataInputStream in;
+    private final @NotNull List<Object> nodes = new ArrayList<>();  // the nodes read so far, by index
+    private boolean isStale;  // true if a trie leaf was read whose key is not the current hash code of its keys
+
+    private CollectionReaderImpl(@NotNull InputStream in)
+      throws IOException
+    {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != MAGIC) {
+            throw new IOException("Not a collection stream");
+        }
+        int version = this.in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported collection stream version: " + version);
+        }
+    }
+
+    @Override
+    public <V> @NotNull IList<V> readList(@NotNull ElementCodec<? extends V> codec)
+      throws IOException
+    {
+        byte tag = in.readByte();
+        if (tag == RRB_LIST) {
+            int size = in.readInt();
+            int depth = in.readInt();
+            if (size < 0 || depth < 1 || depth > 6) {
+                throw new IOException("Invalid list");
+            }
+            Object[] root = readRRBNode(depth, (ElementCodec) codec);
+            return size > 0 ? new RRBList<>(size, root, depth) : RRBList.empty();
+        }
+        if (tag == FLAT_LIST) {
+            return RRBList.createWithArray(readElements(codec));
+        }
+        throw new IOException("List expected");
+    }
+
+    @Override
+    public <V> @NotNull ISet<V> readSet(@NotNull ElementCodec<? extends V> codec)
+      throws IOException
+    {
+        byte tag = in.readByte();
+        if (tag == FLAT_SET) {
+            return Impl.setOf((V[]) readElements(codec));
+        }
+        throw new IOException("Set expected");
+    }
+
+    @Override
+    public <K,V> @NotNull IMap<K,V> readMap(@NotNull ElementCodec<? extends K> keyCodec,
+                                            @NotNull ElementCodec<? extends V> valueCodec)
+      throws IOException
+    {
+        byte tag = in.readByte();
+        if (tag == TRIE_MAP) {
+            LongTrie.Node root = readTrieNode((ElementCodec) keyCodec, (ElementCodec) valueCodec);
+            if (isStale) {
+                // The hash codes of some keys differ from those of the writer; the trie may be shared with earlier
+                // maps, so every trie read after the first mismatch is rebuilt using the current hash codes
+                return rebuild(root);
+            }
+            return HashTrieMapImpl.createFromTrie(root);
+        }
+        if (tag == FLAT_MAP) {
+            int size = readCount();
+            Map<K,V> bindings = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                K key = keyCodec.read(in);
+                V value = valueCodec.read(in);
+                bindings.put(key, value);
+            }
+            return Impl.createMap(bindings);
+        }
+        throw new IOException("Map expected");
+    }
+
+    private <K,V> @NotNull IMap<K,V> rebuild(@Nullable LongTrie.Node root)
+    {
+        Map<K,V> bindings = new HashMap<>();
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                bindings.put((K) bucket[i], (V) bucket[i + 1]);
+            }
+        }
+        return HashTrieMapImpl.create(bindings);
+    }
+
+    private int readCount()
+      throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    private @NotNull Object @NotNull [] readElements(@NotNull ElementCodec<?> codec)
+      throws IOException
+    {
+        int size = readCount();
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = readElement(codec);
+        }
+        return elements;
+    }
+
+    private @NotNull Object readElement(@NotNull ElementCodec<?> codec)
+      throws IOException
+    {
+        Object element = codec.read(in);
+        if (element == null) {
+            throw new IOException("Element codec returned null");
+        }
+        return element;
+    }
+
+    /**
+      Read a node tag. If the tag denotes a reference, return the referenced node.
+      @return the referenced node, or null if the node has not been read before.
+    */
+
+    private @Nullable Object readReference(byte tag)
+      throws IOException
+    {
+        if (tag == REFERENCE) {
+            int index = in.readInt();
+            if (index < 0 || index >= nodes.size() || nodes.get(index) == null) {
+                throw new IOException("Invalid node reference: " + index);
+            }
+            return nodes.get(index);
+        }
+        return null;
+    }
+
+    private Object @NotNull [] readRRBNode(int level, @NotNull ElementCodec<?> codec)
+      throws IOException
+    {
+        byte tag = in.readByte();
+        Object reference = readReference(tag);
+        if (reference != null) {
+            return (Object[]) reference;
+        }
+
+        // The index is assigned before the children are read, matching the writer
+        int index = nodes.size();
+        nodes.add(null);
+        Object[] node;
+        if (level == 1) {
+            if (tag != LEAF) {
+                throw new IOException("Leaf node expected");
+            }
+            node = readElements(codec);
+        } else {
+            if (tag != BRANCH) {
+                throw new IOException("Branch node expected");
+            }
+            int childCount = readCount();
+            node = new Object[childCount + 1];
+            if (in.readBoolean()) {
+                int[] sizes = new int[readCount()];
+                for (int i = 0; i < sizes.length; i++) {
+                    sizes[i] = in.readInt();
+                }
+                installSizes(node, sizes);
+            }
+            for (int i = 0; i < childCount; i++) {
+                node[i] = readRRBNode(level - 1, codec);
+            }
+        }
+        nodes.set(index, node);
+        return node;
+    }
+
+    private @Nullable LongTrie.Node readTrieNode(@NotNull ElementCodec<?> keyCodec, @NotNull ElementCodec<?> valueCodec)
+      throws IOException
+    {
+        byte tag = in.readByte();
+        if (tag == NONE) {
+            return null;
+        }
+        Object reference = readReference(tag);
+        if (reference != null) {
+            return (LongTrie.Node) reference;
+        }
+
+        int index = nodes.size();
+        nodes.add(null);
+        LongTrie.Node node;
+        if (tag == LEAF) {
+            long key = in.readLong();
+            int count = readCount();
+            if (count == 0) {
+                throw new IOException("Empty trie leaf");
+            }
+            Object[] bucket = new Object[count * 2];
+            for (int i = 0; i < bucket.length; i += 2) {
+                Object k = readElement(keyCodec);
+                if (LongTrie.toStoredKey(k.hashCode()) != key) {
+                    isStale = true;
+                }
+                bucket[i] = k;
+                bucket[i + 1] = readElement(valueCodec);
+            }
+            node = new LongTrie.Leaf(key, bucket);
+        } else if (tag == BRANCH) {
+            long prefix = in.readLong();
+            long mask = in.readLong();
+            LongTrie.Node left = readTrieNode(keyCodec, valueCodec);
+            LongTrie.Node right = readTrieNode(keyCodec, valueCodec);
+            if (left == null || right == null) {
+                throw new IOException("Incomplete trie branch");
+            }
+            node = new LongTrie.Branch(prefix, mask, left, right);
+        } else {
+            throw new IOException("Invalid trie node");
+        }
+        nodes.set(index, node);
+        return node;
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+        in.close();
+    }
+}
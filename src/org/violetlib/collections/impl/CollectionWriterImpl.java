@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.CollectionWriter;
+import org.violetlib.collections.ElementCodec;
+import org.violetlib.collections.IList;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+
+import static org.violetlib.collections.impl.CollectionFormat.*;
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.getSizes;
+
+/**
+  An implementation of a collection writer.
+*/
+
+public final class CollectionWriterImpl
+  implements CollectionWriter
+{
+    public static @NotNull CollectionWriter create(@NotNull OutputStream out)
+      throws IOException
+    {
+        return new CollectionWriterImpl(out);
+    }
+
+    private final @NotNull DataOutputStream out;
+    private final @NotNull Map<Object,Integer> nodes = new IdentityHashMap<>();  // the indexes of written nodes
+
+    private CollectionWriterImpl(@NotNull OutputStream out)
+      throws IOException
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    @Override
+    public <V> void writeList(@NotNull IList<V> list, @NotNull ElementCodec<? super V> codec)
+      throws IOException
+    {
+        RRBList<V> rrb = Extensions.getExtension(list, RRBList.class);
+        if (rrb != null) {
+            out.writeByte(RRB_LIST);
+            out.writeInt(rrb.size());
+            out.writeInt(rrb.getDepth());
+            writeRRBNode(rrb.getRoot(), rrb.getDepth(), (ElementCodec) codec);
+            return;
+        }
+
+        out.writeByte(FLAT_LIST);
+        out.writeInt(list.size());
+        for (V element : list) {
+            codec.write(out, element);
+        }
+    }
+
+    @Override
+    public <V> void writeSet(@NotNull ISet<V> set, @NotNull ElementCodec<? super V> codec)
+      throws IOException
+    {
+        out.writeByte(FLAT_SET);
+        out.writeInt(set.size());
+        for (V element : set) {
+            codec.write(out, element);
+        }
+    }
+
+    @Override
+    public <K,V> void writeMap(@NotNull IMap<K,V> map,
+                               @NotNull ElementCodec<? super K> keyCodec,
+                               @NotNull ElementCodec<? super V> valueCodec)
+      throws IOException
+    {
+        HashTrieMapImpl<K,V> trie = Extensions.getExtension(map, HashTrieMapImpl.class);
+        if (trie != null) {
+            out.writeByte(TRIE_MAP);
+            writeTrieNode(trie.getTrie(), (ElementCodec) keyCodec, (ElementCodec) valueCodec);
+            return;
+        }
+
+        out.writeByte(FLAT_MAP);
+        out.writeInt(map.size());
+        for (Binding<K,V> b : map) {
+            keyCodec.write(out, b.getKey());
+            valueCodec.write(out, b.getValue());
+        }
+    }
+
+    /**
+      Write a reference if a node has already been written. Otherwise, assign an index to the node.
+      @return true if a reference was written.
+    */
+
+    private boolean writeReference(@NotNull Object node)
+      throws IOException
+    {
+        Integer index = nodes.get(node);
+        if (index != null) {
+            out.writeByte(REFERENCE);
+            out.writeInt(index);
+            return true;
+        }
+        nodes.put(node, nodes.size());
+        return false;
+    }
+
+    private void writeRRBNode(Object @NotNull [] node, int level, @NotNull ElementCodec<Object> codec)
+      throws IOException
+    {
+        if (writeReference(node)) {
+            return;
+        }
+        if (level == 1) {
+            out.writeByte(LEAF);
+            out.writeInt(node.length);
+            for (Object element : node) {
+                codec.write(out, element);
+            }
+            return;
+        }
+        int childCount = node.length - 1;
+        int[] sizes = getSizes(node);
+        out.writeByte(BRANCH);
+        out.writeInt(childCount);
+        out.writeBoolean(sizes != null);
+        if (sizes != null) {
+            out.writeInt(sizes.length);
+            for (int size : sizes) {
+                out.writeInt(size);
+            }
+        }
+        for (int i = 0; i < childCount; i++) {
+            writeRRBNode((Object[]) node[i], level - 1, codec);
+        }
+    }
+
+    private void writeTrieNode(@Nullable LongTrie.Node node,
+                               @NotNull ElementCodec<Object> keyCodec,
+                               @NotNull ElementCodec<Object> valueCodec)
+      throws IOException
+    {
+        if (node == null) {
+            out.writeByte(NONE);
+            return;
+        }
+        if (writeReference(node)) {
+            return;
+        }
+        if (node instanceof LongTrie.Leaf) {
+            LongTrie.Leaf leaf = (LongTrie.Leaf) node;
+            Object[] bucket = (Object[]) leaf.value;
+            out.writeByte(LEAF);
+            out.writeLong(leaf.key);
+            out.writeInt(bucket.length / 2);
+            for (int i = 0; i < bucket.length; i += 2) {
+                keyCodec.write(out, bucket[i]);
+                valueCodec.write(out, bucket[i + 1]);
+            }
+            return;
+        }
+        LongTrie.Branch b = (LongTrie.Branch) node;
+        out.writeByte(BRANCH);
+        out.writeLong(b.prefix);
+        out.writeLong(b.mask);
+        writeTrieNode(b.left, keyCodec, valueCodec);
+        writeTrieNode(b.right, keyCodec, valueCodec);
+    }
+
+    @Override
+    public void flush()
+      throws IOException
+    {
+        out.flush();
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+        out.close();
+    }
+}
@@ -11,6 +11,7 @@ package org.violetlib.collections.impl;
 import java.util.List;
 
 import org.violetlib.collections.ICollection;
+import org.violetlib.collections.IIterator;
 import org.violetlib.util.Extensions;
 
 import org.jetbrains.annotations.*;
@@ -51,4 +52,23 @@ public final @NoInstances class CollectionsUtils
 
         return -1;
     }
+
+    /**
+      Copy the elements of a collection into an array using batch transfers.
+      @param source The collection.
+      @param dest The array to receive the elements.
+      @param offset The index in {@code dest} where the first element is stored.
+      @return the number of elements copied.
+    */
+
+    public static int copyElements(@NotNull ICollection<?> source, @Nullable Object @NotNull [] dest, int offset)
+    {
+        IIterator<?> it = source.iterator();
+        int count = 0;
+        int n;
+        while ((n = it.nextBatch(dest, offset + count, dest.length - offset - count)) > 0) {
+            count += n;
+        }
+        return count;
+    }
 }
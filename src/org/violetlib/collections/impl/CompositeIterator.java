@@ -124,7 +124,7 @@ public final @NoInstances class CompositeIterator
     }
 
     private static class MyIterator<E>
-      implements Iterator<E>
+      implements IIterator<E>
     {
         private final @NotNull IList<Source<E>> sources;
         private int currentSourceIndex = -1;
@@ -159,6 +159,33 @@ public final @NoInstances class CompositeIterator
             return result;
         }
 
+        @Override
+        public int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+        {
+            if (offset < 0 || max < 0 || offset > dest.length - max) {
+                throw new IndexOutOfBoundsException();
+            }
+            int count = 0;
+            while (count < max) {
+                if (currentElement != null) {
+                    dest[offset + count] = currentElement;
+                    count++;
+                } else if (currentIterator instanceof IIterator) {
+                    count += ((IIterator<E>) currentIterator).nextBatch(dest, offset + count, max - count);
+                    if (currentIterator.hasNext()) {
+                        return count;
+                    }
+                } else if (currentIterator != null) {
+                    dest[offset + count] = currentIterator.next();
+                    count++;
+                } else {
+                    return count;
+                }
+                advanceToNextAvailable();
+            }
+            return count;
+        }
+
         public void remove()
         {
             throw new UnsupportedOperationException();
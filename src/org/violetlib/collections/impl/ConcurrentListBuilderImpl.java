@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.violetlib.collections.IList;
+import org.violetlib.collections.ListBuilder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A list builder that may be used by multiple threads concurrently. Each thread adds elements to its own buffer, so
+  threads that add elements do not contend with each other. The list is created by concatenating the contents of the
+  buffers using RRB tree concatenation.
+  <p>
+  The elements added by one thread appear in the list in the order in which that thread added them. The relative order
+  of elements added by different threads is unspecified.
+  <p>
+  Each thread that adds elements is associated with its buffer using a thread local variable. The buffers are released
+  by {@link #reset}, but each thread retains a small entry for the builder until the builder is no longer reachable and
+  the thread discards stale thread local entries. A builder that is used by the threads of a long lived pool should
+  therefore be reset when it is no longer needed.
+
+  @param <V> The type of the list elements.
+*/
+
+public final class ConcurrentListBuilderImpl<V>
+  implements ListBuilder<V>
+{
+    public static <V> @NotNull ListBuilder<V> create()
+    {
+        return new ConcurrentListBuilderImpl<>();
+    }
+
+    private final @NotNull ConcurrentLinkedQueue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+    private final @NotNull ThreadLocal<Buffer> threadBuffer = new ThreadLocal<>();
+
+    private ConcurrentListBuilderImpl()
+    {
+    }
+
+    private @NotNull Buffer createBuffer()
+    {
+        Buffer b = new Buffer();
+        buffers.add(b);
+        return b;
+    }
+
+    @Override
+    public void add(@NotNull V e)
+    {
+        if (e == null) {
+            throw new IllegalArgumentException("Element must not be null");
+        }
+        Buffer b = threadBuffer.get();
+        while (b == null || !b.add(e)) {
+            // The buffer has been released by reset
+            b = createBuffer();
+            threadBuffer.set(b);
+        }
+    }
+
+    /**
+      Return the element that would be the last element of the list created in the current state, which is the last
+      element of the last buffer that is not empty.
+      @return the element, or null if the list would be empty.
+    */
+
+    @Override
+    public @Nullable V lastItem()
+    {
+        V last = null;
+        for (Buffer b : buffers) {
+            Object e = b.last();
+            if (e != null) {
+                last = (V) e;
+            }
+        }
+        return last;
+    }
+
+    /**
+      Remove all elements and release the buffers. Elements added concurrently with this call may or may not be
+      retained.
+    */
+
+    @Override
+    public void reset()
+    {
+        Buffer b;
+        while ((b = buffers.poll()) != null) {
+            b.release();
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        int count = 0;
+        for (Buffer b : buffers) {
+            count += b.size();
+        }
+        return count;
+    }
+
+    @Override
+    public @NotNull IList<V> values()
+    {
+        IList<V> result = RRBList.empty();
+        for (Buffer b : buffers) {
+            Object[] elements = b.toArray();
+            if (elements.length > 0) {
+                IList<V> part = RRBList.createWithArray(elements);
+                result = result.isEmpty() ? part : result.appendingAll(part);
+            }
+        }
+        return result;
+    }
+
+    /**
+      A buffer of elements added by one thread. The buffer is synchronized so that it can be read and released by other
+      threads; the lock is normally uncontended. A released buffer accepts no more elements.
+    */
+
+    private static final class Buffer
+    {
+        private @NotNull Object @Nullable [] elements = new Object[16];  // null if released
+        private int count;
+
+        /**
+          Add an element to this buffer.
+          @return false if the buffer has been released.
+        */
+
+        public synchronized boolean add(@NotNull Object e)
+        {
+            if (elements == null) {
+                return false;
+            }
+            if (count == elements.length) {
+                elements = Arrays.copyOf(elements, count * 2);
+            }
+            elements[count++] = e;
+            return true;
+        }
+
+        public synchronized @Nullable Object last()
+        {
+            return count > 0 ? elements[count - 1] : null;
+        }
+
+        public synchronized int size()
+        {
+            return count;
+        }
+
+        public synchronized @NotNull Object @NotNull [] toArray()
+        {
+            return elements != null ? Arrays.copyOf(elements, count) : new Object[0];
+        }
+
+        public synchronized void release()
+        {
+            elements = null;
+            count = 0;
+        }
+    }
+}
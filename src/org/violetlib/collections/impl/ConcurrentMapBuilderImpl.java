@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.MapBuilder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A map builder that may be used by multiple threads concurrently. The bindings are collected in a concurrent hash map,
+  which does not use a global lock.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final class ConcurrentMapBuilderImpl<K,V>
+  implements MapBuilder<K,V>
+{
+    public static <K,V> @NotNull MapBuilder<K,V> create()
+    {
+        return new ConcurrentMapBuilderImpl<>();
+    }
+
+    private final @NotNull ConcurrentHashMap<K,V> bindings = new ConcurrentHashMap<>();
+
+    private ConcurrentMapBuilderImpl()
+    {
+    }
+
+    @Override
+    public boolean containsKey(@NotNull K key)
+    {
+        return bindings.containsKey(key);
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        return bindings.get(key);
+    }
+
+    @Override
+    public void put(@NotNull K key, @NotNull V value)
+    {
+        bindings.put(key, value);
+    }
+
+    @Override
+    public void add(@NotNull Binding<? extends K,? extends V> binding)
+    {
+        bindings.put(binding.getKey(), binding.getValue());
+    }
+
+    @Override
+    public void reset()
+    {
+        bindings.clear();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return bindings.isEmpty();
+    }
+
+    @Override
+    public int size()
+    {
+        return bindings.size();
+    }
+
+    /**
+      Return a map containing the current bindings. Bindings added concurrently with this call may or may not be
+      included.
+    */
+
+    @Override
+    public @NotNull IMap<K,V> value()
+    {
+        // A snapshot is needed because the map implementations expect the size to match the bindings
+        return Impl.createMap(new HashMap<>(bindings));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.violetlib.collections.IList;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ListBuilder;
+import org.violetlib.collections.MapListBuilder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A map list builder that may be used by multiple threads concurrently. The keys are managed by a concurrent hash map.
+  Each key has its own list builder, which is locked while values are added to it, so threads that add values for
+  different keys do not contend with each other.
+  <p>
+  The values added for a key by one thread appear in the list in the order in which that thread added them. The
+  relative order of values added for the same key by different threads is the order in which they obtained the lock.
+*/
+
+public final class ConcurrentMapListBuilderImpl<K,V>
+  implements MapListBuilder<K,V>
+{
+    public static <K,V> @NotNull MapListBuilder<K,V> create()
+    {
+        return new ConcurrentMapListBuilderImpl<>();
+    }
+
+    private final @NotNull ConcurrentHashMap<K,ListBuilder<V>> map = new ConcurrentHashMap<>();
+
+    private ConcurrentMapListBuilderImpl()
+    {
+    }
+
+    private @NotNull ListBuilder<V> getBuilder(@NotNull K key)
+    {
+        return map.computeIfAbsent(key, k -> IList.builder());
+    }
+
+    @Override
+    public int size()
+    {
+        return map.size();
+    }
+
+    @Override
+    public void add(@NotNull K key, @NotNull V value)
+    {
+        ListBuilder<V> b = getBuilder(key);
+        synchronized (b) {
+            b.add(value);
+        }
+    }
+
+    @Override
+    public void addAll(@NotNull K key, @NotNull IList<V> values)
+    {
+        if (!values.isEmpty()) {
+            ListBuilder<V> b = getBuilder(key);
+            synchronized (b) {
+                b.addAll(values);
+            }
+        }
+    }
+
+    @Override
+    public int getValueCount(@NotNull K key)
+    {
+        ListBuilder<V> b = map.get(key);
+        if (b == null) {
+            return 0;
+        }
+        synchronized (b) {
+            return b.size();
+        }
+    }
+
+    @Override
+    public @NotNull IList<V> getValues(@NotNull K key)
+    {
+        ListBuilder<V> b = map.get(key);
+        if (b == null) {
+            return IList.empty();
+        }
+        synchronized (b) {
+            return b.values();
+        }
+    }
+
+    @Override
+    public @NotNull IList<K> keys()
+    {
+        return IList.create(map.keySet());
+    }
+
+    @Override
+    public @NotNull IMap<K,IList<V>> value()
+    {
+        Map<K,IList<V>> result = new HashMap<>();
+        for (Map.Entry<K,ListBuilder<V>> e : map.entrySet()) {
+            ListBuilder<V> b = e.getValue();
+            synchronized (b) {
+                result.put(e.getKey(), b.values());
+            }
+        }
+        return Impl.createMap(result);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A set builder that may be used by multiple threads concurrently. The elements are collected in a concurrent hash set,
+  which does not use a global lock.
+
+  @param <V> The type of the set elements.
+*/
+
+public final class ConcurrentSetBuilderImpl<V>
+  implements SetBuilder<V>
+{
+    public static <V> @NotNull SetBuilder<V> create()
+    {
+        return new ConcurrentSetBuilderImpl<>();
+    }
+
+    private final @NotNull Set<V> elements = ConcurrentHashMap.newKeySet();
+
+    private ConcurrentSetBuilderImpl()
+    {
+    }
+
+    @Override
+    public void reset()
+    {
+        elements.clear();
+    }
+
+    @Override
+    public void add(@NotNull V element)
+    {
+        // safety check
+        if (element == null) {
+            throw new IllegalArgumentException("Element must not be null");
+        }
+
+        elements.add(element);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return elements.isEmpty();
+    }
+
+    @Override
+    public int size()
+    {
+        return elements.size();
+    }
+
+    /**
+      Return an immutable set containing the current elements. Elements added concurrently with this call may or may not
+      be included.
+      @return the set.
+    */
+
+    @Override
+    public @NotNull ISet<V> values()
+    {
+        ISet<V> bits = BitSetImpl.createOptional(elements);
+        return bits != null ? bits : SimpleSet.fromSet(elements);
+    }
+}
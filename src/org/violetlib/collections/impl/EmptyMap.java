@@ -67,7 +67,7 @@ public final @Immutable class EmptyMap<K,V>
     @Override
     public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
     {
-        return null;
+        return defaultResult;
     }
 
     @Override
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.function.Function;
+
+import org.violetlib.collections.ElementCodec;
+import org.violetlib.collections.FindVisitor;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.IList;
+import org.violetlib.collections.ListBuilder;
+import org.violetlib.collections.ListUsage;
+import org.violetlib.collections.Visitor;
+import org.violetlib.collections.util.IteratorHelper;
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+import static org.violetlib.collections.impl.CollectionFormat.MAPPED_HEADER_SIZE;
+
+/**
+  An immutable list whose elements are stored in a mapped file. The elements are decoded when they are accessed; they
+  are not retained by the list. Operations that create a modified list return a list in memory.
+
+  @param <V> The type of the elements.
+*/
+
+/* package private */ final @Immutable class FileListImpl<V>
+  extends ListImplBase<V>
+{
+    public static <V> @NotNull IList<V> create(@NotNull MappedData data, int size, @NotNull ElementCodec<? extends V> codec)
+    {
+        return new FileListImpl<>(data, size, codec);
+    }
+
+    private final @NotNull MappedData data;
+    private final @NotNull ElementCodec<? extends V> codec;
+
+    private FileListImpl(@NotNull MappedData data, int size, @NotNull ElementCodec<? extends V> codec)
+    {
+        super(size);
+
+        this.data = data;
+        this.codec = codec;
+    }
+
+    private long getPosition(int index)
+    {
+        return data.getLong(MAPPED_HEADER_SIZE + 8L * index);
+    }
+
+    private @NotNull V read(@NotNull MappedData.Input in)
+    {
+        try {
+            V element = codec.read(in);
+            if (element == null) {
+                throw new IOException("Element codec returned null");
+            }
+            return element;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public @Nullable V getOptional(int index)
+    {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        return read(data.input(getPosition(index)));
+    }
+
+    @Override
+    public @NotNull V get(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return read(data.input(getPosition(index)));
+    }
+
+    @Override
+    public @NotNull IIterator<V> iterator()
+    {
+        return new MyIterator();
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<V> visitor)
+    {
+        if (size > 0) {
+            MappedData.Input in = data.input(getPosition(0));
+            for (int i = 0; i < size; i++) {
+                visitor.visit(read(in));
+            }
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FindVisitor<V,R> visitor)
+    {
+        if (size > 0) {
+            MappedData.Input in = data.input(getPosition(0));
+            for (int i = 0; i < size; i++) {
+                R result = visitor.visit(read(in));
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public @NotNull IList<V> appending(@NotNull V value)
+    {
+        return ListOperations.appending(this, value, RRBList.builder());
+    }
+
+    @Override
+    public @NotNull IList<V> prepending(@NotNull V value)
+    {
+        return ListOperations.prepending(this, value, RRBList.builder());
+    }
+
+    @Override
+    public <R> @NotNull IList<R> map(@NotNull Function<@NotNull V,@NotNull R> mapper)
+    {
+        ListBuilder<R> b = RRBList.builder();
+        visit(v -> {
+            R replacement = mapper.apply(v);
+            if (replacement == null) {
+                throw UndefinedValueError.create("Mapper must not return null");
+            }
+            b.add(replacement);
+        });
+        return b.values();
+    }
+
+    @Override
+    public <R> @NotNull IList<R> mapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper)
+    {
+        ListBuilder<R> b = RRBList.builder();
+        visit(v -> {
+            R replacement = mapper.apply(v);
+            if (replacement != null) {
+                b.add(replacement);
+            }
+        });
+        return b.values();
+    }
+
+    @Override
+    public @NotNull IList<V> sort(@NotNull Comparator<? super V> c)
+    {
+        if (size < 2) {
+            return this;
+        }
+        V[] elements = (V[]) new Object[size];
+        int[] index = { 0 };
+        visit(v -> elements[index[0]++] = v);
+        SortSupport.sort(elements, c);
+        return RRBList.createWithArray(elements);
+    }
+
+    @Override
+    public @NotNull IList<V> optimizeForForwardTraversal()
+    {
+        return this;
+    }
+
+    @Override
+    public @NotNull IList<V> optimizeForIndexing()
+    {
+        return this;
+    }
+
+    @Override
+    public @NotNull IList<V> optimize(@NotNull ListUsage usage)
+    {
+        if (usage == ListUsage.PREPEND) {
+            return PrependOrientedList.fromList(this);
+        }
+        if (usage == ListUsage.APPEND) {
+            return AppendOrientedList.fromList(this);
+        }
+        return this;
+    }
+
+    private class MyIterator
+      extends IteratorHelper<V>
+    {
+        private final @Nullable MappedData.Input in = size > 0 ? data.input(getPosition(0)) : null;
+        private int remaining = size;
+
+        @Override
+        protected @Nullable V provide()
+        {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            assert in != null;
+            return read(in);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.ElementCodec;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.collections.util.IteratorHelper;
+import org.violetlib.util.Extensions;
+import org.violetlib.util.VObjects;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+import static org.violetlib.collections.impl.CollectionFormat.*;
+
+/**
+  An immutable map whose bindings are stored in a mapped file. A key is found using an open-addressed hash table in the
+  file; only the keys whose hash codes match are decoded. The keys and values are decoded when they are accessed; they
+  are not retained by the map. Operations that create a modified map return a map in memory.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+/* package private */ final @Immutable class FileMapImpl<K,V>
+  implements IMap<K,V>
+{
+    public static <K,V> @NotNull IMap<K,V> create(@NotNull MappedData data,
+                                                  int size,
+                                                  int capacity,
+                                                  @NotNull ElementCodec<? extends K> keyCodec,
+                                                  @NotNull ElementCodec<? extends V> valueCodec)
+    {
+        return new FileMapImpl<>(data, size, capacity, keyCodec, valueCodec);
+    }
+
+    /**
+      Return the hash code used to locate a key in the table.
+    */
+
+    public static int spread(int h)
+    {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+      Return the hash bits stored in a table slot for a spread hash code.
+    */
+
+    public static long slotHash(int h)
+    {
+        return (h & 0xFFFFFFFFL) >>> (32 - MAPPED_SLOT_HASH_BITS);
+    }
+
+    private final @NotNull MappedData data;
+    private final int size;
+    private final int capacity;  // the number of slots in the table, a power of two
+    private final @NotNull ElementCodec<? extends K> keyCodec;
+    private final @NotNull ElementCodec<? extends V> valueCodec;
+    private volatile ISet<K> keySet;
+    private volatile ISet<V> valueSet;
+    private int hashCode;  // cached, zero if not yet computed
+
+    private FileMapImpl(@NotNull MappedData data,
+                        int size,
+                        int capacity,
+                        @NotNull ElementCodec<? extends K> keyCodec,
+                        @NotNull ElementCodec<? extends V> valueCodec)
+    {
+        this.data = data;
+        this.size = size;
+        this.capacity = capacity;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    private static <T> @NotNull T read(@NotNull MappedData.Input in, @NotNull ElementCodec<? extends T> codec)
+    {
+        try {
+            T element = codec.read(in);
+            if (element == null) {
+                throw new IOException("Element codec returned null");
+            }
+            return element;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+      Find the binding for a key.
+      @return an input positioned at the value of the binding, or null if the key is not present.
+    */
+
+    private @Nullable MappedData.Input locate(@NotNull Object key)
+    {
+        int h = spread(key.hashCode());
+        long hash = slotHash(h);
+        int mask = capacity - 1;
+        int index = h & mask;
+        for (;;) {
+            long slot = data.getLong(MAPPED_HEADER_SIZE + 8L * index);
+            if (slot == 0) {
+                return null;
+            }
+            if (slot >>> MAPPED_POSITION_BITS == hash) {
+                MappedData.Input in = data.input(slot & MAPPED_POSITION_MASK);
+                if (key.equals(read(in, keyCodec))) {
+                    return in;
+                }
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private @NotNull MappedData.Input bindings()
+    {
+        return data.input(MAPPED_HEADER_SIZE + 8L * capacity);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        MappedData.Input in = locate(key);
+        return in != null ? read(in, valueCodec) : null;
+    }
+
+    @Override
+    public boolean containsKey(@NotNull Object key)
+    {
+        return locate(key) != null;
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<K,V> visitor)
+    {
+        MappedData.Input in = bindings();
+        for (int i = 0; i < size; i++) {
+            K key = read(in, keyCodec);
+            V value = read(in, valueCodec);
+            visitor.visit(key, value);
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
+    {
+        MappedData.Input in = bindings();
+        for (int i = 0; i < size; i++) {
+            K key = read(in, keyCodec);
+            V value = read(in, valueCodec);
+            R result = visitor.visit(key, value);
+            if (result != null) {
+                return result;
+            }
+        }
+        return defaultResult;
+    }
+
+    @Override
+    public @NotNull ISet<K> keySet()
+    {
+        ISet<K> ks = keySet;
+        if (ks != null) {
+            return ks;
+        }
+        return keySet = createKeySet();
+    }
+
+    @Override
+    public @NotNull ISet<V> values()
+    {
+        ISet<V> vs = valueSet;
+        if (vs != null) {
+            return vs;
+        }
+        return valueSet = createValueSet();
+    }
+
+    private @NotNull ISet<K> createKeySet()
+    {
+        SetBuilder<K> sb = ISet.builder();
+        visit((key, value) -> sb.add(key));
+        return sb.values();
+    }
+
+    private @NotNull ISet<V> createValueSet()
+    {
+        SetBuilder<V> sb = ISet.builder();
+        visit((key, value) -> sb.add(value));
+        return sb.values();
+    }
+
+    @Override
+    public @NotNull IMap<K,V> extending(@NotNull K key, @Nullable V value)
+    {
+        if (VObjects.equals(get(key), value)) {
+            return this;
+        }
+
+        Map<K,V> map = asJavaMap();
+        map.put(key, value);
+        return Impl.createMap(map);
+    }
+
+    @Override
+    public @NotNull IMap<K,V> extending(@NotNull IMap<K,V> bindings)
+    {
+        Map<K,V> map = asJavaMap();
+        bindings.visit(map::put);
+        return Impl.createMap(map);
+    }
+
+    @Override
+    public @NotNull IIterator<Binding<K,V>> iterator()
+    {
+        return new MyIterator();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int h = hashCode;
+        if (h == 0) {
+            h = MapEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj == this) {
+            return true;
+        }
+
+        IMap<?,?> otherMap = Extensions.getExtension(obj, IMap.class);
+        if (otherMap == null) {
+            return false;
+        }
+
+        return MapEquality.isEqual(this, otherMap);
+    }
+
+    private class MyIterator
+      extends IteratorHelper<Binding<K,V>>
+    {
+        private final @NotNull MappedData.Input in = bindings();
+        private int remaining = size;
+
+        @Override
+        protected @Nullable Binding<K,V> provide()
+        {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            K key = read(in, keyCodec);
+            V value = read(in, valueCodec);
+            return Binding.create(key, value);
+        }
+    }
+}
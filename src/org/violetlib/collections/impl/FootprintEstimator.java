@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.violetlib.collections.Footprint;
+import org.violetlib.collections.IMap;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Estimates the memory used by the internal representation of collections, without instrumentation. The object graph
+  is traversed starting from the collections, following the fields of the classes of this library and the contents of
+  arrays reachable from them. Objects of other classes are not traversed, except that the internal structure of the
+  standard Java collections used by some implementations is estimated from their sizes.
+*/
+
+public final @NoInstances class FootprintEstimator
+{
+    private FootprintEstimator()
+    {
+        throw new AssertionError("FootprintEstimator may not be instantiated");
+    }
+
+    private static final int HEADER_SIZE = 12;
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final @NotNull String PACKAGE_PREFIX = "org.violetlib.collections.";
+
+    public static @NotNull Footprint estimate(@NotNull Object @NotNull [] roots)
+    {
+        Map<Object,Object> all = new IdentityHashMap<>();
+        Map<String,long[]> byRepresentation = new HashMap<>();  // count, bytes
+        long total = 0;
+        long[] retained = new long[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            Map<Object,Object> visited = new IdentityHashMap<>();
+            ArrayDeque<Object> pending = new ArrayDeque<>();
+            pending.push(roots[i]);
+            while (!pending.isEmpty()) {
+                Object o = pending.pop();
+                if (visited.put(o, o) != null) {
+                    continue;
+                }
+                long bytes = visit(o, pending);
+                retained[i] += bytes;
+                if (all.put(o, o) == null) {
+                    total += bytes;
+                    long[] entry = byRepresentation.computeIfAbsent(getRepresentation(o), k -> new long[2]);
+                    entry[0]++;
+                    entry[1] += bytes;
+                }
+            }
+        }
+
+        Map<String,Long> bytes = new HashMap<>();
+        Map<String,Integer> counts = new HashMap<>();
+        for (Map.Entry<String,long[]> e : byRepresentation.entrySet()) {
+            counts.put(e.getKey(), (int) e.getValue()[0]);
+            bytes.put(e.getKey(), e.getValue()[1]);
+        }
+        return new FootprintImpl(total, retained, all.size(), Impl.createMap(bytes), Impl.createMap(counts));
+    }
+
+    /**
+      Estimate the size of an object and add the objects that it references to the pending objects.
+    */
+
+    private static long visit(@NotNull Object o, @NotNull ArrayDeque<Object> pending)
+    {
+        Class<?> c = o.getClass();
+
+        if (c.isArray()) {
+            Class<?> ct = c.getComponentType();
+            if (ct.isPrimitive()) {
+                return align(ARRAY_HEADER_SIZE + (long) java.lang.reflect.Array.getLength(o) * primitiveSize(ct));
+            }
+            Object[] a = (Object[]) o;
+            for (Object e : a) {
+                if (e != null && isTraversed(e)) {
+                    pending.push(e);
+                }
+            }
+            return align(ARRAY_HEADER_SIZE + (long) a.length * REFERENCE_SIZE);
+        }
+
+        if (!isLibraryClass(c)) {
+            return estimateForeign(o);
+        }
+
+        ClassLayout layout = LAYOUTS.get(c);
+        for (Field f : layout.referenceFields) {
+            try {
+                Object value = f.get(o);
+                if (value != null && isTraversed(value)) {
+                    pending.push(value);
+                }
+            } catch (RuntimeException | IllegalAccessException ignore) {
+                // the field is not accessible; its referent is not counted
+            }
+        }
+        return layout.size;
+    }
+
+    /**
+      Indicate whether an object referenced by a library object is part of the representation. Arrays are assumed to be
+      part of the representation. Standard Java collections are included, because some implementations use them.
+    */
+
+    private static boolean isTraversed(@NotNull Object o)
+    {
+        Class<?> c = o.getClass();
+        return c.isArray() || isLibraryClass(c) || o instanceof Collection || o instanceof Map;
+    }
+
+    private static boolean isLibraryClass(@NotNull Class<?> c)
+    {
+        return c.getName().startsWith(PACKAGE_PREFIX);
+    }
+
+    /**
+      Estimate the size of a standard Java collection from the number of elements. A hash table is assumed to have
+      one node per element and a table with a load factor of 0.75. A list is assumed to be array based.
+    */
+
+    private static long estimateForeign(@NotNull Object o)
+    {
+        if (o instanceof Set || o instanceof Map) {
+            int size = o instanceof Map ? ((Map<?,?>) o).size() : ((Set<?>) o).size();
+            long tableLength = Integer.highestOneBit(Math.max(1, (int) (size / 0.75f)) * 2 - 1);
+            long map = align(HEADER_SIZE + 6 * 4);
+            long table = align(ARRAY_HEADER_SIZE + tableLength * REFERENCE_SIZE);
+            long nodes = size * align(HEADER_SIZE + 4 + 3 * REFERENCE_SIZE);
+            long wrapper = o instanceof Set ? align(HEADER_SIZE + REFERENCE_SIZE) : 0;
+            return wrapper + map + table + nodes;
+        }
+        if (o instanceof Collection) {
+            int size = ((Collection<?>) o).size();
+            return align(HEADER_SIZE + 2 * 4 + REFERENCE_SIZE) + align(ARRAY_HEADER_SIZE + (long) size * REFERENCE_SIZE);
+        }
+        return align(HEADER_SIZE);
+    }
+
+    private static @NotNull String getRepresentation(@NotNull Object o)
+    {
+        Class<?> c = o.getClass();
+        if (c.isArray()) {
+            return c.getComponentType().getSimpleName() + "[]";
+        }
+        String name = c.getName();
+        return name.startsWith(PACKAGE_PREFIX) ? name.substring(PACKAGE_PREFIX.length()) : name;
+    }
+
+    private static int primitiveSize(@NotNull Class<?> c)
+    {
+        if (c == long.class || c == double.class) {
+            return 8;
+        }
+        if (c == int.class || c == float.class) {
+            return 4;
+        }
+        if (c == short.class || c == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size)
+    {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+      The estimated size of the instances of a class and the instance fields that may reference other objects.
+    */
+
+    private static final class ClassLayout
+    {
+        public final long size;
+        public final @NotNull List<Field> referenceFields;
+
+        public ClassLayout(@NotNull Class<?> c)
+        {
+            long size = HEADER_SIZE;
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+                for (Field f : k.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    Class<?> t = f.getType();
+                    if (t.isPrimitive()) {
+                        size += primitiveSize(t);
+                    } else {
+                        size += REFERENCE_SIZE;
+                        if (isLibraryClass(k)) {
+                            try {
+                                f.setAccessible(true);
+                                fields.add(f);
+                            } catch (RuntimeException ignore) {
+                                // the field is not accessible; its referent is not counted
+                            }
+                        }
+                    }
+                }
+            }
+            this.size = align(size);
+            this.referenceFields = fields;
+        }
+    }
+
+    private static final @NotNull ClassValue<ClassLayout> LAYOUTS = new ClassValue<ClassLayout>()
+    {
+        @Override
+        protected @NotNull ClassLayout computeValue(@NotNull Class<?> type)
+        {
+            return new ClassLayout(type);
+        }
+    };
+
+    private static final @Immutable class FootprintImpl
+      implements Footprint
+    {
+        private final long total;
+        private final long @NotNull [] retained;
+        private final int objectCount;
+        private final @NotNull IMap<String,Long> bytes;
+        private final @NotNull IMap<String,Integer> counts;
+
+        public FootprintImpl(long total,
+                             long @NotNull [] retained,
+                             int objectCount,
+                             @NotNull IMap<String,Long> bytes,
+                             @NotNull IMap<String,Integer> counts)
+        {
+            this.total = total;
+            this.retained = retained;
+            this.objectCount = objectCount;
+            this.bytes = bytes;
+            this.counts = counts;
+        }
+
+        @Override
+        public int getRootCount()
+        {
+            return retained.length;
+        }
+
+        @Override
+        public long getTotalBytes()
+        {
+            return total;
+        }
+
+        @Override
+        public long getRetainedBytes(int index)
+          throws IndexOutOfBoundsException
+        {
+            if (index < 0 || index >= retained.length) {
+                throw new IndexOutOfBoundsException("Invalid root index: " + index);
+            }
+            return retained[index];
+        }
+
+        @Override
+        public long getSharedBytes()
+        {
+            long sum = 0;
+            for (long r : retained) {
+                sum += r;
+            }
+            return sum - total;
+        }
+
+        @Override
+        public int getObjectCount()
+        {
+            return objectCount;
+        }
+
+        @Override
+        public @NotNull IMap<String,Long> getBytesByRepresentation()
+        {
+            return bytes;
+        }
+
+        @Override
+        public @NotNull IMap<String,Integer> getCountsByRepresentation()
+        {
+            return counts;
+        }
+
+        @Override
+        public @NotNull String toString()
+        {
+            return "total=" + total + " shared=" + getSharedBytes() + " objects=" + objectCount;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.util.Extensions;
+import org.violetlib.util.VObjects;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable map that is optimized for lookup. The bindings are stored in a single array of
+  alternating keys and values using open addressing with Robin Hood linear probing. The capacity is a power of two.
+  The spread hash code of each key is cached in a parallel array.
+  <p>
+  This representation does not support substructure sharing. Operations that extend the map copy the bindings into a
+  new map of the default representation.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class FrozenMapImpl<K,V>
+  implements IMap<K,V>
+{
+    public static <K,V> @NotNull IMap<K,V> create(@NotNull Map<? extends K, ? extends V> bindings)
+    {
+        return new FrozenMapImpl<>(bindings);
+    }
+
+    private static final int MINIMUM_CAPACITY = 4;
+
+    private final @Nullable Object @NotNull [] table;  // key at 2i, value at 2i+1; null key means an empty slot
+    private final int @NotNull [] hashes;
+    private final int mask;
+    private final int size;
+    private volatile ISet<K> keySet;
+    private volatile ISet<V> valueSet;
+
+    private FrozenMapImpl(@NotNull Map<? extends K, ? extends V> bindings)
+    {
+        int capacity = capacityFor(bindings.size());
+        this.table = new Object[capacity * 2];
+        this.hashes = new int[capacity];
+        this.mask = capacity - 1;
+        int count = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : bindings.entrySet()) {
+            K key = entry.getKey();
+            if (key != null) {
+                V value = entry.getValue();
+                if (value != null) {
+                    insert(key, value);
+                    count++;
+                }
+            }
+        }
+        this.size = count;
+    }
+
+    /**
+      Return the capacity for the specified number of bindings. The maximum ratio of bindings to slots is 3/4.
+    */
+
+    private static int capacityFor(int count)
+    {
+        int minimum = Math.max(MINIMUM_CAPACITY, count + (count + 2) / 3);
+        int capacity = Integer.highestOneBit(minimum);
+        return capacity < minimum ? capacity << 1 : capacity;
+    }
+
+    /**
+      Insert a binding during construction. The key must not already be present.
+    */
+
+    private void insert(@NotNull Object key, @NotNull Object value)
+    {
+        int hash = spread(key.hashCode());
+        int index = hash & mask;
+        int distance = 0;
+        for (;;) {
+            int slot = index << 1;
+            Object existingKey = table[slot];
+            if (existingKey == null) {
+                table[slot] = key;
+                table[slot + 1] = value;
+                hashes[index] = hash;
+                return;
+            }
+            int existingHash = hashes[index];
+            int existingDistance = (index - existingHash) & mask;
+            if (existingDistance < distance) {
+                // Robin Hood: the displaced binding continues the search
+                Object existingValue = table[slot + 1];
+                table[slot] = key;
+                table[slot + 1] = value;
+                hashes[index] = hash;
+                key = existingKey;
+                value = existingValue;
+                hash = existingHash;
+                distance = existingDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+    }
+
+    /**
+      Return the slot index of the specified key.
+      @return the slot index, or -1 if the key is not present.
+    */
+
+    private int indexOf(@NotNull Object key)
+    {
+        int hash = spread(key.hashCode());
+        int index = hash & mask;
+        for (int distance = 0; ; distance++) {
+            Object testKey = table[index << 1];
+            if (testKey == null) {
+                return -1;
+            }
+            int testHash = hashes[index];
+            if (testHash == hash && (key == testKey || key.equals(testKey))) {
+                return index;
+            }
+            if (((index - testHash) & mask) < distance) {
+                // A binding for the key would have displaced this one
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        int index = indexOf(key);
+        return index >= 0 ? (V) table[(index << 1) + 1] : null;
+    }
+
+    @Override
+    public boolean containsKey(@NotNull Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<K,V> visitor)
+    {
+        int length = table.length;
+        for (int slot = 0; slot < length; slot += 2) {
+            Object key = table[slot];
+            if (key != null) {
+                visitor.visit((K) key, (V) table[slot + 1]);
+            }
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
+    {
+        int length = table.length;
+        for (int slot = 0; slot < length; slot += 2) {
+            Object key = table[slot];
+            if (key != null) {
+                R result = visitor.visit((K) key, (V) table[slot + 1]);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return defaultResult;
+    }
+
+    @Override
+    public @NotNull ISet<K> keySet()
+    {
+        ISet<K> ks = keySet;
+        if (ks != null) {
+            return ks;
+        }
+        return keySet = createSet(0);
+    }
+
+    @Override
+    public @NotNull ISet<V> values()
+    {
+        ISet<V> vs = valueSet;
+        if (vs != null) {
+            return vs;
+        }
+        return valueSet = createSet(1);
+    }
+
+    private <E> @NotNull ISet<E> createSet(int offset)
+    {
+        SetBuilder<E> sb = ISet.builder();
+        int length = table.length;
+        for (int slot = 0; slot < length; slot += 2) {
+            if (table[slot] != null) {
+                sb.add((E) table[slot + offset]);
+            }
+        }
+        return sb.values();
+    }
+
+    @Override
+    public @NotNull IMap<K,V> extending(@NotNull K key, @Nullable V value)
+    {
+        if (VObjects.equals(get(key), value)) {
+            return this;
+        }
+
+        Map<K,V> map = asJavaMap();
+        if (value != null) {
+            map.put(key, value);
+        } else {
+            map.remove(key);
+        }
+        return Impl.createMap(map);
+    }
+
+    @Override
+    public @NotNull IMap<K,V> extending(@NotNull IMap<K,V> bindings)
+    {
+        if (bindings.isEmpty()) {
+            return this;
+        }
+        Map<K,V> map = asJavaMap();
+        bindings.visit(map::put);
+        return Impl.createMap(map);
+    }
+
+    @Override
+    public @NotNull IIterator<Binding<K,V>> iterator()
+    {
+        return new MyIterator();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return MapEquality.computeHashCode(this);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj == this) {
+            return true;
+        }
+
+        IMap<?,?> otherMap = Extensions.getExtension(obj, IMap.class);
+        if (otherMap == null) {
+            return false;
+        }
+
+        return MapEquality.isEqual(this, otherMap);
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private class MyIterator
+      implements IIterator<Binding<K,V>>
+    {
+        private int nextSlot;
+
+        public MyIterator()
+        {
+            advance(0);
+        }
+
+        private void advance(int slot)
+        {
+            int length = table.length;
+            while (slot < length && table[slot] == null) {
+                slot += 2;
+            }
+            nextSlot = slot;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextSlot < table.length;
+        }
+
+        @Override
+        public @NotNull Binding<K,V> next()
+        {
+            int slot = nextSlot;
+            if (slot >= table.length) {
+                throw new NoSuchElementException();
+            }
+            advance(slot + 2);
+            return Binding.create((K) table[slot], (V) table[slot + 1]);
+        }
+    }
+}
@@ -10,6 +10,7 @@ package org.violetlib.collections.impl;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
 import org.violetlib.collections.Binding;
@@ -42,6 +43,7 @@ public final @Immutable class HashMapImpl<K,V>
     private final int size;
     private volatile ISet<K> keySet;
     private volatile ISet<V> valueSet;
+    private int hashCode;  // cached, zero if not yet computed
 
     private HashMapImpl(@NotNull Map<? extends K, ? extends V> bindings)
     {
@@ -77,6 +79,20 @@ public final @Immutable class HashMapImpl<K,V>
         this.buckets = buckets;
     }
 
+    /**
+      Return a map with the same keys and structure as this map, whose values are obtained by applying a function to
+      the bindings of this map. The keys are not rehashed.
+      @param mapper The function. If it returns null for a binding, the key is not a key of the returned map.
+    */
+
+    public <R> @NotNull IMap<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> mapper)
+    {
+        Buckets<K,R> newBuckets = buckets.mapValues(mapper);
+        int[] count = { 0 };
+        newBuckets.visit(b -> b.visit((k, v) -> count[0]++));
+        return count[0] > 0 ? new HashMapImpl<>(count[0], newBuckets) : IMap.empty();
+    }
+
     @Override
     public @NotNull IIterator<Binding<K,V>> iterator()
     {
@@ -197,7 +213,12 @@ public final @Immutable class HashMapImpl<K,V>
     @Override
     public int hashCode()
     {
-        return MapEquality.computeHashCode(this);
+        int h = hashCode;
+        if (h == 0) {
+            h = MapEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
     }
 
     @Override
@@ -243,6 +264,13 @@ public final @Immutable class HashMapImpl<K,V>
 
         <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor);
 
+        /**
+          Return a container with the same number of buckets whose buckets are obtained by mapping the values of
+          these buckets.
+        */
+
+        <R> @NotNull Buckets<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> mapper);
+
         @NotNull ISet<K> createKeySet();
 
         @NotNull ISet<V> createValueSet();
@@ -287,6 +315,15 @@ public final @Immutable class HashMapImpl<K,V>
         void visit(@NotNull Visitor<K,V> visitor);
 
         <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor);
+
+        /**
+          Return a bucket containing the same keys as this bucket, except the keys whose values are mapped to null,
+          bound to the mapped values.
+          @param mapper The function that maps a binding to a new value.
+          @return a bucket as described, or null if the result would be an empty bucket.
+        */
+
+        <R> @Nullable Bucket<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> mapper);
     }
 
     /**
@@ -407,6 +444,19 @@ public final @Immutable class HashMapImpl<K,V>
             return null;
         }
 
+        @Override
+        public <R> @NotNull Buckets<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> mapper)
+        {
+            Bucket<K,R>[] newBuckets = (Bucket<K,R>[]) new Bucket<?,?>[size];
+            for (int i = 0; i < size; i++) {
+                Bucket<K,V> b = buckets[i];
+                if (b != null) {
+                    newBuckets[i] = b.mapValues(mapper);
+                }
+            }
+            return new BucketsImpl<>(size, mask, newBuckets);
+        }
+
         @Override
         public @NotNull ISet<K> createKeySet()
         {
@@ -532,6 +582,14 @@ public final @Immutable class HashMapImpl<K,V>
             }
             return next != null ? next.find(visitor) : null;
         }
+
+        @Override
+        public <R> @Nullable LinkedListBucket<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> f)
+        {
+            LinkedListBucket<K,R> mappedNext = next != null ? next.mapValues(f) : null;
+            R mappedValue = f.apply(key, value);
+            return mappedValue != null ? new LinkedListBucket<>(key, hash, mappedValue, mappedNext) : mappedNext;
+        }
     }
 
     private static int spread(int hash)
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable map that supports efficient extension. The bindings are stored in a Patricia trie
+  indexed by the hash codes of the keys. Each leaf of the trie holds the bindings whose keys have the same hash code,
+  as an array of alternating keys and values. Extending the map creates a number of new nodes proportional to the depth
+  of the trie, which is bounded by the number of bits in a hash code; all other nodes are shared with the original map.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class HashTrieMapImpl<K,V>
+  implements IMap<K,V>
+{
+    private static final @NotNull HashTrieMapImpl<?,?> EMPTY = new HashTrieMapImpl<>(null, 0);
+
+    public static <K,V> @NotNull HashTrieMapImpl<K,V> empty()
+    {
+        return (HashTrieMapImpl) EMPTY;
+    }
+
+    public static <K,V> @NotNull HashTrieMapImpl<K,V> create(@NotNull Map<? extends K, ? extends V> bindings)
+    {
+        HashTrieMapImpl<K,V> result = empty();
+        for (Map.Entry<? extends K, ? extends V> e : bindings.entrySet()) {
+            K key = e.getKey();
+            V value = e.getValue();
+            if (key != null && value != null) {
+                result = result.extending(key, value);
+            }
+        }
+        return result;
+    }
+
+    private final @Nullable LongTrie.Node root;
+    private final int size;
+    private volatile ISet<K> keySet;
+    private volatile ISet<V> valueSet;
+    private int hashCode;  // cached, zero if not yet computed
+
+    private HashTrieMapImpl(@Nullable LongTrie.Node root, int size)
+    {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+      Create a map from a trie whose leaf values are buckets of alternating keys and values.
+    */
+
+    /* package private */ static <K,V> @NotNull HashTrieMapImpl<K,V> createFromTrie(@Nullable LongTrie.Node root)
+    {
+        int size = 0;
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            size += ((Object[]) it.next().value).length / 2;
+        }
+        return create(root, size);
+    }
+
+    /* package private */ @Nullable LongTrie.Node getTrie()
+    {
+        return root;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        return (V) lookup(key);
+    }
+
+    @Override
+    public boolean containsKey(@NotNull Object key)
+    {
+        return lookup(key) != null;
+    }
+
+    private @Nullable Object lookup(@NotNull Object key)
+    {
+        Object[] bucket = (Object[]) LongTrie.get(root, key.hashCode());
+        if (bucket != null) {
+            for (int i = 0; i < bucket.length; i += 2) {
+                Object k = bucket[i];
+                if (k == key || k.equals(key)) {
+                    return bucket[i + 1];
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<K,V> visitor)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                visitor.visit((K) bucket[i], (V) bucket[i + 1]);
+            }
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                R result = visitor.visit((K) bucket[i], (V) bucket[i + 1]);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return defaultResult;
+    }
+
+    @Override
+    public @NotNull ISet<K> keySet()
+    {
+        ISet<K> ks = keySet;
+        if (ks != null) {
+            return ks;
+        }
+        return keySet = createSet(0);
+    }
+
+    @Override
+    public @NotNull ISet<V> values()
+    {
+        ISet<V> vs = valueSet;
+        if (vs != null) {
+            return vs;
+        }
+        return valueSet = createSet(1);
+    }
+
+    private <E> @NotNull ISet<E> createSet(int offset)
+    {
+        SetBuilder<E> sb = ISet.builder();
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                sb.add((E) bucket[i + offset]);
+            }
+        }
+        return sb.values();
+    }
+
+    @Override
+    public @NotNull HashTrieMapImpl<K,V> extending(@NotNull K key, @Nullable V value)
+    {
+        int hash = key.hashCode();
+        Object[] bucket = (Object[]) LongTrie.get(root, hash);
+        int index = -1;
+        if (bucket != null) {
+            for (int i = 0; i < bucket.length; i += 2) {
+                Object k = bucket[i];
+                if (k == key || k.equals(key)) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+
+        if (value == null) {
+            if (index < 0) {
+                return this;
+            }
+            Object[] newBucket = null;
+            if (bucket.length > 2) {
+                newBucket = new Object[bucket.length - 2];
+                System.arraycopy(bucket, 0, newBucket, 0, index);
+                System.arraycopy(bucket, index + 2, newBucket, index, bucket.length - index - 2);
+            }
+            return create(LongTrie.with(root, hash, newBucket), size - 1);
+        }
+
+        if (index >= 0) {
+            if (bucket[index + 1].equals(value)) {
+                return this;
+            }
+            Object[] newBucket = bucket.clone();
+            newBucket[index + 1] = value;
+            return new HashTrieMapImpl<>(LongTrie.with(root, hash, newBucket), size);
+        }
+
+        Object[] newBucket;
+        if (bucket == null) {
+            newBucket = new Object[] { key, value };
+        } else {
+            newBucket = new Object[bucket.length + 2];
+            System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+            newBucket[bucket.length] = key;
+            newBucket[bucket.length + 1] = value;
+        }
+        return new HashTrieMapImpl<>(LongTrie.with(root, hash, newBucket), size + 1);
+    }
+
+    private static <K,V> @NotNull HashTrieMapImpl<K,V> create(@Nullable LongTrie.Node root, int size)
+    {
+        return root != null ? new HashTrieMapImpl<>(root, size) : empty();
+    }
+
+    @Override
+    public @NotNull HashTrieMapImpl<K,V> extending(@NotNull IMap<K,V> bindings)
+    {
+        HashTrieMapImpl<K,V> result = this;
+        for (Binding<K,V> b : bindings) {
+            result = result.extending(b.getKey(), b.getValue());
+        }
+        return result;
+    }
+
+    /**
+      Return a map with the same keys as this map, with each value replaced by the result of a function. The trie of
+      the new map has the same shape as the trie of this map, so the keys are not rehashed.
+      @param mapper The function, which is called with each key and its value. If it returns null, the key is omitted.
+    */
+
+    public <R> @NotNull HashTrieMapImpl<K,R> mapValues(@NotNull BiFunction<? super K,? super V,? extends R> mapper)
+    {
+        int[] count = new int[1];
+        LongTrie.Node newRoot = LongTrie.mapValues(root, o -> {
+            Object[] bucket = (Object[]) o;
+            Object[] newBucket = new Object[bucket.length];
+            int n = 0;
+            for (int i = 0; i < bucket.length; i += 2) {
+                R value = mapper.apply((K) bucket[i], (V) bucket[i + 1]);
+                if (value != null) {
+                    newBucket[n++] = bucket[i];
+                    newBucket[n++] = value;
+                }
+            }
+            count[0] += n / 2;
+            return n == 0 ? null : n < newBucket.length ? Arrays.copyOf(newBucket, n) : newBucket;
+        });
+        return create(newRoot, count[0]);
+    }
+
+    @Override
+    public @NotNull IIterator<Binding<K,V>> iterator()
+    {
+        return new MyIterator();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int h = hashCode;
+        if (h == 0) {
+            h = MapEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj == this) {
+            return true;
+        }
+
+        IMap<?,?> otherMap = Extensions.getExtension(obj, IMap.class);
+        if (otherMap == null) {
+            return false;
+        }
+
+        return MapEquality.isEqual(this, otherMap);
+    }
+
+    private class MyIterator
+      implements IIterator<Binding<K,V>>
+    {
+        private final @NotNull LongTrie.LeafIterator leaves = new LongTrie.LeafIterator(root);
+        private @Nullable Object @NotNull [] bucket = new Object[0];
+        private int index;
+
+        @Override
+        public boolean hasNext()
+        {
+            return index < bucket.length || leaves.hasNext();
+        }
+
+        @Override
+        public @NotNull Binding<K,V> next()
+        {
+            if (index >= bucket.length) {
+                if (!leaves.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                bucket = (Object[]) leaves.next().value;
+                index = 0;
+            }
+            int i = index;
+            index += 2;
+            return Binding.create((K) bucket[i], (V) bucket[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.FindVisitor;
+import org.violetlib.collections.ICollection;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.collections.Visitor;
+import org.violetlib.collections.util.MappedIterator;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+import static java.util.Spliterator.*;
+
+/**
+  An implementation of an immutable set that supports efficient extension and removal. The elements are stored as the
+  keys of a {@link HashTrieMapImpl}, so extending or removing from the set shares most of its structure with the
+  original set.
+
+  @param <V> The type of the elements.
+*/
+
+public final @Immutable class HashTrieSetImpl<V>
+  implements ISet<V>
+{
+    private static final @NotNull HashTrieSetImpl<?> EMPTY = new HashTrieSetImpl<>(HashTrieMapImpl.empty());
+
+    public static <V> @NotNull HashTrieSetImpl<V> empty()
+    {
+        return (HashTrieSetImpl) EMPTY;
+    }
+
+    private final @NotNull HashTrieMapImpl<V,V> map;
+    private int hashCode;  // cached, zero if not yet computed
+
+    private HashTrieSetImpl(@NotNull HashTrieMapImpl<V,V> map)
+    {
+        this.map = map;
+    }
+
+    private @NotNull HashTrieSetImpl<V> create(@NotNull HashTrieMapImpl<V,V> newMap)
+    {
+        if (newMap == map) {
+            return this;
+        }
+        return newMap.isEmpty() ? empty() : new HashTrieSetImpl<>(newMap);
+    }
+
+    /* package private */ @NotNull HashTrieMapImpl<V,V> getMap()
+    {
+        return map;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return map.isEmpty();
+    }
+
+    @Override
+    public int size()
+    {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(@NotNull Object target)
+    {
+        return map.containsKey(target);
+    }
+
+    @Override
+    public @NotNull IIterator<V> iterator()
+    {
+        Function<Binding<V,V>,V> f = Binding::getKey;
+        return IIterator.from(MappedIterator.create(map, f));
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<V> visitor)
+    {
+        map.visit((k, v) -> visitor.visit(k));
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FindVisitor<V,R> visitor)
+    {
+        return map.find((k, v) -> visitor.visit(k), null);
+    }
+
+    @Override
+    public @NotNull HashTrieSetImpl<V> extending(@NotNull V value)
+    {
+        return create(map.extending(value, value));
+    }
+
+    @Override
+    public @NotNull HashTrieSetImpl<V> extendingAll(@NotNull ICollection<? extends V> values)
+    {
+        HashTrieMapImpl<V,V> newMap = map;
+        for (V v : values) {
+            newMap = newMap.extending(v, v);
+        }
+        return create(newMap);
+    }
+
+    @Override
+    public @NotNull HashTrieSetImpl<V> removing(@NotNull Object value)
+    {
+        return create(map.extending((V) value, null));
+    }
+
+    @Override
+    public @NotNull HashTrieSetImpl<V> removingAll(@NotNull ISet<?> values)
+    {
+        HashTrieMapImpl<V,V> newMap = map;
+        for (Object v : values) {
+            newMap = newMap.extending((V) v, null);
+        }
+        return create(newMap);
+    }
+
+    @Override
+    public <R> @NotNull ISet<R> map(@NotNull Function<V,R> mapper)
+    {
+        SetBuilder<R> b = ISet.builder();
+        visit(v -> {
+            R replacement = mapper.apply(v);
+            if (replacement != null) {
+                b.add(replacement);
+            }
+        });
+        return b.values();
+    }
+
+    @Override
+    public @NotNull Spliterator<V> spliterator()
+    {
+        return Spliterators.spliterator(iterator(), size(), IMMUTABLE | NONNULL | SIZED | DISTINCT);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int h = hashCode;
+        if (h == 0) {
+            h = SetEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj == this) {
+            return true;
+        }
+
+        ISet<?> otherSet = Extensions.getExtension(obj, ISet.class);
+        if (otherSet == null) {
+            return false;
+        }
+
+        return SetEquality.isEqual(this, otherSet);
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        StringBuilder b = new StringBuilder();
+        b.append('{');
+        for (V e : this) {
+            if (b.length() > 1) {
+                b.append(' ');
+            }
+            b.append(e.toString());
+        }
+        b.append('}');
+        return b.toString();
+    }
+}
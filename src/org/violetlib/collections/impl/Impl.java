@@ -8,8 +8,10 @@
 
 package org.violetlib.collections.impl;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.violetlib.collections.*;
 
@@ -50,7 +52,21 @@ public final @NoInstances class Impl
     public static <V> @NotNull ISet<V> createSet(@NotNull Iterable<? extends V> values)
       throws IllegalArgumentException
     {
-        return SimpleSet.collect(values);
+        if (values instanceof SimpleSet || values instanceof BitSetImpl) {
+            return (ISet) values;
+        }
+        Object[] elements;
+        if (values instanceof ICollection) {
+            elements = ((ICollection<?>) values).toJavaArray(new Object[0]);
+        } else {
+            ArrayList<Object> list = new ArrayList<>();
+            for (V v : values) {
+                list.add(v);
+            }
+            elements = list.toArray();
+        }
+        ISet<V> bits = BitSetImpl.createOptional(elements, elements.length);
+        return bits != null ? bits : SimpleSet.create((V[]) elements);
     }
 
     public static <V> @NotNull IIterator<V> concatenateIterators(@NotNull IList<? extends IIterator<V>> sources)
@@ -62,7 +78,8 @@ public final @NoInstances class Impl
     public static <V> @NotNull ISet<V> setOf(@NotNull V... elements)
       throws IllegalArgumentException
     {
-        return SimpleSet.create(elements);
+        ISet<V> bits = BitSetImpl.createOptional(elements, elements.length);
+        return bits != null ? bits : SimpleSet.create(elements);
     }
 
     public static <V> @NotNull SetBuilder<V> getSetBuilder()
@@ -75,6 +92,16 @@ public final @NoInstances class Impl
         return OrderedSetBuilderImpl.create();
     }
 
+    public static <V> @NotNull SetBuilder<V> getConcurrentSetBuilder()
+    {
+        return ConcurrentSetBuilderImpl.create();
+    }
+
+    public static <V> @NotNull ListBuilder<V> getConcurrentListBuilder()
+    {
+        return ConcurrentListBuilderImpl.create();
+    }
+
     public static @NotNull Comparator<Object> getUniversalComparator()
     {
         return UniversalComparator.get();
@@ -99,21 +126,58 @@ public final @NoInstances class Impl
         return HashMapImpl.create(map);
     }
 
+    public static <K,V> @NotNull IMap<K,V> createFrozenMap(@NotNull Map<? extends K,? extends V> map)
+    {
+        if (map.isEmpty()) {
+            return EmptyMap.get();
+        }
+
+        int count = map.size();
+        if (count == 1) {
+            return ArrayMapImpl.create(map);
+        }
+
+        return FrozenMapImpl.create(map);
+    }
+
     public static <K,V> @NotNull IMap<K,V> createWeakMap(@NotNull Map<? extends K,? extends V> map)
     {
         return WeakMap.from(map);
     }
 
+    public static <K,V,E> @NotNull IMap<K,V> createMappedMap(@NotNull IMap<K,E> base,
+                                                             @NotNull Function<E,V> mapper,
+                                                             boolean isMemoized)
+    {
+        return isMemoized ? MappedMap.createMemoized(base, mapper) : MappedMap.create(base, mapper);
+    }
+
+    public static <K,V,E> @NotNull IMap<K,V> createMaterializedMappedMap(@NotNull IMap<K,E> base,
+                                                                         @NotNull Function<E,V> mapper)
+    {
+        return MappedMap.createMaterialized(base, mapper);
+    }
+
     public static <K,V> @NotNull MapBuilder<K,V> getMapBuilder()
     {
         return MapBuilderImpl.create();
     }
 
+    public static <K,V> @NotNull MapBuilder<K,V> getFrozenMapBuilder()
+    {
+        return MapBuilderImpl.createFrozen();
+    }
+
     public static <K,V> @NotNull MapBuilder<K,V> getOrderedMapBuilder()
     {
         return OrderedMapBuilder.create();
     }
 
+    public static <K,V> @NotNull MapBuilder<K,V> getConcurrentMapBuilder()
+    {
+        return ConcurrentMapBuilderImpl.create();
+    }
+
     public static <K,V> @NotNull UnorderedMapListBuilder<K,V> getMapListBuilder()
     {
         return MapListBuilderImpl.create();
@@ -124,6 +188,11 @@ public final @NoInstances class Impl
         return OrderedMapListBuilderImpl.create();
     }
 
+    public static <K,V> @NotNull MapListBuilder<K,V> getConcurrentMapListBuilder()
+    {
+        return ConcurrentMapListBuilderImpl.create();
+    }
+
     public static <K,V> @NotNull MapSetBuilder<K,V> getMapSetBuilder()
     {
         return MapSetBuilderImpl.create(false);
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.function.BinaryOperator;
+
+import org.violetlib.collections.IIntMap;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.IntMapBuilder;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable map with int keys, using a Patricia trie. The keys are stored as long values, which
+  preserves their order.
+
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class IntMapImpl<V>
+  implements IIntMap<V>
+{
+    private static final @NotNull IntMapImpl<?> EMPTY = new IntMapImpl<>(null);
+
+    public static <V> @NotNull IIntMap<V> empty()
+    {
+        return (IIntMap) EMPTY;
+    }
+
+    public static <V> @NotNull IntMapBuilder<V> builder()
+    {
+        return new Builder<>();
+    }
+
+    private static <V> @NotNull IIntMap<V> create(@Nullable LongTrie.Node root)
+    {
+        return root != null ? new IntMapImpl<>(root) : empty();
+    }
+
+    private final @Nullable LongTrie.Node root;
+
+    private IntMapImpl(@Nullable LongTrie.Node root)
+    {
+        this.root = root;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return root == null;
+    }
+
+    @Override
+    public int size()
+    {
+        return LongTrie.size(root);
+    }
+
+    @Override
+    public @Nullable V get(int key)
+    {
+        return (V) LongTrie.get(root, key);
+    }
+
+    @Override
+    public boolean containsKey(int key)
+    {
+        return LongTrie.get(root, key) != null;
+    }
+
+    @Override
+    public int firstKey()
+      throws IllegalStateException
+    {
+        LongTrie.Leaf leaf = LongTrie.getFirst(root);
+        if (leaf == null) {
+            throw new IllegalStateException("Map is empty");
+        }
+        return (int) leaf.getKey();
+    }
+
+    @Override
+    public int lastKey()
+      throws IllegalStateException
+    {
+        LongTrie.Leaf leaf = LongTrie.getLast(root);
+        if (leaf == null) {
+            throw new IllegalStateException("Map is empty");
+        }
+        return (int) leaf.getKey();
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<V> visitor)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            visitor.visit((int) leaf.getKey(), (V) leaf.value);
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FVisitor<V,R> visitor, @Nullable R defaultResult)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            R result = visitor.visit((int) leaf.getKey(), (V) leaf.value);
+            if (result != null) {
+                return result;
+            }
+        }
+        return defaultResult;
+    }
+
+    @Override
+    public @NotNull IIntMap<V> extending(int key, @Nullable V value)
+    {
+        LongTrie.Node newRoot = LongTrie.with(root, key, value);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull IIntMap<V> extending(@NotNull IIntMap<V> bindings)
+    {
+        LongTrie.Node newRoot = LongTrie.merge(root, getRoot(bindings), null);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull IIntMap<V> merge(@NotNull IIntMap<V> other, @NotNull BinaryOperator<V> combiner)
+    {
+        LongTrie.Node newRoot = LongTrie.merge(root, getRoot(other), (BinaryOperator) combiner);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull IMap<Integer,V> asMap()
+    {
+        return root != null ? TrieMapAdapter.createIntKeyed(root) : IMap.empty();
+    }
+
+    private static @Nullable LongTrie.Node getRoot(@NotNull IIntMap<?> map)
+    {
+        if (map instanceof IntMapImpl) {
+            return ((IntMapImpl<?>) map).root;
+        }
+        LongTrie.Node[] result = new LongTrie.Node[1];
+        map.visit((k, v) -> result[0] = LongTrie.with(result[0], k, v));
+        return result[0];
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            hash += (int) leaf.getKey() ^ leaf.value.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof IntMapImpl) {
+            return LongTrie.isEqual(root, ((IntMapImpl<?>) obj).root);
+        }
+        return false;
+    }
+
+    private static final class Builder<V>
+      implements IntMapBuilder<V>
+    {
+        private @Nullable LongTrie.Node root;
+
+        @Override
+        public boolean containsKey(int key)
+        {
+            return LongTrie.get(root, key) != null;
+        }
+
+        @Override
+        public @Nullable V get(int key)
+        {
+            return (V) LongTrie.get(root, key);
+        }
+
+        @Override
+        public void put(int key, @NotNull V value)
+        {
+            if (value == null) {
+                throw new IllegalArgumentException("Null values are not permitted");
+            }
+            root = LongTrie.with(root, key, value);
+        }
+
+        @Override
+        public void addAll(@NotNull IIntMap<V> bindings)
+        {
+            root = LongTrie.merge(root, getRoot(bindings), null);
+        }
+
+        @Override
+        public void remove(int key)
+        {
+            root = LongTrie.with(root, key, null);
+        }
+
+        @Override
+        public void reset()
+        {
+            root = null;
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return root == null;
+        }
+
+        @Override
+        public int size()
+        {
+            return LongTrie.size(root);
+        }
+
+        @Override
+        public @NotNull IIntMap<V> value()
+        {
+            return create(root);
+        }
+    }
+}
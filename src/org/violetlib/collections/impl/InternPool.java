@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.*;
+
+/**
+  A pool of canonical instances of immutable values. The pool holds the canonical instances using weak references, so
+  an instance that is no longer used elsewhere is removed from the pool. The pool is indexed by the hash codes of the
+  values, which are computed once when a value is interned and retained by the pool entry. The pool may be used by
+  multiple threads concurrently.
+
+  @param <T> The type of the values.
+*/
+
+public final class InternPool<T>
+{
+    public static <T> @NotNull InternPool<T> create()
+    {
+        return new InternPool<>();
+    }
+
+    private final @NotNull ConcurrentHashMap<Key,Entry> entries = new ConcurrentHashMap<>();
+    private final @NotNull ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+
+    private InternPool()
+    {
+    }
+
+    /**
+      Return the canonical instance of a value. If the pool contains a value equal to the specified value, that value is
+      returned. Otherwise, the specified value is added to the pool and returned.
+    */
+
+    public @NotNull T intern(@NotNull T value)
+    {
+        expunge();
+
+        Probe probe = new Probe(value);
+        for (;;) {
+            Entry existing = entries.get(probe);
+            if (existing != null) {
+                Object canonical = existing.get();
+                if (canonical != null) {
+                    hits.increment();
+                    return (T) canonical;
+                }
+                // The entry was cleared after the lookup matched it; remove it and try again
+                entries.remove(existing, existing);
+                continue;
+            }
+            Entry entry = new Entry(value, probe.hash, queue);
+            if (entries.putIfAbsent(entry, entry) == null) {
+                misses.increment();
+                return value;
+            }
+        }
+    }
+
+    /**
+      Return the number of calls to {@link #intern} that returned an existing instance.
+    */
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+      Return the number of calls to {@link #intern} that added a new instance to the pool.
+    */
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+      Return the number of instances in the pool. The count may include instances that have been collected but not yet
+      removed.
+    */
+
+    public int size()
+    {
+        expunge();
+        return entries.size();
+    }
+
+    private void expunge()
+    {
+        Reference<?> r;
+        while ((r = queue.poll()) != null) {
+            entries.remove(r, r);
+        }
+    }
+
+    /**
+      The keys of the pool. A probe and an entry match if their values are equal. A cleared entry matches only itself.
+    */
+
+    private interface Key
+    {
+        @Nullable Object value();
+    }
+
+    private static final class Probe
+      implements Key
+    {
+        private final @NotNull Object value;
+        private final int hash;
+
+        public Probe(@NotNull Object value)
+        {
+            this.value = value;
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public @NotNull Object value()
+        {
+            return value;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj)
+        {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Object other = ((Key) obj).value();
+                return other != null && (other == value || value.equals(other));
+            }
+            return false;
+        }
+    }
+
+    private static final class Entry
+      extends WeakReference<Object>
+      implements Key
+    {
+        private final int hash;
+
+        public Entry(@NotNull Object value, int hash, @NotNull ReferenceQueue<Object> queue)
+        {
+            super(value, queue);
+            this.hash = hash;
+        }
+
+        @Override
+        public @Nullable Object value()
+        {
+            return get();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj)
+        {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Object value = get();
+                Object other = ((Key) obj).value();
+                return value != null && other != null && (other == value || value.equals(other));
+            }
+            return false;
+        }
+    }
+}
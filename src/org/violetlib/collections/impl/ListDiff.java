@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.violetlib.collections.IList;
+import org.violetlib.collections.ListPatch;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.getMaximumTreeSize;
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.getSizes;
+
+/**
+  Computes and applies list patches.
+  <p>
+  When both lists are RRB lists, the trees are compared level by level, starting with the subtrees at the lowest
+  common level. At each level, the sequences of subtrees are compared using the Myers difference algorithm, matching
+  subtrees by identity. Matched subtrees are shared by the two lists and are skipped without examining their elements;
+  only the children of unmatched subtrees are compared at the next level. The cost of comparing two versions of a large
+  list therefore depends on the size of the changes, not the size of the lists.
+  <p>
+  Other lists are compared by removing their common prefix and suffix and comparing the remaining elements using the
+  Myers algorithm, which finds a minimal sequence of edits. If the number of differences exceeds a limit, the elements
+  being compared are replaced by a single edit.
+*/
+
+public final @NoInstances class ListDiff
+{
+    private ListDiff()
+    {
+        throw new AssertionError("ListDiff may not be instantiated");
+    }
+
+    private static final int MAXIMUM_DIFFERENCES = 1024;
+
+    public static <V> @NotNull ListPatch<V> diff(@NotNull IList<V> source, @NotNull IList<V> target)
+    {
+        int sourceSize = source.size();
+        int targetSize = target.size();
+        List<ListPatch.Edit<V>> edits = new ArrayList<>();
+
+        RRBList<V> s = Extensions.getExtension(source, RRBList.class);
+        RRBList<V> t = Extensions.getExtension(target, RRBList.class);
+        if (s != null && t != null && sourceSize > 0 && targetSize > 0) {
+            int level = Math.min(s.getDepth(), t.getDepth());
+            Object[][] a = expand(new Object[][] { s.getRoot() }, s.getDepth(), level);
+            Object[][] b = expand(new Object[][] { t.getRoot() }, t.getDepth(), level);
+            compareNodes(a, b, level, 0, edits);
+        } else {
+            int limit = Math.min(sourceSize, targetSize);
+            int prefix = commonPrefix(source, target, limit);
+            int suffix = commonSuffix(source, target, limit - prefix);
+            int sourceCount = sourceSize - prefix - suffix;
+            int targetCount = targetSize - prefix - suffix;
+            compareElements(toArray(source, prefix, sourceCount), toArray(target, prefix, targetCount), prefix, edits);
+        }
+        return ListPatch.create(sourceSize, IList.create(edits));
+    }
+
+    public static <V> @NotNull IList<V> apply(@NotNull IList<V> list, @NotNull ListPatch<? extends V> patch)
+      throws IllegalArgumentException
+    {
+        if (list.size() != patch.getSourceSize()) {
+            throw new IllegalArgumentException("Patch does not apply to a list of size " + list.size());
+        }
+
+        // Apply the edits in reverse order so that the indexes of the remaining edits are not affected
+        IList<? extends ListPatch.Edit<? extends V>> edits = patch.getEdits();
+        IList<V> result = list;
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            ListPatch.Edit<? extends V> edit = edits.get(i);
+            result = result.replacingAll(edit.getIndex(), edit.getRemoveCount(), edit.getValues());
+        }
+        return result;
+    }
+
+    private static boolean isEqual(@NotNull Object a, @NotNull Object b)
+    {
+        return a == b || a.equals(b);
+    }
+
+    private static @NotNull Object @NotNull [] toArray(@NotNull IList<?> list, int start, int count)
+    {
+        Object[] result = new Object[count];
+        int[] index = { 0 };
+        list.getElements(start, count).visit(e -> result[index[0]++] = e);
+        return result;
+    }
+
+    private static int commonPrefix(@NotNull IList<?> a, @NotNull IList<?> b, int limit)
+    {
+        Iterator<?> ia = a.iterator();
+        Iterator<?> ib = b.iterator();
+        int count = 0;
+        while (count < limit && isEqual(ia.next(), ib.next())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int commonSuffix(@NotNull IList<?> a, @NotNull IList<?> b, int limit)
+    {
+        int ai = a.size() - 1;
+        int bi = b.size() - 1;
+        int count = 0;
+        while (count < limit && isEqual(a.get(ai - count), b.get(bi - count))) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+      Compare two sequences of subtrees at the same level. Subtrees that are shared by the two sequences are matched by
+      identity and skipped. The unmatched subtrees are compared by comparing their children.
+      @param a The source subtrees.
+      @param b The target subtrees.
+      @param level The level of the subtrees.
+      @param position The index in the source list of the first element of the source subtrees.
+      @param edits The list to which the edits are added.
+    */
+
+    private static <V> void compareNodes(Object @NotNull [] @NotNull [] a,
+                                         Object @NotNull [] @NotNull [] b,
+                                         int level,
+                                         int position,
+                                         @NotNull List<ListPatch.Edit<V>> edits)
+    {
+        int[] regions = findRegions(a, b, true);
+        if (regions == null) {
+            compareElements(getElements(a, 0, a.length, level), getElements(b, 0, b.length, level), position, edits);
+            return;
+        }
+
+        int index = 0;
+        for (int r = 0; r < regions.length; r += 4) {
+            int aStart = regions[r];
+            int aCount = regions[r + 1];
+            int bStart = regions[r + 2];
+            int bCount = regions[r + 3];
+            position += getTreeSize(a, index, aStart - index, level);
+            int removeCount = getTreeSize(a, aStart, aCount, level);
+            if (aCount == 0 || bCount == 0) {
+                IList<V> values = RRBList.createWithArray(getElements(b, bStart, bCount, level));
+                edits.add(ListPatch.Edit.create(position, removeCount, values));
+            } else if (level == 1) {
+                compareElements(getElements(a, aStart, aCount, 1), getElements(b, bStart, bCount, 1), position, edits);
+            } else {
+                compareNodes(getChildren(a, aStart, aCount), getChildren(b, bStart, bCount), level - 1, position, edits);
+            }
+            position += removeCount;
+            index = aStart + aCount;
+        }
+    }
+
+    /**
+      Compare two sequences of elements.
+      @param x The source elements.
+      @param y The target elements.
+      @param position The index in the source list of the first source element.
+      @param edits The list to which the edits are added.
+    */
+
+    private static <V> void compareElements(@NotNull Object @NotNull [] x,
+                                            @NotNull Object @NotNull [] y,
+                                            int position,
+                                            @NotNull List<ListPatch.Edit<V>> edits)
+    {
+        int[] regions = x.length > 0 && y.length > 0 ? findRegions(x, y, false) : null;
+        if (regions == null) {
+            if (x.length > 0 || y.length > 0) {
+                edits.add(ListPatch.Edit.create(position, x.length, RRBList.createWithArray(y)));
+            }
+            return;
+        }
+        for (int r = 0; r < regions.length; r += 4) {
+            Object[] values = Arrays.copyOfRange(y, regions[r + 2], regions[r + 2] + regions[r + 3]);
+            edits.add(ListPatch.Edit.create(position + regions[r], regions[r + 1], RRBList.createWithArray(values)));
+        }
+    }
+
+    /**
+      Return the subtrees at a lower level of a sequence of subtrees.
+    */
+
+    private static Object @NotNull [] @NotNull [] expand(Object @NotNull [] @NotNull [] nodes, int level, int targetLevel)
+    {
+        while (level > targetLevel) {
+            nodes = getChildren(nodes, 0, nodes.length);
+            level--;
+        }
+        return nodes;
+    }
+
+    private static Object @NotNull [] @NotNull [] getChildren(Object @NotNull [] @NotNull [] nodes, int start, int count)
+    {
+        List<Object[]> children = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            Object[] node = nodes[i];
+            for (int j = 0; j < node.length - 1; j++) {
+                children.add((Object[]) node[j]);
+            }
+        }
+        return children.toArray(new Object[0][]);
+    }
+
+    private static @NotNull Object @NotNull [] getElements(Object @NotNull [] @NotNull [] nodes,
+                                                           int start,
+                                                           int count,
+                                                           int level)
+    {
+        Object[] result = new Object[getTreeSize(nodes, start, count, level)];
+        int index = 0;
+        for (int i = start; i < start + count; i++) {
+            index = copyElements(nodes[i], level, result, index);
+        }
+        return result;
+    }
+
+    private static int copyElements(Object @NotNull [] node, int level, @NotNull Object @NotNull [] dest, int index)
+    {
+        if (level == 1) {
+            System.arraycopy(node, 0, dest, index, node.length);
+            return index + node.length;
+        }
+        for (int i = 0; i < node.length - 1; i++) {
+            index = copyElements((Object[]) node[i], level - 1, dest, index);
+        }
+        return index;
+    }
+
+    private static int getTreeSize(Object @NotNull [] @NotNull [] nodes, int start, int count, int level)
+    {
+        int size = 0;
+        for (int i = start; i < start + count; i++) {
+            size += getTreeSize(nodes[i], level);
+        }
+        return size;
+    }
+
+    private static int getTreeSize(Object @NotNull [] node, int level)
+    {
+        if (level == 1) {
+            return node.length;
+        }
+        int[] sizes = getSizes(node);
+        if (sizes != null) {
+            return sizes[sizes.length - 1];
+        }
+        int childCount = node.length - 1;
+        if (childCount == 0) {
+            return 0;
+        }
+        return (childCount - 1) * getMaximumTreeSize(level - 1) + getTreeSize((Object[]) node[childCount - 1], level - 1);
+    }
+
+    /**
+      Find a minimal sequence of differences using the Myers algorithm.
+      @param x The source items.
+      @param y The target items.
+      @param isIdentity If true, items are matched only if they are identical.
+      @return the regions that differ, represented as groups of four integers: the index and count of the source items,
+      and the index and count of the target items, or null if the number of differences exceeds the limit.
+    */
+
+    private static int @Nullable [] findRegions(@NotNull Object @NotNull [] x,
+                                                @NotNull Object @NotNull [] y,
+                                                boolean isIdentity)
+    {
+        int n = x.length;
+        int m = y.length;
+        int maximum = Math.min(n + m, MAXIMUM_DIFFERENCES);
+        int[] v = new int[2 * maximum + 3];
+        int center = maximum + 1;
+        List<int[]> trace = new ArrayList<>();
+        int differences = -1;
+        search:
+        for (int d = 0; d <= maximum; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int i = k == -d || k != d && v[center + k - 1] < v[center + k + 1]
+                  ? v[center + k + 1]
+                  : v[center + k - 1] + 1;
+                int j = i - k;
+                while (i < n && j < m && (x[i] == y[j] || !isIdentity && x[i].equals(y[j]))) {
+                    i++;
+                    j++;
+                }
+                v[center + k] = i;
+                if (i >= n && j >= m) {
+                    trace.add(copyDiagonals(v, center, d));
+                    differences = d;
+                    break search;
+                }
+            }
+            trace.add(copyDiagonals(v, center, d));
+        }
+        if (differences < 0) {
+            return null;
+        }
+
+        // Recover the operations, from last to first. An operation either deletes the source item at position i or
+        // inserts the target item at position j before the source item at position i.
+        int count = differences;
+        int[] sourcePositions = new int[count];
+        int[] targetPositions = new int[count];
+        boolean[] isInsertion = new boolean[count];
+        int i = n;
+        int j = m;
+        for (int d = differences; d > 0; d--) {
+            int[] previous = trace.get(d - 1);
+            int k = i - j;
+            int previousK = k == -d || k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1] ? k + 1 : k - 1;
+            i = previous[previousK + d - 1];
+            j = i - previousK;
+            sourcePositions[d - 1] = i;
+            targetPositions[d - 1] = j;
+            isInsertion[d - 1] = previousK == k + 1;
+        }
+
+        // Combine adjacent operations into regions
+        int[] regions = new int[count * 4];
+        int regionCount = 0;
+        int index = 0;
+        while (index < count) {
+            int sourceStart = sourcePositions[index];
+            int targetStart = targetPositions[index];
+            int sourceEnd = sourceStart;
+            int targetEnd = targetStart;
+            while (index < count && sourcePositions[index] == sourceEnd && targetPositions[index] == targetEnd) {
+                if (isInsertion[index]) {
+                    targetEnd++;
+                } else {
+                    sourceEnd++;
+                }
+                index++;
+            }
+            regions[regionCount++] = sourceStart;
+            regions[regionCount++] = sourceEnd - sourceStart;
+            regions[regionCount++] = targetStart;
+            regions[regionCount++] = targetEnd - targetStart;
+        }
+        return Arrays.copyOf(regions, regionCount);
+    }
+
+    /**
+      Copy the furthest reaching positions of the diagonals -d to d.
+    */
+
+    private static int @NotNull [] copyDiagonals(int @NotNull [] v, int center, int d)
+    {
+        int[] result = new int[2 * d + 1];
+        System.arraycopy(v, center - d, result, 0, result.length);
+        return result;
+    }
+}
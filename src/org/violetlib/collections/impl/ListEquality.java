@@ -8,8 +8,7 @@
 
 package org.violetlib.collections.impl;
 
-import java.util.Iterator;
-
+import org.violetlib.collections.IIterator;
 import org.violetlib.collections.IList;
 
 import org.jetbrains.annotations.*;
@@ -36,21 +35,22 @@ public final @NoInstances class ListEquality
             return false;
         }
 
-        Iterator<?> it1 = l1.iterator();
-        Iterator<?> it2 = l2.iterator();
+        IIterator<?> it1 = l1.iterator();
+        IIterator<?> it2 = l2.iterator();
+        Object[] batch1 = new Object[BATCH_SIZE];
+        Object[] batch2 = new Object[BATCH_SIZE];
         for (;;) {
-            if (it1.hasNext()) {
-                if (!it2.hasNext()) {
-                    return false;
-                }
-            } else {
+            int count = it1.nextBatch(batch1, 0, BATCH_SIZE);
+            if (fill(it2, batch2, count) != count) {
+                return false;
+            }
+            if (count == 0) {
                 return !it2.hasNext();
             }
-
-            Object e1 = it1.next();
-            Object e2 = it2.next();
-            if (!e1.equals(e2)) {
-                return false;
+            for (int i = 0; i < count; i++) {
+                if (!batch1[i].equals(batch2[i])) {
+                    return false;
+                }
             }
         }
     }
@@ -58,10 +58,39 @@ public final @NoInstances class ListEquality
     public static int computeHashCode(@NotNull IList<?> list)
     {
         int hashCode = 1;
-        for (Object e : list) {
-            hashCode = hashCode * 31 + e.hashCode();
+        IIterator<?> it = list.iterator();
+        Object[] batch = new Object[BATCH_SIZE];
+        int count;
+        while ((count = it.nextBatch(batch, 0, BATCH_SIZE)) > 0) {
+            for (int i = 0; i < count; i++) {
+                hashCode = hashCode * 31 + batch[i].hashCode();
+            }
         }
-
         return hashCode;
     }
+
+    /**
+      The number of elements transferred from an iterator at a time. It matches the width of the tree nodes used by
+      the tree based list implementations.
+    */
+
+    private static final int BATCH_SIZE = 32;
+
+    /**
+      Transfer exactly the specified number of elements from an iterator, unless the iterator is exhausted first.
+      @return the number of elements transferred.
+    */
+
+    private static int fill(@NotNull IIterator<?> it, Object @NotNull [] batch, int count)
+    {
+        int filled = 0;
+        while (filled < count) {
+            int n = it.nextBatch(batch, filled, count - filled);
+            if (n == 0) {
+                break;
+            }
+            filled += n;
+        }
+        return filled;
+    }
 }
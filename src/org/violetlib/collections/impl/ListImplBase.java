@@ -25,6 +25,7 @@ public abstract class ListImplBase<V>
   implements IList<V>
 {
     protected final int size;
+    private int hashCode;  // cached, zero if not yet computed
 
     protected ListImplBase(int size)
     {
@@ -142,7 +143,12 @@ public abstract class ListImplBase<V>
     @Override
     public int hashCode()
     {
-        return ListEquality.computeHashCode(this);
+        int h = hashCode;
+        if (h == 0) {
+            h = ListEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
     }
 
     @Override
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.ICollection;
+import org.violetlib.collections.IList;
+import org.violetlib.collections.IListMultimap;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable list multimap. The lists are stored in a {@link HashTrieMapImpl}, which supports
+  efficient extension. Each list is created using an append-oriented representation.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class ListMultimapImpl<K,V>
+  implements IListMultimap<K,V>
+{
+    private static final @NotNull ListMultimapImpl<?,?> EMPTY = new ListMultimapImpl<>(HashTrieMapImpl.empty(), 0);
+
+    public static <K,V> @NotNull IListMultimap<K,V> empty()
+    {
+        return (IListMultimap) EMPTY;
+    }
+
+    public static <K,V> @NotNull IListMultimap<K,V> create(@NotNull IMap<K,IList<V>> map)
+    {
+        IListMultimap<K,V> result = empty();
+        for (Binding<K,IList<V>> b : map) {
+            result = result.putAll(b.getKey(), b.getValue());
+        }
+        return result;
+    }
+
+    private final @NotNull HashTrieMapImpl<K,IList<V>> map;
+    private final int size;
+
+    private ListMultimapImpl(@NotNull HashTrieMapImpl<K,IList<V>> map, int size)
+    {
+        this.map = map;
+        this.size = size;
+    }
+
+    private @NotNull IListMultimap<K,V> create(@NotNull HashTrieMapImpl<K,IList<V>> newMap, int newSize)
+    {
+        if (newMap == map) {
+            return this;
+        }
+        return newSize == 0 ? empty() : new ListMultimapImpl<>(newMap, newSize);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public int keyCount()
+    {
+        return map.size();
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(@NotNull Object key)
+    {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public @NotNull IList<V> get(@NotNull K key)
+    {
+        IList<V> values = map.get(key);
+        return values != null ? values : IList.empty();
+    }
+
+    @Override
+    public @NotNull ISet<K> keySet()
+    {
+        return map.keySet();
+    }
+
+    @Override
+    public @NotNull IListMultimap<K,V> put(@NotNull K key, @NotNull V value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        IList<V> values = map.get(key);
+        IList<V> newValues = values != null ? values.appending(value) : IList.<V>empty().appending(value);
+        return create(map.extending(key, newValues), size + 1);
+    }
+
+    @Override
+    public @NotNull IListMultimap<K,V> putAll(@NotNull K key, @NotNull ICollection<? extends V> values)
+    {
+        if (values.isEmpty()) {
+            return this;
+        }
+        IList<V> existing = map.get(key);
+        IList<V> newValues = existing != null ? existing.appendingAll(values) : IList.create(values);
+        return create(map.extending(key, newValues), size + values.size());
+    }
+
+    @Override
+    public @NotNull IListMultimap<K,V> remove(@NotNull K key, @NotNull Object value)
+    {
+        IList<V> values = map.get(key);
+        if (values == null) {
+            return this;
+        }
+        IList<V> newValues = values.removing(value);
+        int removed = values.size() - newValues.size();
+        if (removed == 0) {
+            return this;
+        }
+        return create(map.extending(key, newValues.isEmpty() ? null : newValues), size - removed);
+    }
+
+    @Override
+    public @NotNull IListMultimap<K,V> removeAll(@NotNull K key)
+    {
+        IList<V> values = map.get(key);
+        if (values == null) {
+            return this;
+        }
+        return create(map.extending(key, null), size - values.size());
+    }
+
+    @Override
+    public void visit(@NotNull IMap.Visitor<K,V> visitor)
+    {
+        map.visit((k, values) -> values.visit(v -> visitor.visit(k, v)));
+    }
+
+    @Override
+    public @NotNull IMap<K,IList<V>> asMap()
+    {
+        return map;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return map.hashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof IListMultimap) {
+            IListMultimap<?,?> other = (IListMultimap<?,?>) obj;
+            return size == other.size() && map.equals(other.asMap());
+        }
+        return false;
+    }
+}
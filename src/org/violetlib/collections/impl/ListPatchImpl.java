@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.IList;
+import org.violetlib.collections.ListPatch;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of a list patch.
+
+  @param <V> The type of the list elements.
+*/
+
+public final @Immutable class ListPatchImpl<V>
+  implements ListPatch<V>
+{
+    public static <V> @NotNull ListPatch<V> create(int sourceSize, @NotNull IList<Edit<V>> edits)
+      throws IllegalArgumentException
+    {
+        if (sourceSize < 0) {
+            throw new IllegalArgumentException("Invalid source size: " + sourceSize);
+        }
+        long targetSize = sourceSize;
+        int end = -1;
+        for (Edit<V> edit : edits) {
+            if (edit.getIndex() <= end) {
+                throw new IllegalArgumentException("Edits must be ordered and separated");
+            }
+            end = edit.getIndex() + edit.getRemoveCount();
+            if (end > sourceSize) {
+                throw new IllegalArgumentException("Edit extends beyond the source list");
+            }
+            targetSize += edit.getValues().size() - edit.getRemoveCount();
+        }
+        if (targetSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Target list is too large");
+        }
+        return new ListPatchImpl<>(sourceSize, (int) targetSize, edits);
+    }
+
+    public static <V> @NotNull Edit<V> createEdit(int index, int removeCount, @NotNull IList<V> values)
+      throws IllegalArgumentException
+    {
+        if (index < 0 || removeCount < 0) {
+            throw new IllegalArgumentException("Invalid edit: " + index + " " + removeCount);
+        }
+        if (removeCount == 0 && values.isEmpty()) {
+            throw new IllegalArgumentException("Edit makes no change");
+        }
+        return new EditImpl<>(index, removeCount, values);
+    }
+
+    private final int sourceSize;
+    private final int targetSize;
+    private final @NotNull IList<Edit<V>> edits;
+
+    private ListPatchImpl(int sourceSize, int targetSize, @NotNull IList<Edit<V>> edits)
+    {
+        this.sourceSize = sourceSize;
+        this.targetSize = targetSize;
+        this.edits = edits;
+    }
+
+    @Override
+    public int getSourceSize()
+    {
+        return sourceSize;
+    }
+
+    @Override
+    public int getTargetSize()
+    {
+        return targetSize;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return edits.isEmpty();
+    }
+
+    @Override
+    public @NotNull IList<Edit<V>> getEdits()
+    {
+        return edits;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "ListPatch " + sourceSize + " -> " + targetSize + " " + edits;
+    }
+
+    private static final @Immutable class EditImpl<V>
+      implements Edit<V>
+    {
+        private final int index;
+        private final int removeCount;
+        private final @NotNull IList<V> values;
+
+        public EditImpl(int index, int removeCount, @NotNull IList<V> values)
+        {
+            this.index = index;
+            this.removeCount = removeCount;
+            this.values = values;
+        }
+
+        @Override
+        public int getIndex()
+        {
+            return index;
+        }
+
+        @Override
+        public int getRemoveCount()
+        {
+            return removeCount;
+        }
+
+        @Override
+        public @NotNull IList<V> getValues()
+        {
+            return values;
+        }
+
+        @Override
+        public @NotNull String toString()
+        {
+            return "[" + index + " -" + removeCount + " +" + values + "]";
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Comparator;
+
+import org.violetlib.collections.IList;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.getMaximumTreeSize;
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.getSizes;
+
+/**
+  Search and merge operations on sorted lists.
+  <p>
+  The search of an RRB list descends the tree directly. At each level, the child that contains the bound is found by
+  a binary search on the first elements of the children, so the search examines a logarithmic number of elements and
+  does not repeat the index calculation that each call to {@code get} performs. Other lists are searched using
+  {@code get}.
+*/
+
+public final @NoInstances class ListSearch
+{
+    private ListSearch()
+    {
+        throw new AssertionError("ListSearch may not be instantiated");
+    }
+
+    public static <V> int binarySearch(@NotNull IList<V> list,
+                                       @NotNull V key,
+                                       @NotNull Comparator<? super V> c)
+    {
+        int index = lowerBound(list, key, c);
+        if (index < list.size() && c.compare(list.get(index), key) == 0) {
+            return index;
+        }
+        return -(index + 1);
+    }
+
+    public static <V> int lowerBound(@NotNull IList<V> list, @NotNull V key, @NotNull Comparator<? super V> c)
+    {
+        return search(list, key, c, false);
+    }
+
+    public static <V> int upperBound(@NotNull IList<V> list, @NotNull V key, @NotNull Comparator<? super V> c)
+    {
+        return search(list, key, c, true);
+    }
+
+    public static <V> @NotNull IList<V> mergeSorted(@NotNull IList<V> list,
+                                                    @NotNull IList<? extends V> other,
+                                                    @NotNull Comparator<? super V> c)
+    {
+        if (other.isEmpty()) {
+            return list;
+        }
+        if (list.isEmpty()) {
+            return IList.cast(other);
+        }
+
+        // If the ranges do not overlap, concatenation is sufficient (and shares structure with RRB lists)
+        if (c.compare(list.last(), other.first()) <= 0) {
+            return list.appendingAll(other);
+        }
+        if (c.compare(other.last(), list.first()) < 0) {
+            return IList.<V>cast(other).appendingAll(list);
+        }
+
+        Object[] a = list.toJavaArray(new Object[0]);
+        Object[] b = other.toJavaArray(new Object[0]);
+        Object[] result = new Object[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            // On ties, the elements of the first list come first
+            if (c.compare((V) b[j], (V) a[i]) < 0) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+            }
+        }
+        System.arraycopy(a, i, result, k, a.length - i);
+        k += a.length - i;
+        System.arraycopy(b, j, result, k, b.length - j);
+
+        if (Extensions.getExtension(list, RRBList.class) != null) {
+            return RRBList.createWithArray(result);
+        }
+        return IList.create((V[]) result);
+    }
+
+    /**
+      Return the number of leading elements of a sorted list that precede the key. An element precedes the key if it
+      compares less than the key, or, if {@code isUpper} is true, less than or equal to the key.
+    */
+
+    private static <V> int search(@NotNull IList<V> list,
+                                  @NotNull V key,
+                                  @NotNull Comparator<? super V> c,
+                                  boolean isUpper)
+    {
+        RRBList<V> rl = Extensions.getExtension(list, RRBList.class);
+        if (rl != null && !rl.isEmpty()) {
+            return searchTree(rl.getRoot(), rl.getDepth(), key, c, isUpper);
+        }
+
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (precedes(list.get(mid), key, c, isUpper)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static <V> int searchTree(Object @NotNull [] node,
+                                      int level,
+                                      @NotNull V key,
+                                      @NotNull Comparator<? super V> c,
+                                      boolean isUpper)
+    {
+        int offset = 0;
+        while (level > 1) {
+            // Find the last child whose first element precedes the key; the bound cannot be in an earlier child
+            int childCount = node.length - 1;
+            int low = 0;
+            int high = childCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (precedes((V) getFirst((Object[]) node[mid], level - 1), key, c, isUpper)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            if (low == 0) {
+                return offset;
+            }
+            int child = low - 1;
+            if (child > 0) {
+                int[] sizes = getSizes(node);
+                offset += sizes != null ? sizes[child - 1] : child * getMaximumTreeSize(level - 1);
+            }
+            node = (Object[]) node[child];
+            level--;
+        }
+
+        int low = 0;
+        int high = node.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (precedes((V) node[mid], key, c, isUpper)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return offset + low;
+    }
+
+    private static @NotNull Object getFirst(Object @NotNull [] node, int level)
+    {
+        while (level > 1) {
+            node = (Object[]) node[0];
+            level--;
+        }
+        return node[0];
+    }
+
+    private static <V> boolean precedes(@NotNull V element,
+                                        @NotNull V key,
+                                        @NotNull Comparator<? super V> c,
+                                        boolean isUpper)
+    {
+        int result = c.compare(element, key);
+        return isUpper ? result <= 0 : result < 0;
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.violetlib.collections.FindVisitor;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.IList;
+import org.violetlib.collections.IListView;
+import org.violetlib.collections.ListBuilder;
+import org.violetlib.collections.Visitor;
+import org.violetlib.collections.util.IteratorHelper;
+import org.violetlib.collections.util.MappedIterator;
+import org.violetlib.types.UndefinedValueError;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of a lazy list view.
+  <p>
+  A view is a range of a source list, possibly traversed in reverse order, followed by a sequence of stages. Limit and
+  skip operations that precede all other stages are folded into the range. Consecutive map, mapFilter, and filter
+  stages are composed into a single element stage. A terminal operation builds a chain of sinks from the stages and
+  pushes the elements of the range through the chain in one traversal of the source list.
+*/
+
+public final @Immutable class ListViewImpl<V>
+  implements IListView<V>
+{
+    public static <V> @NotNull IListView<V> create(@NotNull IList<V> source)
+    {
+        return new ListViewImpl<>((IList) source, 0, source.size(), false, NO_STAGES);
+    }
+
+    private static final @NotNull Stage @NotNull [] NO_STAGES = new Stage[0];
+
+    private final @NotNull IList<Object> base;
+    private final int start;
+    private final int end;
+    private final boolean isReversed;
+    private final @NotNull Stage @NotNull [] stages;
+
+    private ListViewImpl(@NotNull IList<Object> base,
+                         int start,
+                         int end,
+                         boolean isReversed,
+                         @NotNull Stage @NotNull [] stages)
+    {
+        this.base = base;
+        this.start = start;
+        this.end = end;
+        this.isReversed = isReversed;
+        this.stages = stages;
+    }
+
+    @Override
+    public <R> @NotNull IListView<R> map(@NotNull Function<@NotNull V,@NotNull R> mapper)
+    {
+        Function<Object,Object> f = e -> {
+            R result = mapper.apply((V) e);
+            if (result == null) {
+                throw UndefinedValueError.create("Mapper must not return null");
+            }
+            return result;
+        };
+        return withElementStage(f);
+    }
+
+    @Override
+    public <R> @NotNull IListView<R> mapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper)
+    {
+        return withElementStage((Function) mapper);
+    }
+
+    @Override
+    public @NotNull IListView<V> filter(@NotNull Predicate<? super V> predicate)
+    {
+        return withElementStage(e -> predicate.test((V) e) ? e : null);
+    }
+
+    @Override
+    public @NotNull IListView<V> limit(int count)
+      throws IllegalArgumentException
+    {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        if (stages.length == 0) {
+            int available = end - start;
+            if (count >= available) {
+                return this;
+            }
+            return isReversed
+              ? new ListViewImpl<>(base, end - count, end, true, NO_STAGES)
+              : new ListViewImpl<>(base, start, start + count, false, NO_STAGES);
+        }
+        Stage last = stages[stages.length - 1];
+        if (last instanceof LimitStage) {
+            LimitStage ls = (LimitStage) last;
+            return count >= ls.count ? this : replacingLastStage(new LimitStage(count));
+        }
+        return withStage(new LimitStage(count));
+    }
+
+    @Override
+    public @NotNull IListView<V> skip(int count)
+      throws IllegalArgumentException
+    {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        if (count == 0) {
+            return this;
+        }
+        if (stages.length == 0) {
+            int skipped = Math.min(count, end - start);
+            return isReversed
+              ? new ListViewImpl<>(base, start, end - skipped, true, NO_STAGES)
+              : new ListViewImpl<>(base, start + skipped, end, false, NO_STAGES);
+        }
+        Stage last = stages[stages.length - 1];
+        if (last instanceof SkipStage) {
+            SkipStage ss = (SkipStage) last;
+            long total = (long) ss.count + count;
+            return replacingLastStage(new SkipStage((int) Math.min(total, Integer.MAX_VALUE)));
+        }
+        return withStage(new SkipStage(count));
+    }
+
+    @Override
+    public @NotNull IListView<V> reverse()
+    {
+        for (Stage stage : stages) {
+            if (!(stage instanceof ElementStage)) {
+                return create(toList()).reverse();
+            }
+        }
+        // Element stages do not depend on the position of an element, so they commute with reversal.
+        return new ListViewImpl<>(base, start, end, !isReversed, stages);
+    }
+
+    @Override
+    public @NotNull IList<V> toList()
+    {
+        if (stages.length == 0) {
+            IList<Object> range = start == 0 && end == base.size() ? base : base.getElements(start, end - start);
+            return (IList) (isReversed ? range.reverse() : range);
+        }
+        ListBuilder<Object> b = IList.builder();
+        traverse(createSinks(new Sink()
+        {
+            @Override
+            public boolean accept(@NotNull Object e)
+            {
+                b.add(e);
+                return false;
+            }
+        }));
+        return (IList) b.values();
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<V> visitor)
+    {
+        traverse(createSinks(new Sink()
+        {
+            @Override
+            public boolean accept(@NotNull Object e)
+            {
+                visitor.visit((V) e);
+                return false;
+            }
+        }));
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FindVisitor<V,R> visitor)
+    {
+        FindSink<V,R> sink = new FindSink<>(visitor);
+        traverse(createSinks(sink));
+        return sink.result;
+    }
+
+    @Override
+    public @Nullable V optionalFirst()
+    {
+        return find(e -> e);
+    }
+
+    @Override
+    public int count()
+    {
+        if (stages.length == 0) {
+            return end - start;
+        }
+        int[] counter = new int[1];
+        traverse(createSinks(new Sink()
+        {
+            @Override
+            public boolean accept(@NotNull Object e)
+            {
+                counter[0]++;
+                return false;
+            }
+        }));
+        return counter[0];
+    }
+
+    @Override
+    public @NotNull IIterator<V> iterator()
+    {
+        Iterable<Object> source = getSource();
+        if (stages.length == 0) {
+            return (IIterator) source.iterator();
+        }
+        if (stages.length == 1 && stages[0] instanceof ElementStage) {
+            Function<Object,Object> f = ((ElementStage) stages[0]).function;
+            return IIterator.from((Iterator) MappedIterator.create(source, f));
+        }
+        return new ViewIterator<>(source.iterator(), this);
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "View of " + base;
+    }
+
+    /**
+      Return the range of the source list, in traversal order.
+    */
+
+    private @NotNull IList<Object> getSource()
+    {
+        IList<Object> source = start == 0 && end == base.size() ? base : base.onSlice(start, end);
+        return isReversed ? source.onReverse() : source;
+    }
+
+    /**
+      Push the elements of the range through the specified sink until the sink requests termination.
+    */
+
+    private void traverse(@NotNull Sink sink)
+    {
+        if (start == end) {
+            return;
+        }
+        FindVisitor<Object,Boolean> visitor = e -> sink.accept(e) ? Boolean.TRUE : null;
+        RRBList<Object> rrb = Extensions.getExtension(base, RRBList.class);
+        if (rrb != null) {
+            //noinspection ResultOfMethodCallIgnored
+            rrb.findInRange(start, end, isReversed, visitor);
+        } else {
+            //noinspection ResultOfMethodCallIgnored
+            getSource().find(visitor);
+        }
+    }
+
+    private @NotNull Sink createSinks(@NotNull Sink terminal)
+    {
+        Sink sink = terminal;
+        for (int i = stages.length - 1; i >= 0; i--) {
+            sink = stages[i].createSink(sink);
+        }
+        return sink;
+    }
+
+    private <R> @NotNull IListView<R> withElementStage(@NotNull Function<Object,Object> f)
+    {
+        if (stages.length > 0) {
+            Stage last = stages[stages.length - 1];
+            if (last instanceof ElementStage) {
+                Function<Object,Object> previous = ((ElementStage) last).function;
+                Function<Object,Object> composed = e -> {
+                    Object intermediate = previous.apply(e);
+                    return intermediate != null ? f.apply(intermediate) : null;
+                };
+                return (IListView) replacingLastStage(new ElementStage(composed));
+            }
+        }
+        return (IListView) withStage(new ElementStage(f));
+    }
+
+    private @NotNull IListView<V> withStage(@NotNull Stage stage)
+    {
+        Stage[] newStages = new Stage[stages.length + 1];
+        System.arraycopy(stages, 0, newStages, 0, stages.length);
+        newStages[stages.length] = stage;
+        return new ListViewImpl<>(base, start, end, isReversed, newStages);
+    }
+
+    private @NotNull IListView<V> replacingLastStage(@NotNull Stage stage)
+    {
+        Stage[] newStages = stages.clone();
+        newStages[stages.length - 1] = stage;
+        return new ListViewImpl<>(base, start, end, isReversed, newStages);
+    }
+
+    /**
+      A consumer of elements. A sink is created for each traversal, so it may have state.
+    */
+
+    private static abstract class Sink
+    {
+        /**
+          Accept an element.
+          @return true if the traversal should be terminated.
+        */
+
+        public abstract boolean accept(@NotNull Object e);
+    }
+
+    private static final class FindSink<V,R>
+      extends Sink
+    {
+        private final @NotNull FindVisitor<V,R> visitor;
+        private @Nullable R result;
+
+        public FindSink(@NotNull FindVisitor<V,R> visitor)
+        {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public boolean accept(@NotNull Object e)
+        {
+            result = visitor.visit((V) e);
+            return result != null;
+        }
+    }
+
+    /**
+      A pipeline stage. Stages are immutable; they create sinks that perform the stage operation for one traversal.
+    */
+
+    private static abstract class Stage
+    {
+        public abstract @NotNull Sink createSink(@NotNull Sink downstream);
+    }
+
+    /**
+      A stage that maps each element independently of its position. A null result drops the element.
+    */
+
+    private static final class ElementStage
+      extends Stage
+    {
+        private final @NotNull Function<Object,Object> function;
+
+        public ElementStage(@NotNull Function<Object,Object> function)
+        {
+            this.function = function;
+        }
+
+        @Override
+        public @NotNull Sink createSink(@NotNull Sink downstream)
+        {
+            return new Sink()
+            {
+                @Override
+                public boolean accept(@NotNull Object e)
+                {
+                    Object result = function.apply(e);
+                    return result != null && downstream.accept(result);
+                }
+            };
+        }
+    }
+
+    private static final class SkipStage
+      extends Stage
+    {
+        private final int count;
+
+        public SkipStage(int count)
+        {
+            this.count = count;
+        }
+
+        @Override
+        public @NotNull Sink createSink(@NotNull Sink downstream)
+        {
+            return new Sink()
+            {
+                private int skipped;
+
+                @Override
+                public boolean accept(@NotNull Object e)
+                {
+                    if (skipped < count) {
+                        skipped++;
+                        return false;
+                    }
+                    return downstream.accept(e);
+                }
+            };
+        }
+    }
+
+    private static final class LimitStage
+      extends Stage
+    {
+        private final int count;
+
+        public LimitStage(int count)
+        {
+            this.count = count;
+        }
+
+        @Override
+        public @NotNull Sink createSink(@NotNull Sink downstream)
+        {
+            return new Sink()
+            {
+                private int accepted;
+
+                @Override
+                public boolean accept(@NotNull Object e)
+                {
+                    if (accepted >= count) {
+                        return true;
+                    }
+                    accepted++;
+                    return downstream.accept(e) || accepted >= count;
+                }
+            };
+        }
+    }
+
+    /**
+      An iterator that pulls elements from the source and pushes each one through a chain of sinks. Each stage
+      produces at most one element for each element it accepts, so the result of one push is at most one element.
+    */
+
+    private static final class ViewIterator<V>
+      extends IteratorHelper<V>
+    {
+        private final @NotNull Iterator<Object> source;
+        private final @NotNull Sink sink;
+        private @Nullable Object produced;
+        private boolean isTerminated;
+
+        public ViewIterator(@NotNull Iterator<Object> source, @NotNull ListViewImpl<V> view)
+        {
+            this.source = source;
+            this.sink = view.createSinks(new Sink()
+            {
+                @Override
+                public boolean accept(@NotNull Object e)
+                {
+                    produced = e;
+                    return false;
+                }
+            });
+        }
+
+        @Override
+        protected @Nullable V provide()
+        {
+            while (!isTerminated && source.hasNext()) {
+                isTerminated = sink.accept(source.next());
+                Object e = produced;
+                if (e != null) {
+                    produced = null;
+                    return (V) e;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.function.BinaryOperator;
+
+import org.violetlib.collections.ILongMap;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.LongMapBuilder;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable map with long keys, using a Patricia trie.
+
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class LongMapImpl<V>
+  implements ILongMap<V>
+{
+    private static final @NotNull LongMapImpl<?> EMPTY = new LongMapImpl<>(null);
+
+    public static <V> @NotNull ILongMap<V> empty()
+    {
+        return (ILongMap) EMPTY;
+    }
+
+    public static <V> @NotNull LongMapBuilder<V> builder()
+    {
+        return new Builder<>();
+    }
+
+    private static <V> @NotNull ILongMap<V> create(@Nullable LongTrie.Node root)
+    {
+        return root != null ? new LongMapImpl<>(root) : empty();
+    }
+
+    private final @Nullable LongTrie.Node root;
+
+    private LongMapImpl(@Nullable LongTrie.Node root)
+    {
+        this.root = root;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return root == null;
+    }
+
+    @Override
+    public int size()
+    {
+        return LongTrie.size(root);
+    }
+
+    @Override
+    public @Nullable V get(long key)
+    {
+        return (V) LongTrie.get(root, key);
+    }
+
+    @Override
+    public boolean containsKey(long key)
+    {
+        return LongTrie.get(root, key) != null;
+    }
+
+    @Override
+    public long firstKey()
+      throws IllegalStateException
+    {
+        LongTrie.Leaf leaf = LongTrie.getFirst(root);
+        if (leaf == null) {
+            throw new IllegalStateException("Map is empty");
+        }
+        return leaf.getKey();
+    }
+
+    @Override
+    public long lastKey()
+      throws IllegalStateException
+    {
+        LongTrie.Leaf leaf = LongTrie.getLast(root);
+        if (leaf == null) {
+            throw new IllegalStateException("Map is empty");
+        }
+        return leaf.getKey();
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<V> visitor)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            visitor.visit(leaf.getKey(), (V) leaf.value);
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FVisitor<V,R> visitor, @Nullable R defaultResult)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            R result = visitor.visit(leaf.getKey(), (V) leaf.value);
+            if (result != null) {
+                return result;
+            }
+        }
+        return defaultResult;
+    }
+
+    @Override
+    public @NotNull ILongMap<V> extending(long key, @Nullable V value)
+    {
+        LongTrie.Node newRoot = LongTrie.with(root, key, value);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull ILongMap<V> extending(@NotNull ILongMap<V> bindings)
+    {
+        LongTrie.Node newRoot = LongTrie.merge(root, getRoot(bindings), null);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull ILongMap<V> merge(@NotNull ILongMap<V> other, @NotNull BinaryOperator<V> combiner)
+    {
+        LongTrie.Node newRoot = LongTrie.merge(root, getRoot(other), (BinaryOperator) combiner);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull IMap<Long,V> asMap()
+    {
+        return root != null ? TrieMapAdapter.createLongKeyed(root) : IMap.empty();
+    }
+
+    private static @Nullable LongTrie.Node getRoot(@NotNull ILongMap<?> map)
+    {
+        if (map instanceof LongMapImpl) {
+            return ((LongMapImpl<?>) map).root;
+        }
+        LongTrie.Node[] result = new LongTrie.Node[1];
+        map.visit((k, v) -> result[0] = LongTrie.with(result[0], k, v));
+        return result[0];
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            hash += Long.hashCode(leaf.getKey()) ^ leaf.value.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof LongMapImpl) {
+            return LongTrie.isEqual(root, ((LongMapImpl<?>) obj).root);
+        }
+        return false;
+    }
+
+    private static final class Builder<V>
+      implements LongMapBuilder<V>
+    {
+        private @Nullable LongTrie.Node root;
+
+        @Override
+        public boolean containsKey(long key)
+        {
+            return LongTrie.get(root, key) != null;
+        }
+
+        @Override
+        public @Nullable V get(long key)
+        {
+            return (V) LongTrie.get(root, key);
+        }
+
+        @Override
+        public void put(long key, @NotNull V value)
+        {
+            if (value == null) {
+                throw new IllegalArgumentException("Null values are not permitted");
+            }
+            root = LongTrie.with(root, key, value);
+        }
+
+        @Override
+        public void addAll(@NotNull ILongMap<V> bindings)
+        {
+            root = LongTrie.merge(root, getRoot(bindings), null);
+        }
+
+        @Override
+        public void remove(long key)
+        {
+            root = LongTrie.with(root, key, null);
+        }
+
+        @Override
+        public void reset()
+        {
+            root = null;
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return root == null;
+        }
+
+        @Override
+        public int size()
+        {
+            return LongTrie.size(root);
+        }
+
+        @Override
+        public @NotNull ILongMap<V> value()
+        {
+            return create(root);
+        }
+    }
+}
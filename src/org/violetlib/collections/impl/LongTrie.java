@@ -0,0 +1,568 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.NoSuchElementException;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  A persistent big-endian Patricia trie with long keys, used to implement maps with primitive keys.
+  <p>
+  Keys are stored with the sign bit inverted, so that the unsigned order of the stored keys, which is the order of an
+  in-order traversal, is the signed order of the original keys. The empty trie is represented by null. Because the
+  shape of a Patricia trie is determined by its key set, two tries are equal if and only if they are structurally
+  equal.
+*/
+
+/* package private */ final @NoInstances class LongTrie
+{
+    private LongTrie()
+    {
+        throw new AssertionError("LongTrie may not be instantiated");
+    }
+
+    /**
+      A trie node.
+    */
+
+    public static abstract @Immutable class Node
+    {
+        public abstract int size();
+    }
+
+    /**
+      A trie node containing a single binding.
+    */
+
+    public static final @Immutable class Leaf
+      extends Node
+    {
+        public final long key;  // the stored key
+        public final @NotNull Object value;
+
+        public Leaf(long key, @NotNull Object value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int size()
+        {
+            return 1;
+        }
+
+        /**
+          Return the original key.
+        */
+
+        public long getKey()
+        {
+            return key ^ Long.MIN_VALUE;
+        }
+    }
+
+    /**
+      A trie node with two non-empty subtries. The keys in both subtries agree in the bits above the branching bit.
+      Keys with a zero branching bit are in the left subtrie.
+    */
+
+    public static final @Immutable class Branch
+      extends Node
+    {
+        public final long prefix;
+        public final long mask;  // the branching bit
+        public final @NotNull Node left;
+        public final @NotNull Node right;
+        public final int size;
+
+        public Branch(long prefix, long mask, @NotNull Node left, @NotNull Node right)
+        {
+            this.prefix = prefix;
+            this.mask = mask;
+            this.left = left;
+            this.right = right;
+            this.size = left.size() + right.size();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
+
+    /**
+      Convert an original key to a stored key.
+    */
+
+    public static long toStoredKey(long key)
+    {
+        return key ^ Long.MIN_VALUE;
+    }
+
+    public static int size(@Nullable Node node)
+    {
+        return node != null ? node.size() : 0;
+    }
+
+    public static @Nullable Object get(@Nullable Node node, long key)
+    {
+        long k = toStoredKey(key);
+        while (node instanceof Branch) {
+            Branch b = (Branch) node;
+            node = (k & b.mask) == 0 ? b.left : b.right;
+        }
+        if (node != null) {
+            Leaf leaf = (Leaf) node;
+            if (leaf.key == k) {
+                return leaf.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+      Return a trie with an updated binding.
+      @param node The original trie.
+      @param key The original key.
+      @param value The new value, or null to remove any binding for the key.
+      @return the updated trie, which is {@code node} if no change is needed.
+    */
+
+    public static @Nullable Node with(@Nullable Node node, long key, @Nullable Object value)
+    {
+        long k = toStoredKey(key);
+        return value != null ? insert(node, k, value) : remove(node, k);
+    }
+
+    private static @NotNull Node insert(@Nullable Node node, long k, @NotNull Object value)
+    {
+        if (node == null) {
+            return new Leaf(k, value);
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            if (leaf.key == k) {
+                return leaf.value.equals(value) ? leaf : new Leaf(k, value);
+            }
+            return join(k, new Leaf(k, value), leaf.key, leaf);
+        }
+        Branch b = (Branch) node;
+        if (!matchPrefix(k, b.prefix, b.mask)) {
+            return join(k, new Leaf(k, value), b.prefix, b);
+        }
+        if ((k & b.mask) == 0) {
+            Node left = insert(b.left, k, value);
+            return left == b.left ? b : new Branch(b.prefix, b.mask, left, b.right);
+        } else {
+            Node right = insert(b.right, k, value);
+            return right == b.right ? b : new Branch(b.prefix, b.mask, b.left, right);
+        }
+    }
+
+    private static @Nullable Node remove(@Nullable Node node, long k)
+    {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf) {
+            return ((Leaf) node).key == k ? null : node;
+        }
+        Branch b = (Branch) node;
+        if (!matchPrefix(k, b.prefix, b.mask)) {
+            return b;
+        }
+        if ((k & b.mask) == 0) {
+            Node left = remove(b.left, k);
+            return left == b.left ? b : branch(b.prefix, b.mask, left, b.right);
+        } else {
+            Node right = remove(b.right, k);
+            return right == b.right ? b : branch(b.prefix, b.mask, b.left, right);
+        }
+    }
+
+    /**
+      Merge two tries.
+      @param s The first trie.
+      @param t The second trie.
+      @param combiner If not null, this function is called to determine the value for a key that is bound in both
+      tries, with the value from {@code s} as the first argument. It must not return null. The combiner is called
+      for every such key, including the keys of subtries that are shared by the two tries. If the combiner is null,
+      the value from {@code t} is used.
+      @return the merged trie. Subtries that are not changed by the merge are shared.
+    */
+
+    public static @Nullable Node merge(@Nullable Node s,
+                                       @Nullable Node t,
+                                       @Nullable BinaryOperator<Object> combiner)
+    {
+        if (s == null) {
+            return t;
+        }
+        if (t == null) {
+            return s;
+        }
+        if (s == t) {
+            // A shared subtrie is unchanged only if there is no combiner; otherwise every binding is combined
+            return combiner == null ? s : mapValues(s, v -> combine(combiner, v, v));
+        }
+        if (t instanceof Leaf) {
+            Leaf leaf = (Leaf) t;
+            Object value = leaf.value;
+            if (combiner != null) {
+                Object existing = get(s, leaf.getKey());
+                if (existing != null) {
+                    value = combine(combiner, existing, value);
+                }
+            }
+            return insert(s, leaf.key, value);
+        }
+        if (s instanceof Leaf) {
+            Leaf leaf = (Leaf) s;
+            Object existing = get(t, leaf.getKey());
+            if (existing == null) {
+                return insert(t, leaf.key, leaf.value);
+            }
+            if (combiner == null) {
+                return t;
+            }
+            return insert(t, leaf.key, combine(combiner, leaf.value, existing));
+        }
+        Branch bs = (Branch) s;
+        Branch bt = (Branch) t;
+        if (bs.mask == bt.mask && bs.prefix == bt.prefix) {
+            Node left = merge(bs.left, bt.left, combiner);
+            Node right = merge(bs.right, bt.right, combiner);
+            return rebuild(bs, left, right);
+        }
+        if (Long.compareUnsigned(bs.mask, bt.mask) > 0 && matchPrefix(bt.prefix, bs.prefix, bs.mask)) {
+            // t belongs inside one subtrie of s
+            if ((bt.prefix & bs.mask) == 0) {
+                return rebuild(bs, merge(bs.left, t, combiner), bs.right);
+            } else {
+                return rebuild(bs, bs.left, merge(bs.right, t, combiner));
+            }
+        }
+        if (Long.compareUnsigned(bt.mask, bs.mask) > 0 && matchPrefix(bs.prefix, bt.prefix, bt.mask)) {
+            // s belongs inside one subtrie of t
+            if ((bs.prefix & bt.mask) == 0) {
+                return rebuild(bt, merge(s, bt.left, combiner), bt.right);
+            } else {
+                return rebuild(bt, bt.left, merge(s, bt.right, combiner));
+            }
+        }
+        return join(bs.prefix, bs, bt.prefix, bt);
+    }
+
+    private static @NotNull Object combine(@NotNull BinaryOperator<Object> combiner,
+                                           @NotNull Object v1,
+                                           @NotNull Object v2)
+    {
+        Object result = combiner.apply(v1, v2);
+        if (result == null) {
+            throw UndefinedValueError.create("Combiner must not return null");
+        }
+        return result;
+    }
+
+    /**
+      Return a trie with the same keys and shape as the specified trie, with each value replaced by the result of a
+      function. If the function returns null, the key is omitted.
+    */
+
+    public static @Nullable Node mapValues(@Nullable Node node, @NotNull Function<Object,Object> f)
+    {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            Object value = f.apply(leaf.value);
+            if (value == null) {
+                return null;
+            }
+            return value == leaf.value ? leaf : new Leaf(leaf.key, value);
+        }
+        Branch b = (Branch) node;
+        Node left = mapValues(b.left, f);
+        Node right = mapValues(b.right, f);
+        if (left == null || right == null) {
+            return branch(b.prefix, b.mask, left, right);
+        }
+        return rebuild(b, left, right);
+    }
+
+    /**
+      Receives the differences between two tries.
+    */
+
+    public interface DiffVisitor
+    {
+        /**
+          Called for a leaf that is present only in the first trie.
+        */
+
+        void removed(@NotNull Leaf leaf);
+
+        /**
+          Called for a leaf that is present only in the second trie.
+        */
+
+        void added(@NotNull Leaf leaf);
+
+        /**
+          Called for two distinct leaves with the same key.
+        */
+
+        void changed(@NotNull Leaf oldLeaf, @NotNull Leaf newLeaf);
+    }
+
+    /**
+      Report the differences between two tries. Because the shape of a trie is determined by its key set, the tries can
+      be traversed in parallel. Subtries that are shared by the two tries are skipped, so the cost is proportional to
+      the number of nodes that are not shared.
+      @param s The first trie.
+      @param t The second trie.
+      @param visitor The visitor that receives the differences.
+    */
+
+    public static void diff(@Nullable Node s, @Nullable Node t, @NotNull DiffVisitor visitor)
+    {
+        if (s == t) {
+            return;
+        }
+        if (s == null) {
+            visitLeaves(t, visitor::added);
+            return;
+        }
+        if (t == null) {
+            visitLeaves(s, visitor::removed);
+            return;
+        }
+        if (s instanceof Leaf) {
+            Leaf leaf = (Leaf) s;
+            boolean[] isFound = { false };
+            visitLeaves(t, other -> {
+                if (other.key == leaf.key) {
+                    isFound[0] = true;
+                    if (other != leaf) {
+                        visitor.changed(leaf, other);
+                    }
+                } else {
+                    visitor.added(other);
+                }
+            });
+            if (!isFound[0]) {
+                visitor.removed(leaf);
+            }
+            return;
+        }
+        if (t instanceof Leaf) {
+            Leaf leaf = (Leaf) t;
+            boolean[] isFound = { false };
+            visitLeaves(s, other -> {
+                if (other.key == leaf.key) {
+                    isFound[0] = true;
+                    if (other != leaf) {
+                        visitor.changed(other, leaf);
+                    }
+                } else {
+                    visitor.removed(other);
+                }
+            });
+            if (!isFound[0]) {
+                visitor.added(leaf);
+            }
+            return;
+        }
+        Branch bs = (Branch) s;
+        Branch bt = (Branch) t;
+        if (bs.mask == bt.mask && bs.prefix == bt.prefix) {
+            diff(bs.left, bt.left, visitor);
+            diff(bs.right, bt.right, visitor);
+        } else if (Long.compareUnsigned(bs.mask, bt.mask) > 0 && matchPrefix(bt.prefix, bs.prefix, bs.mask)) {
+            // t belongs inside one subtrie of s
+            if ((bt.prefix & bs.mask) == 0) {
+                diff(bs.left, t, visitor);
+                visitLeaves(bs.right, visitor::removed);
+            } else {
+                visitLeaves(bs.left, visitor::removed);
+                diff(bs.right, t, visitor);
+            }
+        } else if (Long.compareUnsigned(bt.mask, bs.mask) > 0 && matchPrefix(bs.prefix, bt.prefix, bt.mask)) {
+            // s belongs inside one subtrie of t
+            if ((bs.prefix & bt.mask) == 0) {
+                diff(s, bt.left, visitor);
+                visitLeaves(bt.right, visitor::added);
+            } else {
+                visitLeaves(bt.left, visitor::added);
+                diff(s, bt.right, visitor);
+            }
+        } else {
+            visitLeaves(s, visitor::removed);
+            visitLeaves(t, visitor::added);
+        }
+    }
+
+    private static void visitLeaves(@NotNull Node node, @NotNull Consumer<Leaf> consumer)
+    {
+        LeafIterator it = new LeafIterator(node);
+        while (it.hasNext()) {
+            consumer.accept(it.next());
+        }
+    }
+
+    public static boolean isEqual(@Nullable Node n1, @Nullable Node n2)
+    {
+        if (n1 == n2) {
+            return true;
+        }
+        if (n1 == null || n2 == null || n1.size() != n2.size()) {
+            return false;
+        }
+        if (n1 instanceof Leaf) {
+            if (!(n2 instanceof Leaf)) {
+                return false;
+            }
+            Leaf l1 = (Leaf) n1;
+            Leaf l2 = (Leaf) n2;
+            return l1.key == l2.key && l1.value.equals(l2.value);
+        }
+        if (!(n2 instanceof Branch)) {
+            return false;
+        }
+        Branch b1 = (Branch) n1;
+        Branch b2 = (Branch) n2;
+        return b1.prefix == b2.prefix && b1.mask == b2.mask && isEqual(b1.left, b2.left) && isEqual(b1.right, b2.right);
+    }
+
+    public static @Nullable Leaf getFirst(@Nullable Node node)
+    {
+        while (node instanceof Branch) {
+            node = ((Branch) node).left;
+        }
+        return (Leaf) node;
+    }
+
+    public static @Nullable Leaf getLast(@Nullable Node node)
+    {
+        while (node instanceof Branch) {
+            node = ((Branch) node).right;
+        }
+        return (Leaf) node;
+    }
+
+    /**
+      Return the leaf with the least stored key that is greater than or equal to the specified stored key, in unsigned
+      order.
+      @return the leaf, or null if there is no such leaf.
+    */
+
+    public static @Nullable Leaf getCeiling(@Nullable Node node, long k)
+    {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            return Long.compareUnsigned(leaf.key, k) >= 0 ? leaf : null;
+        }
+        Branch b = (Branch) node;
+        if (!matchPrefix(k, b.prefix, b.mask)) {
+            return Long.compareUnsigned(k, b.prefix) < 0 ? getFirst(b) : null;
+        }
+        if ((k & b.mask) == 0) {
+            Leaf leaf = getCeiling(b.left, k);
+            return leaf != null ? leaf : getFirst(b.right);
+        }
+        return getCeiling(b.right, k);
+    }
+
+    private static @NotNull Node rebuild(@NotNull Branch b, @NotNull Node left, @NotNull Node right)
+    {
+        return left == b.left && right == b.right ? b : new Branch(b.prefix, b.mask, left, right);
+    }
+
+    private static @Nullable Node branch(long prefix, long mask, @Nullable Node left, @Nullable Node right)
+    {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return new Branch(prefix, mask, left, right);
+    }
+
+    private static @NotNull Node join(long p1, @NotNull Node t1, long p2, @NotNull Node t2)
+    {
+        long mask = Long.highestOneBit(p1 ^ p2);
+        long prefix = highBits(p1, mask);
+        return (p1 & mask) == 0 ? new Branch(prefix, mask, t1, t2) : new Branch(prefix, mask, t2, t1);
+    }
+
+    /**
+      Return the bits of a key above the specified branching bit.
+    */
+
+    private static long highBits(long k, long mask)
+    {
+        return k & ~((mask << 1) - 1);
+    }
+
+    private static boolean matchPrefix(long k, long prefix, long mask)
+    {
+        return highBits(k, mask) == prefix;
+    }
+
+    /**
+      An iterator over the leaves of a trie in increasing key order.
+    */
+
+    public static final class LeafIterator
+    {
+        private final @NotNull Node @NotNull [] stack = new Node[65];
+        private int depth;
+
+        public LeafIterator(@Nullable Node root)
+        {
+            if (root != null) {
+                stack[depth++] = root;
+            }
+        }
+
+        public boolean hasNext()
+        {
+            return depth > 0;
+        }
+
+        public @NotNull Leaf next()
+        {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node node = stack[--depth];
+            while (node instanceof Branch) {
+                Branch b = (Branch) node;
+                stack[depth++] = b.right;
+                node = b.left;
+            }
+            return (Leaf) node;
+        }
+    }
+}
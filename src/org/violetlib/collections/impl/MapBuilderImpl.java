@@ -26,14 +26,25 @@ public final class MapBuilderImpl<K,V>
 {
     public static <K,V> @NotNull MapBuilder<K,V> create()
     {
-        return new MapBuilderImpl<>();
+        return new MapBuilderImpl<>(false);
+    }
+
+    /**
+      Create a builder for maps that are optimized for lookup and are not expected to be extended.
+    */
+
+    public static <K,V> @NotNull MapBuilder<K,V> createFrozen()
+    {
+        return new MapBuilderImpl<>(true);
     }
 
     private final @NotNull Map<K,V> bindings;
+    private final boolean isFrozen;
 
-    private MapBuilderImpl()
+    private MapBuilderImpl(boolean isFrozen)
     {
-        bindings = new HashMap<>();
+        this.bindings = new HashMap<>();
+        this.isFrozen = isFrozen;
     }
 
     @Override
@@ -81,6 +92,6 @@ public final class MapBuilderImpl<K,V>
     @Override
     public @NotNull IMap<K,V> value()
     {
-        return Impl.createMap(bindings);
+        return isFrozen ? Impl.createFrozenMap(bindings) : Impl.createMap(bindings);
     }
 }
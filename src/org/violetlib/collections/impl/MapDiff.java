@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.collections.SetDiff;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Computes the differences between maps and between sets.
+  <p>
+  When both collections are hash tries, the tries are traversed in parallel and subtries shared by the two collections
+  are skipped, so the cost is proportional to the size of the changes. Otherwise, each binding or element of each
+  collection is looked up in the other collection. An ordered map is compared using the map that holds its bindings.
+*/
+
+public final @NoInstances class MapDiff
+{
+    private MapDiff()
+    {
+        throw new AssertionError("MapDiff may not be instantiated");
+    }
+
+    public static <K,V> void diff(@NotNull IMap<K,V> source,
+                                  @NotNull IMap<K,V> target,
+                                  @NotNull IMap.DiffListener<? super K,? super V> listener)
+    {
+        source = unwrap(source);
+        target = unwrap(target);
+        if (source == target) {
+            return;
+        }
+
+        HashTrieMapImpl<K,V> s = Extensions.getExtension(source, HashTrieMapImpl.class);
+        HashTrieMapImpl<K,V> t = Extensions.getExtension(target, HashTrieMapImpl.class);
+        if (s != null && t != null) {
+            LongTrie.diff(s.getTrie(), t.getTrie(), new BucketDiffVisitor<>(listener));
+            return;
+        }
+
+        for (Binding<K,V> b : source) {
+            K key = b.getKey();
+            V value = b.getValue();
+            V newValue = target.get(key);
+            if (newValue == null) {
+                listener.removed(key, value);
+            } else if (newValue != value && !newValue.equals(value)) {
+                listener.changed(key, value, newValue);
+            }
+        }
+        for (Binding<K,V> b : target) {
+            K key = b.getKey();
+            if (!source.containsKey(key)) {
+                listener.added(key, b.getValue());
+            }
+        }
+    }
+
+    public static <V> @NotNull SetDiff<V> diff(@NotNull ISet<V> source, @NotNull ISet<V> target)
+    {
+        if (source == target) {
+            return SetDiff.create(ISet.empty(), ISet.empty());
+        }
+
+        SetBuilder<V> added = ISet.builder();
+        SetBuilder<V> removed = ISet.builder();
+
+        HashTrieSetImpl<V> s = Extensions.getExtension(source, HashTrieSetImpl.class);
+        HashTrieSetImpl<V> t = Extensions.getExtension(target, HashTrieSetImpl.class);
+        if (s != null && t != null) {
+            diff(s.getMap(), t.getMap(), new IMap.DiffListener<V,V>()
+            {
+                @Override
+                public void added(@NotNull V key, @NotNull V value)
+                {
+                    added.add(key);
+                }
+
+                @Override
+                public void removed(@NotNull V key, @NotNull V value)
+                {
+                    removed.add(key);
+                }
+
+                @Override
+                public void changed(@NotNull V key, @NotNull V oldValue, @NotNull V newValue)
+                {
+                    // a set maps each element to itself
+                }
+            });
+        } else {
+            for (V element : source) {
+                if (!target.contains(element)) {
+                    removed.add(element);
+                }
+            }
+            for (V element : target) {
+                if (!source.contains(element)) {
+                    added.add(element);
+                }
+            }
+        }
+        return SetDiff.create(added.values(), removed.values());
+    }
+
+    private static <K,V> @NotNull IMap<K,V> unwrap(@NotNull IMap<K,V> map)
+    {
+        OrderedMapImpl<K,V> ordered = Extensions.getExtension(map, OrderedMapImpl.class);
+        return ordered != null ? ordered.getData() : map;
+    }
+
+    /**
+      Reports the differences between the buckets of two hash tries. A bucket contains alternating keys and values of
+      the bindings whose keys have the same hash code.
+    */
+
+    private static final class BucketDiffVisitor<K,V>
+      implements LongTrie.DiffVisitor
+    {
+        private final @NotNull IMap.DiffListener<? super K,? super V> listener;
+
+        public BucketDiffVisitor(@NotNull IMap.DiffListener<? super K,? super V> listener)
+        {
+            this.listener = listener;
+        }
+
+        @Override
+        public void removed(@NotNull LongTrie.Leaf leaf)
+        {
+            Object[] bucket = (Object[]) leaf.value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                listener.removed((K) bucket[i], (V) bucket[i + 1]);
+            }
+        }
+
+        @Override
+        public void added(@NotNull LongTrie.Leaf leaf)
+        {
+            Object[] bucket = (Object[]) leaf.value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                listener.added((K) bucket[i], (V) bucket[i + 1]);
+            }
+        }
+
+        @Override
+        public void changed(@NotNull LongTrie.Leaf oldLeaf, @NotNull LongTrie.Leaf newLeaf)
+        {
+            Object[] oldBucket = (Object[]) oldLeaf.value;
+            Object[] newBucket = (Object[]) newLeaf.value;
+            for (int i = 0; i < oldBucket.length; i += 2) {
+                Object value = oldBucket[i + 1];
+                int j = indexOf(newBucket, oldBucket[i]);
+                if (j < 0) {
+                    listener.removed((K) oldBucket[i], (V) value);
+                } else {
+                    Object newValue = newBucket[j + 1];
+                    if (newValue != value && !newValue.equals(value)) {
+                        listener.changed((K) oldBucket[i], (V) value, (V) newValue);
+                    }
+                }
+            }
+            for (int j = 0; j < newBucket.length; j += 2) {
+                if (indexOf(oldBucket, newBucket[j]) < 0) {
+                    listener.added((K) newBucket[j], (V) newBucket[j + 1]);
+                }
+            }
+        }
+
+        private static int indexOf(@NotNull Object @NotNull [] bucket, @NotNull Object key)
+        {
+            for (int i = 0; i < bucket.length; i += 2) {
+                if (bucket[i] == key || bucket[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -8,9 +8,18 @@
 
 package org.violetlib.collections.impl;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 import org.violetlib.collections.IList;
 import org.violetlib.collections.IMap;
@@ -107,31 +116,176 @@ public final class MapListBuilderImpl<K,V>
     @Override
     public @NotNull IMap<K,IList<V>> sort()
     {
-        MapBuilder<K,IList<V>> b = IMap.builder();
-        for (Map.Entry<K,ListBuilder<V>> e : map.entrySet()) {
-            b.put(e.getKey(), e.getValue().values().sort());
-        }
-        return b.value();
+        return sortValues(k -> null);
     }
 
     @Override
     public @NotNull IMap<K,IList<V>> sort(@NotNull Comparator<? super V> comparator)
     {
-        MapBuilder<K,IList<V>> b = IMap.builder();
-        for (Map.Entry<K,ListBuilder<V>> e : map.entrySet()) {
-            b.put(e.getKey(), e.getValue().values().sort(comparator));
-        }
-        return b.value();
+        return sortValues(k -> comparator);
     }
 
     @Override
     public @NotNull IMap<K,IList<V>> sort(@NotNull KeyedValueSorter<K,V> sorter)
     {
-        MapBuilder<K,IList<V>> b = IMap.builder();
+        return sortValues(sorter::getComparatorForKey);
+    }
+
+    /**
+      The total number of values below which the value lists are sorted in the calling thread. Also the number of
+      values that are sorted by one fork/join task.
+    */
+
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    /**
+      Return a map containing the keys bound to sorted lists of values. If there are enough values, the lists are
+      sorted in parallel using the common fork/join pool. The comparators are obtained in the calling thread.
+      @param comparators Returns the comparator for the values of a key, or null to use the natural order.
+    */
+
+    private @NotNull IMap<K,IList<V>> sortValues(@NotNull Function<K,Comparator<? super V>> comparators)
+    {
+        int count = map.size();
+        Object[] keys = new Object[count];
+        IList<?>[] lists = new IList<?>[count];
+        Comparator<?>[] cs = new Comparator<?>[count];
+        long[] offsets = new long[count + 1];
+        int index = 0;
         for (Map.Entry<K,ListBuilder<V>> e : map.entrySet()) {
             K key = e.getKey();
-            b.put(key, e.getValue().values().sort(sorter.getComparatorForKey(key)));
+            IList<V> values = e.getValue().values();
+            keys[index] = key;
+            lists[index] = values;
+            cs[index] = comparators.apply(key);
+            offsets[index + 1] = offsets[index] + values.size();
+            index++;
+        }
+
+        SortTask task = new SortTask(lists, cs, offsets, 0, count);
+        if (offsets[count] < SEQUENTIAL_THRESHOLD) {
+            task.sortRange();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return Impl.createMap(new ArrayBindings<K,IList<V>>(keys, lists));
+    }
+
+    /**
+      Sort the value lists in a range of keys, replacing each list with the sorted list. The range is divided so that
+      each task sorts about {@link #SEQUENTIAL_THRESHOLD} values, or the values of one key.
+    */
+
+    @SuppressWarnings("serial")
+    private static final class SortTask
+      extends RecursiveAction
+    {
+        private final @NotNull IList<?> @NotNull [] lists;
+        private final @Nullable Comparator<?> @NotNull [] comparators;
+        private final long @NotNull [] offsets;
+        private final int start;
+        private final int end;
+
+        public SortTask(@NotNull IList<?> @NotNull [] lists,
+                        @Nullable Comparator<?> @NotNull [] comparators,
+                        long @NotNull [] offsets,
+                        int start,
+                        int end)
+        {
+            this.lists = lists;
+            this.comparators = comparators;
+            this.offsets = offsets;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= 1 || offsets[end] - offsets[start] <= SEQUENTIAL_THRESHOLD) {
+                sortRange();
+                return;
+            }
+            // Split at the key that divides the values most evenly
+            long target = (offsets[start] + offsets[end]) / 2;
+            int middle = Arrays.binarySearch(offsets, start + 1, end, target);
+            if (middle < 0) {
+                middle = -middle - 1;
+            }
+            middle = Math.max(start + 1, Math.min(end - 1, middle));
+            invokeAll(new SortTask(lists, comparators, offsets, start, middle),
+              new SortTask(lists, comparators, offsets, middle, end));
+        }
+
+        public void sortRange()
+        {
+            for (int i = start; i < end; i++) {
+                IList<Object> list = (IList) lists[i];
+                Comparator<Object> c = (Comparator) comparators[i];
+                lists[i] = c != null ? list.sort(c) : list.sort();
+            }
+        }
+    }
+
+    /**
+      A read-only map view of parallel arrays of keys and values, used to create an immutable map without copying the
+      bindings into an intermediate map. The keys must be distinct.
+    */
+
+    private static final class ArrayBindings<K,V>
+      extends AbstractMap<K,V>
+    {
+        private final @NotNull Object @NotNull [] keys;
+        private final @NotNull Object @NotNull [] values;
+
+        public ArrayBindings(@NotNull Object @NotNull [] keys, @NotNull Object @NotNull [] values)
+        {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        public int size()
+        {
+            return keys.length;
+        }
+
+        @Override
+        public @NotNull Set<Entry<K,V>> entrySet()
+        {
+            return new AbstractSet<Entry<K,V>>()
+            {
+                @Override
+                public int size()
+                {
+                    return keys.length;
+                }
+
+                @Override
+                public @NotNull Iterator<Entry<K,V>> iterator()
+                {
+                    return new Iterator<Entry<K,V>>()
+                    {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return index < keys.length;
+                        }
+
+                        @Override
+                        public @NotNull Entry<K,V> next()
+                        {
+                            if (index >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = index++;
+                            return new SimpleImmutableEntry<>((K) keys[i], (V) values[i]);
+                        }
+                    };
+                }
+            };
         }
-        return b.value();
     }
 }
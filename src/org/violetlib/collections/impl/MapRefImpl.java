@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.IMapRef;
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+
+/**
+  An implementation of a lock-free cell containing an immutable map.
+  <p>
+  The cell always contains a hash trie map, so that each attempt to update a binding creates only the nodes on the path
+  to one key. A map of another type that is stored in the cell is first copied into a hash trie map.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final class MapRefImpl<K,V>
+  extends RefImpl<IMap<K,V>>
+  implements IMapRef<K,V>
+{
+    /**
+      Create a cell. The bindings of the map are copied into a hash trie map, unless the map is already a hash trie map.
+    */
+
+    public static <K,V> @NotNull IMapRef<K,V> create(@NotNull IMap<K,V> map)
+    {
+        return new MapRefImpl<>(toTrie(map));
+    }
+
+    /**
+      Return a hash trie map with the same bindings as the specified map.
+      @return the map, if it is already a hash trie map, otherwise a new hash trie map, or null if the map is null.
+    */
+
+    private static <K,V> @Nullable IMap<K,V> toTrie(@Nullable IMap<K,V> map)
+    {
+        if (map == null || map instanceof HashTrieMapImpl) {
+            return map;
+        }
+        return HashTrieMapImpl.<K,V>empty().extending(map);
+    }
+
+    private MapRefImpl(@NotNull IMap<K,V> map)
+    {
+        super(map);
+    }
+
+    @Override
+    public void set(@NotNull IMap<K,V> value)
+    {
+        super.set(toTrie(value));
+    }
+
+    @Override
+    public boolean compareAndSet(@NotNull IMap<K,V> expected, @NotNull IMap<K,V> value)
+    {
+        return super.compareAndSet(expected, toTrie(value));
+    }
+
+    @Override
+    public @NotNull IMap<K,V> update(@NotNull UnaryOperator<IMap<K,V>> f)
+    {
+        return super.update(m -> toTrie(f.apply(m)));
+    }
+
+    @Override
+    public @NotNull IMap<K,V> getAndUpdate(@NotNull UnaryOperator<IMap<K,V>> f)
+    {
+        return super.getAndUpdate(m -> toTrie(f.apply(m)));
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        return get().get(key);
+    }
+
+    @Override
+    public @Nullable V compute(@NotNull K key, @NotNull BiFunction<@NotNull K,@Nullable V,@Nullable V> f)
+    {
+        for (int retries = 0; ; retries++) {
+            IMap<K,V> current = get();
+            V oldValue = current.get(key);
+            V newValue = f.apply(key, oldValue);
+            if (attempt(current, newValue == oldValue ? current : current.extending(key, newValue), retries)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public @NotNull V computeIfAbsent(@NotNull K key, @NotNull Function<@NotNull K,@NotNull V> f)
+    {
+        for (int retries = 0; ; retries++) {
+            IMap<K,V> current = get();
+            V oldValue = current.get(key);
+            if (oldValue != null) {
+                return oldValue;
+            }
+            V newValue = f.apply(key);
+            if (newValue == null) {
+                throw UndefinedValueError.create("Function must not return null");
+            }
+            if (attempt(current, current.extending(key, newValue), retries)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public @Nullable V put(@NotNull K key, @NotNull V value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        return replace(key, value);
+    }
+
+    @Override
+    public @Nullable V remove(@NotNull K key)
+    {
+        return replace(key, null);
+    }
+
+    private @Nullable V replace(@NotNull K key, @Nullable V value)
+    {
+        for (int retries = 0; ; retries++) {
+            IMap<K,V> current = get();
+            V oldValue = current.get(key);
+            if (attempt(current, current.extending(key, value), retries)) {
+                return oldValue;
+            }
+        }
+    }
+}
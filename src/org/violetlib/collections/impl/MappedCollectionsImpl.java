@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.ElementCodec;
+import org.violetlib.collections.IList;
+import org.violetlib.collections.IMap;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+import static org.violetlib.collections.impl.CollectionFormat.*;
+
+/**
+  Writes and maps the files that support file-based lists and maps.
+  <p>
+  The table at the start of a file is written through a mapping, which allows the hash table of a map to be built
+  without holding the positions of the bindings in memory. The elements or bindings are written sequentially after the
+  table.
+*/
+
+public final @NoInstances class MappedCollectionsImpl
+{
+    private MappedCollectionsImpl()
+    {
+        throw new AssertionError("MappedCollectionsImpl may not be instantiated");
+    }
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    public static <V> void writeList(@NotNull Path file, @NotNull IList<V> list, @NotNull ElementCodec<? super V> codec)
+      throws IOException
+    {
+        int count = list.size();
+        long tableEnd = MAPPED_HEADER_SIZE + 8L * count;
+        try (FileChannel channel = open(file)) {
+            MappedData table = MappedData.openForWriting(channel, tableEnd);
+            writeHeader(table, MAPPED_LIST, count, 0);
+            PositionOutputStream out = new PositionOutputStream(channel, tableEnd);
+            DataOutputStream dout = new DataOutputStream(out);
+            long slot = MAPPED_HEADER_SIZE;
+            for (V element : list) {
+                table.putLong(slot, out.getPosition());
+                slot += 8;
+                codec.write(dout, element);
+            }
+            dout.flush();
+            table.force();
+        }
+    }
+
+    public static <K,V> void writeMap(@NotNull Path file,
+                                      @NotNull IMap<K,V> map,
+                                      @NotNull ElementCodec<? super K> keyCodec,
+                                      @NotNull ElementCodec<? super V> valueCodec)
+      throws IOException
+    {
+        int count = map.size();
+        int capacity = getCapacity(count);
+        int mask = capacity - 1;
+        long tableEnd = MAPPED_HEADER_SIZE + 8L * capacity;
+        try (FileChannel channel = open(file)) {
+            MappedData table = MappedData.openForWriting(channel, tableEnd);
+            writeHeader(table, MAPPED_MAP, count, capacity);
+            PositionOutputStream out = new PositionOutputStream(channel, tableEnd);
+            DataOutputStream dout = new DataOutputStream(out);
+            for (Binding<K,V> b : map) {
+                K key = b.getKey();
+                long position = out.getPosition();
+                if (position > MAPPED_POSITION_MASK) {
+                    throw new IOException("Map is too large");
+                }
+                int h = FileMapImpl.spread(key.hashCode());
+                int index = h & mask;
+                while (table.getLong(MAPPED_HEADER_SIZE + 8L * index) != 0) {
+                    index = (index + 1) & mask;
+                }
+                table.putLong(MAPPED_HEADER_SIZE + 8L * index,
+                  FileMapImpl.slotHash(h) << MAPPED_POSITION_BITS | position);
+                keyCodec.write(dout, key);
+                valueCodec.write(dout, b.getValue());
+            }
+            dout.flush();
+            table.force();
+        }
+    }
+
+    public static <V> @NotNull IList<V> mapList(@NotNull Path file, @NotNull ElementCodec<? extends V> codec)
+      throws IOException
+    {
+        MappedData data = MappedData.open(file);
+        int count = readHeader(data, MAPPED_LIST);
+        if (MAPPED_HEADER_SIZE + 8L * count > data.length() || data.getLong(16) != 0) {
+            throw new IOException("Invalid mapped list");
+        }
+        return FileListImpl.create(data, count, codec);
+    }
+
+    public static <K,V> @NotNull IMap<K,V> mapMap(@NotNull Path file,
+                                                  @NotNull ElementCodec<? extends K> keyCodec,
+                                                  @NotNull ElementCodec<? extends V> valueCodec)
+      throws IOException
+    {
+        MappedData data = MappedData.open(file);
+        int count = readHeader(data, MAPPED_MAP);
+        long capacity = data.getLong(16);
+        if (capacity <= count || capacity > MAXIMUM_CAPACITY || Long.bitCount(capacity) != 1
+              || MAPPED_HEADER_SIZE + 8L * capacity > data.length()) {
+            throw new IOException("Invalid mapped map");
+        }
+        return FileMapImpl.create(data, count, (int) capacity, keyCodec, valueCodec);
+    }
+
+    /**
+      Return the table capacity for a map. The load factor is at most 0.75, and at least one slot is always empty.
+    */
+
+    private static int getCapacity(int count)
+    {
+        long minimum = (long) count + count / 3 + 1;
+        long capacity = 1;
+        while (capacity < minimum) {
+            capacity <<= 1;
+        }
+        if (capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Map is too large");
+        }
+        return (int) capacity;
+    }
+
+    private static @NotNull FileChannel open(@NotNull Path file)
+      throws IOException
+    {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeHeader(@NotNull MappedData data, int tag, int count, long capacity)
+    {
+        data.putInt(0, MAGIC);
+        data.putInt(4, VERSION);
+        data.putInt(8, tag);
+        data.putInt(12, count);
+        data.putLong(16, capacity);
+    }
+
+    /**
+      Validate the header of a mapped file.
+      @return the element or binding count.
+    */
+
+    private static int readHeader(@NotNull MappedData data, int tag)
+      throws IOException
+    {
+        if (data.length() < MAPPED_HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a mapped collection file");
+        }
+        int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapped collection file version: " + version);
+        }
+        if (data.getInt(8) != tag) {
+            throw new IOException(tag == MAPPED_LIST ? "List expected" : "Map expected");
+        }
+        int count = data.getInt(12);
+        if (count < 0) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    /**
+      A buffered stream that writes to a channel starting at a specified position and tracks the current position.
+    */
+
+    private static final class PositionOutputStream
+      extends FilterOutputStream
+    {
+        private long position;
+
+        public PositionOutputStream(@NotNull FileChannel channel, long position)
+          throws IOException
+        {
+            super(new BufferedOutputStream(Channels.newOutputStream(channel.position(position)), 1 << 16));
+
+            this.position = position;
+        }
+
+        public long getPosition()
+        {
+            return position;
+        }
+
+        @Override
+        public void write(int b)
+          throws IOException
+        {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len)
+          throws IOException
+        {
+            out.write(b, off, len);
+            position += len;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jetbrains.annotations.*;
+
+/**
+  The contents of a file that has been mapped into memory. A file larger than the largest possible byte buffer is
+  mapped as a sequence of segments. Values are read at absolute positions, so the data may be read by multiple threads
+  concurrently.
+  <p>
+  Values are big-endian, matching {@link java.io.DataOutputStream}. A long integer at a position that is a multiple of 8
+  never spans two segments.
+*/
+
+/* package private */ final class MappedData
+{
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+      Map a file for reading.
+    */
+
+    public static @NotNull MappedData open(@NotNull Path file)
+      throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedData(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+        }
+    }
+
+    /**
+      Map the initial portion of a file for reading and writing. The file is extended if necessary.
+    */
+
+    public static @NotNull MappedData openForWriting(@NotNull FileChannel channel, long length)
+      throws IOException
+    {
+        return new MappedData(channel, FileChannel.MapMode.READ_WRITE, length);
+    }
+
+    private final @NotNull ByteBuffer @NotNull [] segments;
+    private final long length;
+
+    private MappedData(@NotNull FileChannel channel, @NotNull FileChannel.MapMode mode, long length)
+      throws IOException
+    {
+        int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new ByteBuffer[count];
+        this.length = length;
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(mode, start, Math.min(SEGMENT_SIZE, length - start));
+        }
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    public byte getByte(long position)
+    {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    public int getInt(long position)
+    {
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset <= SEGMENT_SIZE - 4) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].getInt(offset);
+        }
+        int result = 0;
+        for (int i = 0; i < 4; i++) {
+            result = (result << 8) | (getByte(position + i) & 0xFF);
+        }
+        return result;
+    }
+
+    public long getLong(long position)
+    {
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset <= SEGMENT_SIZE - 8) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].getLong(offset);
+        }
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (getByte(position + i) & 0xFF);
+        }
+        return result;
+    }
+
+    public void putInt(long position, int value)
+    {
+        assert (position & 3) == 0;
+        segments[(int) (position >>> SEGMENT_SHIFT)].putInt((int) (position & SEGMENT_MASK), value);
+    }
+
+    public void putLong(long position, long value)
+    {
+        assert (position & 7) == 0;
+        segments[(int) (position >>> SEGMENT_SHIFT)].putLong((int) (position & SEGMENT_MASK), value);
+    }
+
+    /**
+      Copy bytes into an array.
+    */
+
+    public void get(long position, byte @NotNull [] dest, int offset, int count)
+    {
+        while (count > 0) {
+            int segmentOffset = (int) (position & SEGMENT_MASK);
+            int n = Math.min(count, SEGMENT_SIZE - segmentOffset);
+            ByteBuffer b = segments[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+            b.position(segmentOffset);
+            b.get(dest, offset, n);
+            position += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+      Write any changes to the storage device.
+    */
+
+    public void force()
+    {
+        for (ByteBuffer segment : segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+    }
+
+    /**
+      Return an input that reads sequentially, starting at the specified position.
+    */
+
+    public @NotNull Input input(long position)
+    {
+        return new Input(position);
+    }
+
+    /**
+      A sequential reader of mapped data. An input is not thread safe.
+    */
+
+    public final class Input
+      implements DataInput
+    {
+        private long position;
+
+        private Input(long position)
+        {
+            this.position = position;
+        }
+
+        public long getPosition()
+        {
+            return position;
+        }
+
+        private long advance(int count)
+          throws EOFException
+        {
+            long p = position;
+            if (count > length - p) {
+                throw new EOFException();
+            }
+            position = p + count;
+            return p;
+        }
+
+        @Override
+        public void readFully(byte @NotNull [] b)
+          throws IOException
+        {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte @NotNull [] b, int off, int len)
+          throws IOException
+        {
+            get(advance(len), b, off, len);
+        }
+
+        @Override
+        public int skipBytes(int n)
+        {
+            int count = (int) Math.max(0, Math.min(n, length - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public boolean readBoolean()
+          throws IOException
+        {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte()
+          throws IOException
+        {
+            return getByte(advance(1));
+        }
+
+        @Override
+        public int readUnsignedByte()
+          throws IOException
+        {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort()
+          throws IOException
+        {
+            long p = advance(2);
+            return (short) ((getByte(p) << 8) | (getByte(p + 1) & 0xFF));
+        }
+
+        @Override
+        public int readUnsignedShort()
+          throws IOException
+        {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar()
+          throws IOException
+        {
+            return (char) readShort();
+        }
+
+        @Override
+        public int readInt()
+          throws IOException
+        {
+            return getInt(advance(4));
+        }
+
+        @Override
+        public long readLong()
+          throws IOException
+        {
+            return getLong(advance(8));
+        }
+
+        @Override
+        public float readFloat()
+          throws IOException
+        {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Override
+        public double readDouble()
+          throws IOException
+        {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        @Override
+        public @Nullable String readLine()
+          throws IOException
+        {
+            if (position >= length) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            while (position < length) {
+                int c = readUnsignedByte();
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    if (position < length && getByte(position) == '\n') {
+                        position++;
+                    }
+                    break;
+                }
+                sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public @NotNull String readUTF()
+          throws IOException
+        {
+            return DataInputStream.readUTF(this);
+        }
+    }
+}
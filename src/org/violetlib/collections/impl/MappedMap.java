@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import org.violetlib.collections.Binding;
@@ -26,6 +27,11 @@ import org.violetlib.annotations.Immutable;
 
 /**
   A virtual map defined using a base map and function that maps base map values to the values of this virtual map.
+  A key of the base map whose value is mapped to null is not a key of this map.
+  <p>
+  By default, the function is applied each time a value is accessed. A memoized mapped map applies the function at
+  most once for each key: the result is recorded in a cell associated with the key, which is computed by the first
+  thread that needs it while other threads that need the same value wait.
 */
 
 public final @Immutable class MappedMap<K,V,E>
@@ -33,16 +39,100 @@ public final @Immutable class MappedMap<K,V,E>
 {
     public static <K,V,E> @NotNull IMap<K,V> create(@NotNull IMap<K,E> base, @NotNull Function<E,V> mapper)
     {
-        return new MappedMap<>(base, mapper);
+        return new MappedMap<>(base, mapper, false);
     }
 
+    public static <K,V,E> @NotNull IMap<K,V> createMemoized(@NotNull IMap<K,E> base, @NotNull Function<E,V> mapper)
+    {
+        return new MappedMap<>(base, mapper, true);
+    }
+
+    private static final @NotNull Object NONE = new Object();  // records a mapped value of null
+
     private final @NotNull IMap<K,E> base;
     private final @NotNull Function<E,V> mapper;
+    private final @Nullable ConcurrentHashMap<K,Cell> cells;  // used only if memoized
+    private volatile int size = -1;  // cached, -1 if not yet computed
 
-    private MappedMap(@NotNull IMap<K,E> base, @NotNull Function<E,V> mapper)
+    private MappedMap(@NotNull IMap<K,E> base, @NotNull Function<E,V> mapper, boolean isMemoized)
     {
         this.base = base;
         this.mapper = mapper;
+        this.cells = isMemoized ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+      A compute-once cell holding the mapped value for one key.
+    */
+
+    private final class Cell
+    {
+        private volatile @Nullable Object value;
+
+        public @Nullable V get(@NotNull E e)
+        {
+            Object v = value;
+            if (v == null) {
+                synchronized (this) {
+                    v = value;
+                    if (v == null) {
+                        V mapped = mapper.apply(e);
+                        v = mapped != null ? mapped : NONE;
+                        value = v;
+                    }
+                }
+            }
+            return v != NONE ? (V) v : null;
+        }
+    }
+
+    /**
+      Return the mapped value for a binding of the base map.
+    */
+
+    private @Nullable V map(@NotNull K key, @NotNull E e)
+    {
+        if (cells == null) {
+            return mapper.apply(e);
+        }
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = cells.computeIfAbsent(key, k -> new Cell());
+        }
+        return cell.get(e);
+    }
+
+    /**
+      Return a map containing the bindings of a base map with mapped values. The mapping function is applied once to
+      each binding.
+    */
+
+    public static <K,V,E> @NotNull IMap<K,V> createMaterialized(@NotNull IMap<K,E> base, @NotNull Function<E,V> mapper)
+    {
+        return new MappedMap<>(base, mapper, false).materialize();
+    }
+
+    /**
+      Return a map containing the bindings of this map. The mapping function is applied to each binding not already
+      mapped. If the base map is a hash trie map, a hash map, or an array map, the result is a map of the same kind
+      that shares the structure of the base map, so the keys are not rehashed. Otherwise, the bindings are copied into
+      a new map.
+    */
+
+    public @NotNull IMap<K,V> materialize()
+    {
+        if (base instanceof HashTrieMapImpl) {
+            return ((HashTrieMapImpl<K,E>) base).mapValues(this::map);
+        }
+        if (base instanceof HashMapImpl) {
+            return ((HashMapImpl<K,E>) base).mapValues(this::map);
+        }
+        if (base instanceof ArrayMapImpl) {
+            return ((ArrayMapImpl<K,E>) base).mapValues(this::map);
+        }
+        Map<K,V> bindings = new HashMap<>();
+        visit(bindings::put);
+        return Impl.createMap(bindings);
     }
 
     @Override
@@ -54,20 +144,36 @@ public final @Immutable class MappedMap<K,V,E>
     @Override
     public boolean isEmpty()
     {
-        return base.isEmpty();
+        int count = size;
+        if (count >= 0) {
+            return count == 0;
+        }
+        return base.isEmpty() || find((key, value) -> Boolean.TRUE, Boolean.FALSE) == Boolean.FALSE;
     }
 
+    /**
+      Return the number of keys of this map, which excludes the keys of the base map whose values are mapped to null.
+      The mapping function is applied to each binding when the size is first requested; the size is then retained.
+    */
+
     @Override
     public int size()
     {
-        return base.size();
+        int count = size;
+        if (count < 0) {
+            int[] counter = { 0 };
+            visit((key, value) -> counter[0]++);
+            count = counter[0];
+            size = count;
+        }
+        return count;
     }
 
     @Override
     public @Nullable V get(@NotNull K key)
     {
         E e = base.get(key);
-        return e != null ? mapper.apply(e) : null;
+        return e != null ? map(key, e) : null;
     }
 
     @Override
@@ -76,7 +182,7 @@ public final @Immutable class MappedMap<K,V,E>
         try {
             K k = (K) key;
             E e = base.get(k);
-            return e != null ? mapper.apply(e) != null : false;
+            return e != null ? map(k, e) != null : false;
         } catch (ClassCastException ex) {
             // probably of no use in current Java
             return false;
@@ -86,13 +192,21 @@ public final @Immutable class MappedMap<K,V,E>
     @Override
     public void visit(@NotNull Visitor<K,V> visitor)
     {
-        base.visit((key, e) -> visitor.visit(key, mapper.apply(e)));
+        base.visit((key, e) -> {
+            V value = map(key, e);
+            if (value != null) {
+                visitor.visit(key, value);
+            }
+        });
     }
 
     @Override
     public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
     {
-        return base.find((key, e) -> visitor.visit(key, mapper.apply(e)), defaultResult);
+        return base.find((key, e) -> {
+            V value = map(key, e);
+            return value != null ? visitor.visit(key, value) : null;
+        }, defaultResult);
     }
 
     @Override
@@ -46,6 +46,11 @@ public final @Immutable class OrderedMapImpl<K,V>
         this.data = data;
     }
 
+    /* package private */ @NotNull IMap<K,V> getData()
+    {
+        return data;
+    }
+
     @Override
     public @NotNull IIterator<Binding<K,V>> iterator()
     {
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import org.violetlib.collections.FindVisitor;
+import org.violetlib.collections.IList;
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Support for implementing the parallel IList operations. These implementations work on an array containing the list
+  elements, which is divided into ranges of at most {@link #SEQUENTIAL_THRESHOLD} elements.
+*/
+
+public final @NoInstances class ParallelListSupport
+{
+    private ParallelListSupport()
+    {
+        throw new AssertionError("ParallelListSupport may not be instantiated");
+    }
+
+    /**
+      The number of elements below which a range is processed sequentially.
+    */
+
+    public static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    public static <V,R> @NotNull IList<R> map(@NotNull IList<V> source,
+                                              @NotNull Function<@NotNull V,@NotNull R> mapper,
+                                              @NotNull ForkJoinPool pool)
+    {
+        int size = source.size();
+        if (size < SEQUENTIAL_THRESHOLD) {
+            return source.map(mapper);
+        }
+        Object[] elements = source.toJavaArray(new Object[size]);
+        pool.invoke(new MapTask<>(mapper, elements, 0, size, false));
+        return SimpleList.create((R[]) elements);
+    }
+
+    public static <V,R> @NotNull IList<R> mapFilter(@NotNull IList<V> source,
+                                                    @NotNull Function<@NotNull V,@Nullable R> mapper,
+                                                    @NotNull ForkJoinPool pool)
+    {
+        int size = source.size();
+        if (size < SEQUENTIAL_THRESHOLD) {
+            return source.mapFilter(mapper);
+        }
+        Object[] elements = source.toJavaArray(new Object[size]);
+        pool.invoke(new MapTask<>(mapper, elements, 0, size, true));
+        int count = 0;
+        for (Object element : elements) {
+            if (element != null) {
+                elements[count++] = element;
+            }
+        }
+        if (count < size) {
+            Object[] a = new Object[count];
+            System.arraycopy(elements, 0, a, 0, count);
+            elements = a;
+        }
+        return SimpleList.create((R[]) elements);
+    }
+
+    public static <V,R> @Nullable R find(@NotNull IList<V> source,
+                                         @NotNull FindVisitor<V,R> visitor,
+                                         @NotNull ForkJoinPool pool)
+    {
+        int size = source.size();
+        if (size < SEQUENTIAL_THRESHOLD) {
+            return source.find(visitor);
+        }
+        Object[] elements = source.toJavaArray(new Object[size]);
+        FindState<R> state = new FindState<>();
+        pool.invoke(new FindTask<>(visitor, state, elements, 0, size));
+        return state.result;
+    }
+
+    /**
+      Replace each element in a range of an array with the result of the mapper. If null results are permitted, they
+      are stored as null.
+    */
+
+    @SuppressWarnings("serial")
+    private static final class MapTask<V,R>
+      extends RecursiveAction
+    {
+        private final @NotNull Function<@NotNull V,@Nullable R> mapper;
+        private final Object @NotNull [] elements;
+        private final int start;
+        private final int end;
+        private final boolean isNullPermitted;
+
+        public MapTask(@NotNull Function<@NotNull V,@Nullable R> mapper,
+                       Object @NotNull [] elements,
+                       int start,
+                       int end,
+                       boolean isNullPermitted)
+        {
+            this.mapper = mapper;
+            this.elements = elements;
+            this.start = start;
+            this.end = end;
+            this.isNullPermitted = isNullPermitted;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= SEQUENTIAL_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    R result = mapper.apply((V) elements[i]);
+                    if (result == null && !isNullPermitted) {
+                        throw UndefinedValueError.create("Mapper must not return null");
+                    }
+                    elements[i] = result;
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new MapTask<>(mapper, elements, start, middle, isNullPermitted),
+              new MapTask<>(mapper, elements, middle, end, isNullPermitted));
+        }
+    }
+
+    private static final class FindState<R>
+    {
+        volatile int bestIndex = Integer.MAX_VALUE;
+        @Nullable R result;
+
+        synchronized void offer(int index, @NotNull R value)
+        {
+            if (index < bestIndex) {
+                result = value;
+                bestIndex = index;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class FindTask<V,R>
+      extends RecursiveAction
+    {
+        private final @NotNull FindVisitor<V,R> visitor;
+        private final @NotNull FindState<R> state;
+        private final Object @NotNull [] elements;
+        private final int start;
+        private final int end;
+
+        public FindTask(@NotNull FindVisitor<V,R> visitor,
+                        @NotNull FindState<R> state,
+                        Object @NotNull [] elements,
+                        int start,
+                        int end)
+        {
+            this.visitor = visitor;
+            this.state = state;
+            this.elements = elements;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (start >= state.bestIndex) {
+                return;
+            }
+            if (end - start <= SEQUENTIAL_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    if ((i & 0x1F) == 0 && i >= state.bestIndex) {
+                        return;
+                    }
+                    R result = visitor.visit((V) elements[i]);
+                    if (result != null) {
+                        state.offer(i, result);
+                        return;
+                    }
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new FindTask<>(visitor, state, elements, start, middle),
+              new FindTask<>(visitor, state, elements, middle, end));
+        }
+    }
+}
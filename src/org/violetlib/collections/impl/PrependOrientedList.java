@@ -128,7 +128,7 @@ public abstract @Immutable class PrependOrientedList<V>
     public @NotNull IList<V> sort(@NotNull Comparator<? super V> c)
     {
         List<V> elements = toJavaList();
-        elements.sort(c);
+        SortSupport.sort(elements, c);
         return createWithElements(elements);
     }
 
@@ -15,11 +15,13 @@ import org.violetlib.collections.*;
 import org.violetlib.collections.impl.rrblist.FocusableRRBVector;
 import org.violetlib.collections.impl.rrblist.MutableRRBVector;
 import org.violetlib.collections.impl.rrblist.RRBVector;
+import org.violetlib.collections.impl.rrblist.RRBVectorTasks;
 import org.violetlib.collections.util.CollectorImpl;
 import org.violetlib.util.Extensions;
 import org.violetlib.types.UndefinedValueError;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
@@ -177,30 +179,63 @@ public final @Immutable class RRBList<V>
     }
 
     private static final @NotNull IList<Object> EMPTY = new RRBList<>();
+    private int hashCode;  // cached, zero if not yet computed
+    private final float minimumFill;  // zero if compaction is not enabled
+    private final int editCount;  // the number of edits since compaction was last considered
 
     private RRBList()
     {
         super();
+        this.minimumFill = 0;
+        this.editCount = 0;
     }
 
     private RRBList(int size, @NotNull Supplier<V> items)
     {
         super(size, items);
+        this.minimumFill = 0;
+        this.editCount = 0;
     }
 
     private RRBList(@NotNull RRBVector<V> vector)
+    {
+        this(vector, 0, 0);
+    }
+
+    private RRBList(@NotNull RRBVector<V> vector, float minimumFill, int editCount)
     {
         super(vector);
+        this.minimumFill = minimumFill;
+        this.editCount = editCount;
     }
 
     private RRBList(boolean fake, @NotNull V element)
     {
         super(fake, element);
+        this.minimumFill = 0;
+        this.editCount = 0;
     }
 
     /* package private */ RRBList(int length, Object @NotNull [] root, int depth)
+    {
+        this(length, root, depth, 0);
+    }
+
+    /* package private */ Object @NotNull [] getRoot()
+    {
+        return root;
+    }
+
+    /* package private */ int getDepth()
+    {
+        return depth;
+    }
+
+    private RRBList(int length, Object @NotNull [] root, int depth, float minimumFill)
     {
         super(length, root, depth);
+        this.minimumFill = minimumFill;
+        this.editCount = 0;
     }
 
     @Override
@@ -269,7 +304,12 @@ public final @Immutable class RRBList<V>
     @Override
     public int hashCode()
     {
-        return ListEquality.computeHashCode(this);
+        int h = hashCode;
+        if (h == 0) {
+            h = ListEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
     }
 
     @Override
@@ -314,15 +354,17 @@ public final @Immutable class RRBList<V>
     @Override
     public int indexOf(@NotNull Object element)
     {
-        Integer result = find(ListImplSupport.createIndexOfVisitor(element));
-        return result != null ? result : -1;
+        if (endIndex == 0) {
+            return -1;
+        }
+        int result = internalIndexOf(element, root, depth);
+        return result >= 0 ? result : -1;
     }
 
     @Override
     public boolean contains(@NotNull Object target)
     {
-        Integer result = find(ListImplSupport.createIndexOfVisitor(target));
-        return result != null ;
+        return indexOf(target) >= 0;
     }
 
     @Override
@@ -342,6 +384,28 @@ public final @Immutable class RRBList<V>
         return internalFind(0, endIndex, visitor, root, depth, firstIndexInBlock);
     }
 
+    /**
+      Visit the elements in a range until the visitor returns a non-null result.
+      @param start The index of the first element to visit.
+      @param end One greater than the index of the last element to visit.
+      @param isReversed If true, the elements are visited in decreasing order of index.
+      @param visitor The visitor.
+      @return the first non-null result returned by the visitor, or null if none.
+    */
+
+    /* package private */ <R> @Nullable R findInRange(int start,
+                                                       int end,
+                                                       boolean isReversed,
+                                                       @NotNull FindVisitor<V,R> visitor)
+    {
+        if (start >= end) {
+            return null;
+        }
+        return isReversed
+          ? internalFindReverse(start, end, visitor, root, depth, 0)
+          : internalFind(start, end, visitor, root, depth, 0);
+    }
+
     @Override
     public @NotNull IList<V> getElements(int index, int count)
       throws IndexOutOfBoundsException
@@ -508,7 +572,7 @@ public final @Immutable class RRBList<V>
         int tailSize = size - (index + count);
         RRBVector<V> tail = tailSize > 0 ? getTail(tailSize) : null;
         if (index == 0) {
-            return tail != null ? new RRBList<>(tail) : RRBList.empty();
+            return tail != null ? edited(tail) : RRBList.empty();
         }
         MutableRRBVector<V> result = MutableRRBVector.create(this);
         result.retainPrefix(index);
@@ -525,13 +589,48 @@ public final @Immutable class RRBList<V>
             return RRBList.empty();
         }
         Object[] resultRoot = mapBlock(mapper, root, depth);
-        return new RRBList<>(endIndex, resultRoot, depth);
+        return new RRBList<>(endIndex, resultRoot, depth, minimumFill);
     }
 
     @Override
     public @NotNull <R> IList<R> mapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper)
     {
-        return ListOperations.mapFilter(this, mapper, builder());
+        IList<R> result = ListOperations.mapFilter(this, mapper, builder());
+        if (minimumFill != 0 && result instanceof RRBList) {
+            return ((RRBList<R>) result).withCompaction(minimumFill);
+        }
+        return result;
+    }
+
+    @Override
+    public @NotNull <R> IList<R> parallelMap(@NotNull Function<@NotNull V,@NotNull R> mapper,
+                                             @NotNull ForkJoinPool pool)
+    {
+        if (depth <= RRBVectorTasks.SEQUENTIAL_LEVEL) {
+            return map(mapper);
+        }
+        Object[] resultRoot = RRBVectorTasks.map(this, mapper, pool);
+        return new RRBList<>(endIndex, resultRoot, depth, minimumFill);
+    }
+
+    @Override
+    public @NotNull <R> IList<R> parallelMapFilter(@NotNull Function<@NotNull V,@Nullable R> mapper,
+                                                   @NotNull ForkJoinPool pool)
+    {
+        if (depth <= RRBVectorTasks.SEQUENTIAL_LEVEL) {
+            return mapFilter(mapper);
+        }
+        RRBVector<R> result = RRBVectorTasks.mapFilter(this, mapper, pool);
+        return new RRBList<>(result, minimumFill, 0);
+    }
+
+    @Override
+    public <R> @Nullable R parallelFind(@NotNull FindVisitor<V,R> visitor, @NotNull ForkJoinPool pool)
+    {
+        if (depth <= RRBVectorTasks.SEQUENTIAL_LEVEL) {
+            return find(visitor);
+        }
+        return RRBVectorTasks.find(this, visitor, pool);
     }
 
     private void appendValues(@NotNull MutableRRBVector<V> m,
@@ -560,6 +659,18 @@ public final @Immutable class RRBList<V>
                 m.appendArray(aol.toJavaArray(new Object[0]));
                 return;
             }
+
+            IList<? extends V> list = Extensions.getExtension(values, IList.class);
+            if (list != null) {
+                // List elements are known to be non-null and can be transferred in blocks
+                IIterator<? extends V> it = list.iterator();
+                Object[] batch = new Object[WIDTH];
+                int n;
+                while ((n = it.nextBatch(batch, 0, WIDTH)) > 0) {
+                    m.appendArray(n == WIDTH ? batch : Arrays.copyOf(batch, n));
+                }
+                return;
+            }
         }
 
         for (V value : values) {
@@ -583,7 +694,10 @@ public final @Immutable class RRBList<V>
     public <E> @NotNull E[] toJavaArray(@NotNull E[] template)
     {
         E[] a = (E[]) java.lang.reflect.Array.newInstance(template.getClass().getComponentType(), endIndex);
-        visit(ListImplSupport.fromIndexedVisitor((i, v) -> a[i] = (E) v));
+        if (endIndex > 0) {
+            int count = copyBlock(root, depth, a, 0);
+            assert count == endIndex;
+        }
         return a;
     }
 
@@ -604,26 +718,85 @@ public final @Immutable class RRBList<V>
     public @NotNull IList<V> sort(@NotNull Comparator<? super V> c)
     {
         V[] elements = (V[]) toJavaArray(new Object[0]);
-        Arrays.sort(elements, c);
+        SortSupport.sort(elements, c);
         return createWithArray(elements);
     }
 
+    /**
+      Return an equivalent list whose representation efficiently supports the specified usage. For prepending and
+      appending, the list is converted to the corresponding linked list. Otherwise, the list is compacted as described
+      in {@link #optimizeForIndexing}, which leaves it efficient for extending as well.
+    */
+
     @Override
     public @NotNull IList<V> optimize(@NotNull ListUsage usage)
     {
-        return this;  // TBD
+        if (usage == ListUsage.PREPEND) {
+            return PrependOrientedList.fromList(this);
+        }
+        if (usage == ListUsage.APPEND) {
+            return AppendOrientedList.fromList(this);
+        }
+        return optimizeForIndexing();
     }
 
+    /**
+      Return an equivalent list whose representation efficiently supports forward traversal. The list is compacted as
+      described in {@link #optimizeForIndexing}, so that an iterator visits full leaf nodes.
+    */
+
     @Override
     public @NotNull IList<V> optimizeForForwardTraversal()
     {
-        return this;  // TBD
+        return optimizeForIndexing();
     }
 
+    /**
+      Return an equivalent list represented by a strict radix tree of minimal depth: every leaf node except the last
+      one is full and no node has a size table, so an element is located using only the bits of its index. A list that
+      has been created by concatenation, slicing, or insertion may have partially filled nodes whose size tables must
+      be searched at each level. This method copies the elements into a new tree if the tree is not already strict.
+    */
+
     @Override
     public @NotNull IList<V> optimizeForIndexing()
     {
-        return this;  // TBD
+        if (isStrict()) {
+            return this;
+        }
+        Object[] elements = new Object[endIndex];
+        int count = copyBlock(root, depth, elements, 0);
+        assert count == endIndex;
+        return create(endIndex, ArraySupplier.create(elements));
+    }
+
+    /**
+      Indicate whether this list is represented by a strict radix tree of minimal depth.
+    */
+
+    private boolean isStrict()
+    {
+        return endIndex <= 1 || depth == depthForSize(endIndex) && isStrict(root, depth, true);
+    }
+
+    private static boolean isStrict(Object @NotNull [] block, int level, boolean isRightmost)
+    {
+        if (level == 1) {
+            return isRightmost || block.length == WIDTH;
+        }
+        if (getSizes(block) != null) {
+            return false;
+        }
+        int childCount = block.length - 1;
+        if (!isRightmost && childCount != WIDTH) {
+            return false;
+        }
+        for (int offset = 0; offset < childCount; offset++) {
+            if (!isStrict((Object[]) block[offset], level - 1, isRightmost && offset == childCount - 1)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private <R> @Nullable R internalFind(int startIndex,
@@ -761,6 +934,53 @@ public final @Immutable class RRBList<V>
         }
     }
 
+    /**
+      Search a subtree for an element.
+      @return the index of the element in the subtree if found, otherwise the negative of one more than the number of
+      elements in the subtree.
+    */
+
+    private static int internalIndexOf(@NotNull Object target, Object @NotNull [] block, int level)
+    {
+        if (level == 1) {
+            int blockLength = block.length;
+            for (int offset = 0; offset < blockLength; offset++) {
+                if (block[offset].equals(target)) {
+                    return offset;
+                }
+            }
+            return -blockLength - 1;
+        }
+        int childCount = block.length - 1;
+        int firstIndexInSubtree = 0;
+        for (int offset = 0; offset < childCount; offset++) {
+            int result = internalIndexOf(target, (Object[]) block[offset], level - 1);
+            if (result >= 0) {
+                return firstIndexInSubtree + result;
+            }
+            firstIndexInSubtree += -result - 1;
+        }
+        return -firstIndexInSubtree - 1;
+    }
+
+    /**
+      Copy the elements of a subtree into an array.
+      @return the index in the array following the last copied element.
+    */
+
+    private static int copyBlock(Object @NotNull [] block, int level, Object @NotNull [] dest, int destIndex)
+    {
+        if (level == 1) {
+            System.arraycopy(block, 0, dest, destIndex, block.length);
+            return destIndex + block.length;
+        }
+        int childCount = block.length - 1;
+        for (int offset = 0; offset < childCount; offset++) {
+            destIndex = copyBlock((Object[]) block[offset], level - 1, dest, destIndex);
+        }
+        return destIndex;
+    }
+
     protected <R> Object @NotNull [] mapBlock(@NotNull Function<@NotNull V,@NotNull R> mapper,
                                               Object @NotNull [] block,
                                               int level)
@@ -791,7 +1011,262 @@ public final @Immutable class RRBList<V>
 
     private @NotNull IList<V> toIList(@NotNull FocusableRRBVector<V> vector)
     {
-        return new RRBList<>(vector.asBasic());
+        return edited(vector.asBasic());
+    }
+
+    /**
+      Return a list containing the result of editing this list. If compaction is enabled, the returned list also
+      enables compaction, and compaction may be performed.
+    */
+
+    private @NotNull RRBList<V> edited(@NotNull RRBVector<V> vector)
+    {
+        if (minimumFill == 0) {
+            return new RRBList<>(vector);
+        }
+        RRBList<V> result = new RRBList<>(vector, minimumFill, editCount + 1);
+        return result.editCount >= Math.max(MIN_COMPACTION_INTERVAL, result.endIndex >> BITS1) ? result.compact() : result;
+    }
+
+    /**
+      Return a list with the same elements as this list that compacts its tree as it is edited. The tree is examined
+      periodically, after a number of edits proportional to the number of leaf nodes, so that the cost of examining the
+      tree is spread over the edits. When the tree is examined, each relaxed subtree whose leaf capacity is filled to
+      less than the specified fraction is rebuilt as a strict radix subtree. Strict subtrees are not examined. Lists
+      created by editing the returned list, or by mapping its elements using {@code map}, {@code mapFilter}, or their
+      parallel forms, inherit the compaction policy. Lists created by other operations, such as {@code sort} and
+      {@code reverse}, do not.
+      @param minimumFill The minimum acceptable fill ratio, greater than zero and at most one. Zero disables compaction.
+      @throws IllegalArgumentException if {@code minimumFill} is out of range.
+    */
+
+    public @NotNull RRBList<V> withCompaction(double minimumFill)
+      throws IllegalArgumentException
+    {
+        if (!(minimumFill >= 0 && minimumFill <= 1)) {
+            throw new IllegalArgumentException("Invalid minimum fill: " + minimumFill);
+        }
+        if (endIndex == 0 || (float) minimumFill == this.minimumFill) {
+            return this;
+        }
+        return new RRBList<>(this, (float) minimumFill, 0);
+    }
+
+    /**
+      The minimum number of edits between examinations of the tree.
+    */
+
+    private static final int MIN_COMPACTION_INTERVAL = 64;
+
+    private @NotNull RRBList<V> compact()
+    {
+        if (depth >= 2 && getSizes(root) != null && fill(root, depth, endIndex) < minimumFill) {
+            Object[] elements = new Object[endIndex];
+            copyBlock(root, depth, elements, 0);
+            RRBList<V> rebuilt = create(endIndex, ArraySupplier.create(elements));
+            return new RRBList<>(rebuilt, minimumFill, 0);
+        }
+        return new RRBList<>(endIndex, compactChildren(root, depth), depth, minimumFill);
+    }
+
+    /**
+      Rebuild the subtrees of a relaxed node whose fill is below the minimum.
+      @return the updated node, or {@code block} if no subtree was rebuilt.
+    */
+
+    private Object @NotNull [] compactChildren(Object @NotNull [] block, int level)
+    {
+        int[] sizes = getSizes(level, block);
+        if (sizes == null) {
+            return block;
+        }
+        Object[] result = block;
+        int childCount = block.length - 1;
+        for (int offset = 0; offset < childCount; offset++) {
+            Object[] child = (Object[]) block[offset];
+            Object[] newChild = compactSubtree(child, level - 1, getSubtreeSize(sizes, offset));
+            if (newChild != child) {
+                if (result == block) {
+                    result = block.clone();
+                }
+                result[offset] = newChild;
+            }
+        }
+        return result;
+    }
+
+    private Object @NotNull [] compactSubtree(Object @NotNull [] block, int level, int size)
+    {
+        if (getSizes(level, block) == null) {
+            return block;
+        }
+        if (fill(block, level, size) < minimumFill) {
+            Object[] elements = new Object[size];
+            copyBlock(block, level, elements, 0);
+            return buildSubtree(level, elements, 0, size);
+        }
+        return compactChildren(block, level);
+    }
+
+    /**
+      Return the fraction of the capacity of the children of a branch node that is used.
+    */
+
+    private static double fill(Object @NotNull [] block, int level, int size)
+    {
+        return size / ((double) (block.length - 1) * getMaximumTreeSize(level - 1));
+    }
+
+    /**
+      Create a strict radix subtree containing a range of elements. All leaf nodes except the last one are full.
+    */
+
+    private static Object @NotNull [] buildSubtree(int level, Object @NotNull [] elements, int start, int count)
+    {
+        if (level == 1) {
+            return Arrays.copyOfRange(elements, start, start + count);
+        }
+        int subtreeSize = getMaximumTreeSize(level - 1);
+        int childCount = (count + subtreeSize - 1) / subtreeSize;
+        Object[] node = new Object[childCount + 1];
+        for (int i = 0; i < childCount; i++) {
+            int n = Math.min(count, subtreeSize);
+            node[i] = buildSubtree(level - 1, elements, start, n);
+            start += n;
+            count -= n;
+        }
+        return node;
+    }
+
+    /**
+      Return statistics describing the tree that represents this list.
+    */
+
+    public @NotNull Stats stats()
+    {
+        Stats stats = new Stats(depth, endIndex);
+        if (endIndex > 0) {
+            stats.addNode(root, depth);
+        }
+        return stats;
+    }
+
+    /**
+      Statistics describing the tree that represents a list. The estimated memory use assumes compressed object
+      references and includes the leaf and branch arrays and the size tables, but not the elements.
+    */
+
+    public static final class Stats
+    {
+        private final int depth;
+        private final int size;
+        private int leafCount;
+        private int branchCount;
+        private int relaxedCount;
+        private long bytes;
+
+        private Stats(int depth, int size)
+        {
+            this.depth = depth;
+            this.size = size;
+            this.bytes = 24;  // the list object
+        }
+
+        private void addNode(Object @NotNull [] block, int level)
+        {
+            bytes += arrayBytes(block.length);
+            if (level == 1) {
+                leafCount++;
+                return;
+            }
+            branchCount++;
+            int[] sizes = getSizes(block);
+            if (sizes != null) {
+                relaxedCount++;
+                bytes += arrayBytes(sizes.length);
+            }
+            int childCount = block.length - 1;
+            for (int offset = 0; offset < childCount; offset++) {
+                addNode((Object[]) block[offset], level - 1);
+            }
+        }
+
+        private static long arrayBytes(int length)
+        {
+            return (16 + 4L * length + 7) & ~7L;
+        }
+
+        /**
+          Return the depth of the tree. A tree of depth one consists of a single leaf node.
+        */
+
+        public int getDepth()
+        {
+            return depth;
+        }
+
+        /**
+          Return the number of elements.
+        */
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        /**
+          Return the number of leaf nodes.
+        */
+
+        public int getLeafCount()
+        {
+            return leafCount;
+        }
+
+        /**
+          Return the number of branch nodes.
+        */
+
+        public int getBranchCount()
+        {
+            return branchCount;
+        }
+
+        /**
+          Return the number of branch nodes that have size tables. Locating an element in a relaxed node requires a
+          search of its size table.
+        */
+
+        public int getRelaxedNodeCount()
+        {
+            return relaxedCount;
+        }
+
+        /**
+          Return the fraction of the capacity of the leaf nodes that is used.
+        */
+
+        public double getAverageFill()
+        {
+            return leafCount > 0 ? size / ((double) leafCount * WIDTH) : 1;
+        }
+
+        /**
+          Return the estimated number of bytes used by the tree, not including the elements.
+        */
+
+        public long getEstimatedBytes()
+        {
+            return bytes;
+        }
+
+        @Override
+        public @NotNull String toString()
+        {
+            return "size=" + size + " depth=" + depth + " leaves=" + leafCount + " branches=" + branchCount
+              + " relaxed=" + relaxedCount + " fill=" + String.format("%.3f", getAverageFill())
+              + " bytes=" + bytes;
+        }
     }
 
     private class MyListSliceImpl
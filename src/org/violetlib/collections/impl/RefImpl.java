@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
+
+import org.violetlib.collections.IRef;
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+
+/**
+  An implementation of a lock-free reference cell. Failed compare-and-set attempts are followed by an exponentially
+  increasing delay, which reduces wasted work when many threads update the same cell.
+
+  @param <T> The type of the value.
+*/
+
+public class RefImpl<T>
+  implements IRef<T>
+{
+    public static <T> @NotNull IRef<T> create(@NotNull T value)
+    {
+        return new RefImpl<>(value);
+    }
+
+    /**
+      The number of retries that are attempted without delay.
+    */
+
+    private static final int SPIN_RETRIES = 2;
+
+    /**
+      The delay before the first delayed retry, in nanoseconds.
+    */
+
+    private static final long MINIMUM_DELAY = 128;
+
+    /**
+      The maximum delay before a retry, in nanoseconds.
+    */
+
+    private static final long MAXIMUM_DELAY = 1 << 17;
+
+    private final @NotNull AtomicReference<T> value;
+    private final @NotNull LongAdder updateCount = new LongAdder();
+    private final @NotNull LongAdder retryCount = new LongAdder();
+
+    protected RefImpl(@NotNull T value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        this.value = new AtomicReference<>(value);
+    }
+
+    @Override
+    public @NotNull T get()
+    {
+        return value.get();
+    }
+
+    @Override
+    public void set(@NotNull T value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        this.value.set(value);
+    }
+
+    @Override
+    public boolean compareAndSet(@NotNull T expected, @NotNull T value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        return this.value.compareAndSet(expected, value);
+    }
+
+    @Override
+    public @NotNull T update(@NotNull UnaryOperator<T> f)
+    {
+        for (int retries = 0; ; retries++) {
+            T current = value.get();
+            T next = apply(f, current);
+            if (attempt(current, next, retries)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public @NotNull T getAndUpdate(@NotNull UnaryOperator<T> f)
+    {
+        for (int retries = 0; ; retries++) {
+            T current = value.get();
+            T next = apply(f, current);
+            if (attempt(current, next, retries)) {
+                return current;
+            }
+        }
+    }
+
+    private static <T> @NotNull T apply(@NotNull UnaryOperator<T> f, @NotNull T current)
+    {
+        T next = f.apply(current);
+        if (next == null) {
+            throw UndefinedValueError.create("Update function must not return null");
+        }
+        return next;
+    }
+
+    /**
+      Attempt to install a new value. If the attempt fails, wait before returning.
+      @param current The value from which the new value was computed.
+      @param next The new value.
+      @param retries The number of previous failed attempts of this update.
+      @return true if the new value was installed (or is identical to the current value), false if the update must be
+      retried.
+    */
+
+    protected final boolean attempt(@NotNull T current, @NotNull T next, int retries)
+    {
+        if (next == current) {
+            return true;
+        }
+        if (value.compareAndSet(current, next)) {
+            updateCount.increment();
+            return true;
+        }
+        retryCount.increment();
+        backoff(retries);
+        return false;
+    }
+
+    private static void backoff(int retries)
+    {
+        if (retries >= SPIN_RETRIES) {
+            int shift = Math.min(retries - SPIN_RETRIES, 10);
+            long delay = Math.min(MINIMUM_DELAY << shift, MAXIMUM_DELAY);
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    @Override
+    public long getUpdateCount()
+    {
+        return updateCount.sum();
+    }
+
+    @Override
+    public long getRetryCount()
+    {
+        return retryCount.sum();
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "Ref[" + value.get() + "]";
+    }
+}
@@ -76,13 +76,15 @@ public final class SetBuilderImpl<V>
     }
 
     /**
-      Return an immutable set containing the current elements.
+      Return an immutable set containing the current elements. If the elements are small non-negative integers or
+      constants of one enum class, the set uses a compact bit set representation.
       @return the set.
     */
 
     @Override
     public @NotNull ISet<V> values()
     {
-        return SimpleSet.fromSet(elements);
+        ISet<V> bits = BitSetImpl.createOptional(elements);
+        return bits != null ? bits : SimpleSet.fromSet(elements);
     }
 }
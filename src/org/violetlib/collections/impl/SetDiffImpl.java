@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetDiff;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of a set difference.
+
+  @param <V> The type of the set elements.
+*/
+
+public final @Immutable class SetDiffImpl<V>
+  implements SetDiff<V>
+{
+    public static <V> @NotNull SetDiff<V> create(@NotNull ISet<V> added, @NotNull ISet<V> removed)
+    {
+        return new SetDiffImpl<>(added, removed);
+    }
+
+    private final @NotNull ISet<V> added;
+    private final @NotNull ISet<V> removed;
+
+    private SetDiffImpl(@NotNull ISet<V> added, @NotNull ISet<V> removed)
+    {
+        this.added = added;
+        this.removed = removed;
+    }
+
+    @Override
+    public @NotNull ISet<V> getAdded()
+    {
+        return added;
+    }
+
+    @Override
+    public @NotNull ISet<V> getRemoved()
+    {
+        return removed;
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        return "SetDiff +" + added + " -" + removed;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.ICollection;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.ISetMultimap;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of an immutable set multimap. The sets are stored in a {@link HashTrieMapImpl}. Each set is a
+  {@link HashTrieSetImpl}, so adding or removing one value shares structure with the previous set.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class SetMultimapImpl<K,V>
+  implements ISetMultimap<K,V>
+{
+    private static final @NotNull SetMultimapImpl<?,?> EMPTY = new SetMultimapImpl<>(HashTrieMapImpl.empty(), 0);
+
+    public static <K,V> @NotNull ISetMultimap<K,V> empty()
+    {
+        return (ISetMultimap) EMPTY;
+    }
+
+    public static <K,V> @NotNull ISetMultimap<K,V> create(@NotNull IMap<K,ISet<V>> map)
+    {
+        ISetMultimap<K,V> result = empty();
+        for (Binding<K,ISet<V>> b : map) {
+            result = result.putAll(b.getKey(), b.getValue());
+        }
+        return result;
+    }
+
+    private final @NotNull HashTrieMapImpl<K,ISet<V>> map;  // the values are instances of HashTrieSetImpl
+    private final int size;
+
+    private SetMultimapImpl(@NotNull HashTrieMapImpl<K,ISet<V>> map, int size)
+    {
+        this.map = map;
+        this.size = size;
+    }
+
+    private @NotNull ISetMultimap<K,V> create(@NotNull K key,
+                                              @NotNull HashTrieSetImpl<V> oldValues,
+                                              @NotNull HashTrieSetImpl<V> newValues)
+    {
+        if (newValues == oldValues) {
+            return this;
+        }
+        int newSize = size - oldValues.size() + newValues.size();
+        if (newSize == 0) {
+            return empty();
+        }
+        return new SetMultimapImpl<>(map.extending(key, newValues.isEmpty() ? null : newValues), newSize);
+    }
+
+    private @NotNull HashTrieSetImpl<V> getSet(@NotNull K key)
+    {
+        ISet<V> values = map.get(key);
+        return values != null ? (HashTrieSetImpl<V>) values : HashTrieSetImpl.empty();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public int keyCount()
+    {
+        return map.size();
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(@NotNull Object key)
+    {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean contains(@NotNull K key, @NotNull Object value)
+    {
+        ISet<V> values = map.get(key);
+        return values != null && values.contains(value);
+    }
+
+    @Override
+    public @NotNull ISet<V> get(@NotNull K key)
+    {
+        ISet<V> values = map.get(key);
+        return values != null ? values : ISet.empty();
+    }
+
+    @Override
+    public @NotNull ISet<K> keySet()
+    {
+        return map.keySet();
+    }
+
+    @Override
+    public @NotNull ISetMultimap<K,V> put(@NotNull K key, @NotNull V value)
+    {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+        HashTrieSetImpl<V> values = getSet(key);
+        return create(key, values, values.extending(value));
+    }
+
+    @Override
+    public @NotNull ISetMultimap<K,V> putAll(@NotNull K key, @NotNull ICollection<? extends V> values)
+    {
+        HashTrieSetImpl<V> existing = getSet(key);
+        return create(key, existing, existing.extendingAll(values));
+    }
+
+    @Override
+    public @NotNull ISetMultimap<K,V> remove(@NotNull K key, @NotNull Object value)
+    {
+        HashTrieSetImpl<V> values = getSet(key);
+        return create(key, values, values.removing(value));
+    }
+
+    @Override
+    public @NotNull ISetMultimap<K,V> removeAll(@NotNull K key)
+    {
+        HashTrieSetImpl<V> values = getSet(key);
+        return create(key, values, HashTrieSetImpl.empty());
+    }
+
+    @Override
+    public void visit(@NotNull IMap.Visitor<K,V> visitor)
+    {
+        map.visit((k, values) -> values.visit(v -> visitor.visit(k, v)));
+    }
+
+    @Override
+    public @NotNull IMap<K,ISet<V>> asMap()
+    {
+        return map;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return map.hashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof ISetMultimap) {
+            ISetMultimap<?,?> other = (ISetMultimap<?,?>) obj;
+            return size == other.size() && map.equals(other.asMap());
+        }
+        return false;
+    }
+}
@@ -9,7 +9,6 @@
 package org.violetlib.collections.impl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -109,8 +108,7 @@ import org.violetlib.annotations.Immutable;
         super(values.size());
         int count = values.size();
         this.elements = new Object[count];
-        int[] indexCell = new int[1];
-        values.visit(value -> elements[indexCell[0]++] = value);
+        CollectionsUtils.copyElements(values, elements, 0);
     }
 
     private SimpleList(boolean fake, @NotNull Iterable<? extends V> values)
@@ -306,12 +304,7 @@ import org.violetlib.annotations.Immutable;
 
         Object[] newElements = new Object[size+addedCount];
         System.arraycopy(elements, 0, newElements, 0, size);
-        int[] indexCell = new int[1];
-        indexCell[0] = size;
-        values.visit(v -> {
-            int index = indexCell[0]++;
-            newElements[index] = v;
-        });
+        CollectionsUtils.copyElements(values, newElements, size);
         return createWithElements(newElements);
     }
 
@@ -473,7 +466,7 @@ import org.violetlib.annotations.Immutable;
         }
         V[] newElements = (V[]) new Object[size];
         System.arraycopy(elements, 0, newElements, 0, size);
-        Arrays.sort(newElements, c);
+        SortSupport.sort(newElements, c);
         return createWithElements(newElements);
     }
 
@@ -609,6 +602,15 @@ import org.violetlib.annotations.Immutable;
             nextIndex = i + 1;
             return (V) elements[i];
         }
+
+        @Override
+        public int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+        {
+            int count = Math.min(max, elements.length - nextIndex);
+            System.arraycopy(elements, nextIndex, dest, offset, count);
+            nextIndex += count;
+            return count;
+        }
     }
 
     private static class MyReverseIterator<V>
@@ -640,5 +642,20 @@ import org.violetlib.annotations.Immutable;
             nextIndex = i - 1;
             return (V) elements[i];
         }
+
+        @Override
+        public int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+        {
+            int count = Math.min(max, nextIndex + 1);
+            if (offset < 0 || count < 0 || offset > dest.length - count) {
+                throw new IndexOutOfBoundsException();
+            }
+            int i = nextIndex;
+            for (int j = 0; j < count; j++) {
+                dest[offset + j] = elements[i--];
+            }
+            nextIndex = i;
+            return count;
+        }
     }
 }
@@ -35,6 +35,7 @@ public final @Immutable class SimpleSet<V>
     private static final SimpleSet<Object> EMPTY = new SimpleSet<>();
 
     private final @NotNull HashSet<V> elements;
+    private int hashCode;  // cached, zero if not yet computed
 
     private SimpleSet()
     {
@@ -264,7 +265,12 @@ public final @Immutable class SimpleSet<V>
     @Override
     public int hashCode()
     {
-        return SetEquality.computeHashCode(this);
+        int h = hashCode;
+        if (h == 0) {
+            h = SetEquality.computeHashCode(this);
+            hashCode = h;
+        }
+        return h;
     }
 
     @Override
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+/**
+  Support for sorting the elements of lists.
+  <p>
+  When the elements are sorted in their natural order and all elements are strings, integers, longs, or doubles,
+  a specialized sort is used. Integers, longs, and doubles are sorted by a least significant digit radix sort on keys
+  extracted from the elements. Strings are sorted using a comparator that calls {@link String#compareTo} directly. All
+  of the sorts are stable, so the result is the same as the result of {@link Arrays#sort(Object[], Comparator)}.
+*/
+
+public final @NoInstances class SortSupport
+{
+    private SortSupport()
+    {
+        throw new AssertionError("SortSupport may not be instantiated");
+    }
+
+    /**
+      The minimum number of elements for which a radix sort is used.
+    */
+
+    private static final int RADIX_THRESHOLD = 256;
+
+    private static final @NotNull Comparator<Object> STRING_ORDER = (a, b) -> ((String) a).compareTo((String) b);
+    private static final @NotNull Comparator<Object> INTEGER_ORDER
+      = (a, b) -> Integer.compare((Integer) a, (Integer) b);
+    private static final @NotNull Comparator<Object> LONG_ORDER = (a, b) -> Long.compare((Long) a, (Long) b);
+    private static final @NotNull Comparator<Object> DOUBLE_ORDER = (a, b) -> Double.compare((Double) a, (Double) b);
+
+    /**
+      Sort an array of elements.
+      @param a The elements.
+      @param c The comparator that defines the order.
+    */
+
+    public static <V> void sort(@NotNull V @NotNull [] a, @NotNull Comparator<? super V> c)
+    {
+        if (a.length < 2) {
+            return;
+        }
+        if (isNaturalOrder(c)) {
+            Class<?> type = getElementType(a);
+            if (type == String.class) {
+                if (a.length < RADIX_THRESHOLD) {
+                    Arrays.sort(a, STRING_ORDER);
+                } else {
+                    sortStrings(a);
+                }
+                return;
+            }
+            if (type == Integer.class || type == Long.class || type == Double.class) {
+                if (a.length < RADIX_THRESHOLD) {
+                    Arrays.sort(a, type == Integer.class ? INTEGER_ORDER
+                      : type == Long.class ? LONG_ORDER : DOUBLE_ORDER);
+                } else {
+                    radixSort(a, getKeys(a, type));
+                }
+                return;
+            }
+        }
+        Arrays.sort(a, c);
+    }
+
+    /**
+      Sort a list of elements.
+      @param list The elements.
+      @param c The comparator that defines the order.
+    */
+
+    public static <V> void sort(@NotNull List<V> list, @NotNull Comparator<? super V> c)
+    {
+        if (!isNaturalOrder(c)) {
+            list.sort(c);
+            return;
+        }
+        Object[] a = list.toArray();
+        sort(a, (Comparator) c);
+        ListIterator<V> it = list.listIterator();
+        for (Object e : a) {
+            it.next();
+            it.set((V) e);
+        }
+    }
+
+    private static boolean isNaturalOrder(@NotNull Comparator<?> c)
+    {
+        return c == UniversalComparator.get() || c == Comparator.naturalOrder();
+    }
+
+    /**
+      Return the class of the elements, if the elements are strings, integers, longs, or doubles. Otherwise, return
+      null.
+    */
+
+    private static @Nullable Class<?> getElementType(@NotNull Object @NotNull [] a)
+    {
+        Class<?> type = a[0].getClass();
+        if (type != String.class && type != Integer.class && type != Long.class && type != Double.class) {
+            return null;
+        }
+        for (Object e : a) {
+            if (e.getClass() != type) {
+                return null;
+            }
+        }
+        return type;
+    }
+
+    /**
+      Return keys for the elements whose unsigned order is the natural order of the elements.
+    */
+
+    private static long @NotNull [] getKeys(@NotNull Object @NotNull [] a, @NotNull Class<?> type)
+    {
+        int count = a.length;
+        long[] keys = new long[count];
+        if (type == Integer.class) {
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((Integer) a[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            }
+        } else if (type == Long.class) {
+            for (int i = 0; i < count; i++) {
+                keys[i] = (Long) a[i] ^ Long.MIN_VALUE;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                // As in Double.compare, all NaNs are equal and -0.0 precedes 0.0
+                long bits = Double.doubleToLongBits((Double) a[i]);
+                keys[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+            }
+        }
+        return keys;
+    }
+
+    /**
+      Sort strings. The strings are first sorted by a key containing the four characters that follow the prefix shared
+      by all of the strings. Each run of strings with the same key is then sorted by comparing the strings.
+    */
+
+    private static void sortStrings(@NotNull Object @NotNull [] a)
+    {
+        int count = a.length;
+        String first = (String) a[0];
+        int prefixLength = first.length();
+        for (int i = 1; i < count && prefixLength > 0; i++) {
+            String s = (String) a[i];
+            int limit = Math.min(prefixLength, s.length());
+            int j = 0;
+            while (j < limit && s.charAt(j) == first.charAt(j)) {
+                j++;
+            }
+            prefixLength = j;
+        }
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            String s = (String) a[i];
+            int length = Math.min(s.length() - prefixLength, 4);
+            long key = 0;
+            for (int j = 0; j < length; j++) {
+                key |= (long) s.charAt(prefixLength + j) << (48 - j * 16);
+            }
+            keys[i] = key;
+        }
+        radixSort(a, keys);
+
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            while (end < count && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start > 1) {
+                Arrays.sort(a, start, end, STRING_ORDER);
+            }
+            start = end;
+        }
+    }
+
+    /**
+      Sort elements by their keys, using a least significant digit radix sort with 8-bit digits. A digit that is the
+      same in all keys is skipped. The keys are sorted along with the elements.
+    */
+
+    private static void radixSort(@NotNull Object @NotNull [] a, long @NotNull [] keys)
+    {
+        int count = a.length;
+        int[][] counts = new int[8][256];
+        for (long key : keys) {
+            for (int digit = 0; digit < 8; digit++) {
+                counts[digit][(int) (key >>> (digit * 8)) & 0xFF]++;
+            }
+        }
+
+        Object[] source = a;
+        long[] sourceKeys = keys;
+        Object[] target = null;
+        long[] targetKeys = null;
+        for (int digit = 0; digit < 8; digit++) {
+            int[] digitCounts = counts[digit];
+            int shift = digit * 8;
+            if (digitCounts[(int) (sourceKeys[0] >>> shift) & 0xFF] == count) {
+                continue;
+            }
+            int position = 0;
+            for (int i = 0; i < 256; i++) {
+                int n = digitCounts[i];
+                digitCounts[i] = position;
+                position += n;
+            }
+            if (target == null) {
+                target = new Object[count];
+                targetKeys = new long[count];
+            }
+            for (int i = 0; i < count; i++) {
+                long key = sourceKeys[i];
+                int p = digitCounts[(int) (key >>> shift) & 0xFF]++;
+                target[p] = source[i];
+                targetKeys[p] = key;
+            }
+            Object[] t = source;
+            source = target;
+            target = t;
+            long[] tk = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = tk;
+        }
+        if (source != a) {
+            System.arraycopy(source, 0, a, 0, count);
+            System.arraycopy(sourceKeys, 0, keys, 0, count);
+        }
+    }
+}
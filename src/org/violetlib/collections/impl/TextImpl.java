@@ -0,0 +1,654 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.violetlib.collections.IText;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of a text as a rope: a height-balanced binary tree whose leaves are arrays of characters. Each
+  node records its length, its number of line separators, and its height.
+  <p>
+  Concatenation joins two trees by descending the taller tree to a subtree of similar height and rebalancing on the
+  way back up, which takes time proportional to the difference in heights. Adjacent small leaves are merged when
+  trees are joined. Splitting at an offset concatenates the subtrees to the left and right of the path to the offset.
+  Both operations take logarithmic time, and all editing operations are defined in terms of them.
+*/
+
+public final @Immutable class TextImpl
+  implements IText
+{
+    private static final int LEAF_SIZE = 512;
+    private static final char SEPARATOR = '\n';
+
+    private static final @NotNull TextImpl EMPTY = new TextImpl(new Leaf(new char[0]));
+
+    public static @NotNull IText empty()
+    {
+        return EMPTY;
+    }
+
+    public static @NotNull IText create(@NotNull CharSequence s)
+    {
+        if (s instanceof IText) {
+            return (IText) s;
+        }
+        return create(build(s));
+    }
+
+    private static @NotNull TextImpl create(@NotNull Node root)
+    {
+        return root.length == 0 ? EMPTY : new TextImpl(root);
+    }
+
+    private final @NotNull Node root;
+    private int hashCode;  // cached, zero if not yet computed
+
+    private TextImpl(@NotNull Node root)
+    {
+        this.root = root;
+    }
+
+    @Override
+    public int length()
+    {
+        return root.length;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return root.length == 0;
+    }
+
+    @Override
+    public char charAt(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index >= root.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        Node n = root;
+        while (n instanceof Branch) {
+            Branch b = (Branch) n;
+            if (index < b.left.length) {
+                n = b.left;
+            } else {
+                index -= b.left.length;
+                n = b.right;
+            }
+        }
+        return ((Leaf) n).chars[index];
+    }
+
+    @Override
+    public @NotNull IText subSequence(int start, int end)
+      throws IndexOutOfBoundsException
+    {
+        if (start < 0 || end > root.length || start > end) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (start == 0 && end == root.length) {
+            return this;
+        }
+        Node n = split(root, end)[0];
+        return create(split(n, start)[1]);
+    }
+
+    @Override
+    public @NotNull IText appending(@NotNull CharSequence s)
+    {
+        return create(concat(root, toNode(s)));
+    }
+
+    @Override
+    public @NotNull IText prepending(@NotNull CharSequence s)
+    {
+        return create(concat(toNode(s), root));
+    }
+
+    @Override
+    public @NotNull IText inserting(int index, @NotNull CharSequence s)
+      throws IndexOutOfBoundsException
+    {
+        return replacing(index, 0, s);
+    }
+
+    @Override
+    public @NotNull IText removing(int index, int count)
+      throws IndexOutOfBoundsException
+    {
+        return replacing(index, count, "");
+    }
+
+    @Override
+    public @NotNull IText replacing(int index, int count, @NotNull CharSequence s)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || count < 0 || count > root.length - index) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (count == 0 && s.length() == 0) {
+            return this;
+        }
+        Node[] parts = split(root, index);
+        Node suffix = split(parts[1], count)[1];
+        return create(concat(concat(parts[0], toNode(s)), suffix));
+    }
+
+    @Override
+    public int getLineCount()
+    {
+        return root.separators + 1;
+    }
+
+    @Override
+    public int getLineStart(int line)
+      throws IndexOutOfBoundsException
+    {
+        if (line < 0 || line > root.separators) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (line == 0) {
+            return 0;
+        }
+
+        // Find the separator that ends the preceding line
+        int remaining = line;
+        int offset = 0;
+        Node n = root;
+        while (n instanceof Branch) {
+            Branch b = (Branch) n;
+            if (remaining <= b.left.separators) {
+                n = b.left;
+            } else {
+                remaining -= b.left.separators;
+                offset += b.left.length;
+                n = b.right;
+            }
+        }
+        char[] chars = ((Leaf) n).chars;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == SEPARATOR && --remaining == 0) {
+                return offset + i + 1;
+            }
+        }
+        throw new AssertionError("Inconsistent separator count");
+    }
+
+    @Override
+    public int getLineIndex(int index)
+      throws IndexOutOfBoundsException
+    {
+        if (index < 0 || index > root.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        // Count the separators that precede the index
+        int line = 0;
+        Node n = root;
+        while (n instanceof Branch) {
+            Branch b = (Branch) n;
+            if (index < b.left.length) {
+                n = b.left;
+            } else {
+                index -= b.left.length;
+                line += b.left.separators;
+                n = b.right;
+            }
+        }
+        char[] chars = ((Leaf) n).chars;
+        for (int i = 0; i < index; i++) {
+            if (chars[i] == SEPARATOR) {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    @Override
+    public @NotNull IText getLine(int line)
+      throws IndexOutOfBoundsException
+    {
+        int start = getLineStart(line);
+        int end = line < root.separators ? getLineStart(line + 1) - 1 : root.length;
+        return subSequence(start, end);
+    }
+
+    @Override
+    public @NotNull CharSequence asCharSequence()
+    {
+        return new CharView();
+    }
+
+    @Override
+    public @NotNull Reader asReader()
+    {
+        return new TextReader();
+    }
+
+    @Override
+    public @NotNull String toString()
+    {
+        StringBuilder sb = new StringBuilder(root.length);
+        LeafIterator it = new LeafIterator(root);
+        Leaf leaf;
+        while ((leaf = it.next()) != null) {
+            sb.append(leaf.chars);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int h = hashCode;
+        if (h == 0) {
+            LeafIterator it = new LeafIterator(root);
+            Leaf leaf;
+            while ((leaf = it.next()) != null) {
+                for (char c : leaf.chars) {
+                    h = 31 * h + c;
+                }
+            }
+            hashCode = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == this) {
+            return true;
+        }
+
+        if (!(obj instanceof IText)) {
+            return false;
+        }
+
+        IText other = (IText) obj;
+        if (other.length() != root.length) {
+            return false;
+        }
+
+        CharSequence otherChars = other.asCharSequence();
+        int index = 0;
+        LeafIterator it = new LeafIterator(root);
+        Leaf leaf;
+        while ((leaf = it.next()) != null) {
+            for (char c : leaf.chars) {
+                if (c != otherChars.charAt(index++)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static @NotNull Node toNode(@NotNull CharSequence s)
+    {
+        return s instanceof TextImpl ? ((TextImpl) s).root : build(s);
+    }
+
+    /**
+      Create a balanced tree of full leaves containing the specified characters.
+    */
+
+    private static @NotNull Node build(@NotNull CharSequence s)
+    {
+        int length = s.length();
+        if (length <= LEAF_SIZE) {
+            return createLeaf(s, 0, length);
+        }
+        int leafCount = (length + LEAF_SIZE - 1) / LEAF_SIZE;
+        Leaf[] leaves = new Leaf[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            int start = i * LEAF_SIZE;
+            leaves[i] = createLeaf(s, start, Math.min(length, start + LEAF_SIZE));
+        }
+        return build(leaves, 0, leafCount);
+    }
+
+    private static @NotNull Node build(@NotNull Leaf @NotNull [] leaves, int start, int end)
+    {
+        if (end - start == 1) {
+            return leaves[start];
+        }
+        int middle = (start + end) >>> 1;
+        return new Branch(build(leaves, start, middle), build(leaves, middle, end));
+    }
+
+    private static @NotNull Leaf createLeaf(@NotNull CharSequence s, int start, int end)
+    {
+        char[] chars = new char[end - start];
+        if (s instanceof String) {
+            ((String) s).getChars(start, end, chars, 0);
+        } else {
+            for (int i = start; i < end; i++) {
+                chars[i - start] = s.charAt(i);
+            }
+        }
+        return new Leaf(chars);
+    }
+
+    /**
+      Split a tree at an offset.
+      @return the trees containing the characters before and after the offset.
+    */
+
+    private static @NotNull Node @NotNull [] split(@NotNull Node n, int index)
+    {
+        if (index == 0) {
+            return new Node[] { EMPTY.root, n };
+        }
+        if (index == n.length) {
+            return new Node[] { n, EMPTY.root };
+        }
+        if (n instanceof Leaf) {
+            char[] chars = ((Leaf) n).chars;
+            char[] left = new char[index];
+            char[] right = new char[chars.length - index];
+            System.arraycopy(chars, 0, left, 0, index);
+            System.arraycopy(chars, index, right, 0, right.length);
+            return new Node[] { new Leaf(left), new Leaf(right) };
+        }
+        Branch b = (Branch) n;
+        if (index <= b.left.length) {
+            Node[] parts = split(b.left, index);
+            parts[1] = concat(parts[1], b.right);
+            return parts;
+        } else {
+            Node[] parts = split(b.right, index - b.left.length);
+            parts[0] = concat(b.left, parts[0]);
+            return parts;
+        }
+    }
+
+    /**
+      Concatenate two trees.
+    */
+
+    private static @NotNull Node concat(@NotNull Node left, @NotNull Node right)
+    {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+        if (left.length > Integer.MAX_VALUE - right.length) {
+            throw new IllegalArgumentException("Text is too long");
+        }
+        if (left.height > right.height + 1) {
+            Branch b = (Branch) left;
+            return balance(b.left, concat(b.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch b = (Branch) right;
+            return balance(concat(left, b.left), b.right);
+        }
+        return join(left, right);
+    }
+
+    /**
+      Join two trees of similar height, merging adjacent leaves if they are small enough.
+    */
+
+    private static @NotNull Node join(@NotNull Node left, @NotNull Node right)
+    {
+        if (left instanceof Leaf && right instanceof Leaf) {
+            if (left.length + right.length <= LEAF_SIZE) {
+                return merge((Leaf) left, (Leaf) right);
+            }
+        } else if (right instanceof Leaf) {
+            Branch b = (Branch) left;
+            if (b.right instanceof Leaf && b.right.length + right.length <= LEAF_SIZE) {
+                return new Branch(b.left, merge((Leaf) b.right, (Leaf) right));
+            }
+        } else if (left instanceof Leaf) {
+            Branch b = (Branch) right;
+            if (b.left instanceof Leaf && left.length + b.left.length <= LEAF_SIZE) {
+                return new Branch(merge((Leaf) left, (Leaf) b.left), b.right);
+            }
+        }
+        return new Branch(left, right);
+    }
+
+    private static @NotNull Leaf merge(@NotNull Leaf left, @NotNull Leaf right)
+    {
+        char[] chars = new char[left.length + right.length];
+        System.arraycopy(left.chars, 0, chars, 0, left.length);
+        System.arraycopy(right.chars, 0, chars, left.length, right.length);
+        return new Leaf(chars);
+    }
+
+    /**
+      Create a branch from two trees whose heights differ by at most two, rotating if necessary.
+    */
+
+    private static @NotNull Node balance(@NotNull Node left, @NotNull Node right)
+    {
+        if (left.height > right.height + 1) {
+            Branch b = (Branch) left;
+            if (b.left.height >= b.right.height) {
+                return new Branch(b.left, new Branch(b.right, right));
+            }
+            Branch c = (Branch) b.right;
+            return new Branch(new Branch(b.left, c.left), new Branch(c.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch b = (Branch) right;
+            if (b.right.height >= b.left.height) {
+                return new Branch(new Branch(left, b.left), b.right);
+            }
+            Branch c = (Branch) b.left;
+            return new Branch(new Branch(left, c.left), new Branch(c.right, b.right));
+        }
+        return new Branch(left, right);
+    }
+
+    private static abstract class Node
+    {
+        public final int length;
+        public final int separators;
+        public final int height;
+
+        protected Node(int length, int separators, int height)
+        {
+            this.length = length;
+            this.separators = separators;
+            this.height = height;
+        }
+    }
+
+    private static final class Leaf
+      extends Node
+    {
+        public final char @NotNull [] chars;
+
+        public Leaf(char @NotNull [] chars)
+        {
+            super(chars.length, countSeparators(chars), 0);
+
+            this.chars = chars;
+        }
+
+        private static int countSeparators(char @NotNull [] chars)
+        {
+            int count = 0;
+            for (char c : chars) {
+                if (c == SEPARATOR) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static final class Branch
+      extends Node
+    {
+        public final @NotNull Node left;
+        public final @NotNull Node right;
+
+        public Branch(@NotNull Node left, @NotNull Node right)
+        {
+            super(left.length + right.length,
+              left.separators + right.separators,
+              Math.max(left.height, right.height) + 1);
+
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+      Traverses the leaves of a tree in order.
+    */
+
+    private static final class LeafIterator
+    {
+        private final @NotNull Deque<Node> stack = new ArrayDeque<>();
+
+        public LeafIterator(@NotNull Node root)
+        {
+            if (root.length > 0) {
+                stack.push(root);
+            }
+        }
+
+        public @Nullable Leaf next()
+        {
+            while (!stack.isEmpty()) {
+                Node n = stack.pop();
+                if (n instanceof Leaf) {
+                    return (Leaf) n;
+                }
+                Branch b = (Branch) n;
+                stack.push(b.right);
+                stack.push(b.left);
+            }
+            return null;
+        }
+    }
+
+    private final class CharView
+      implements CharSequence
+    {
+        private char @NotNull [] chars = new char[0];  // the characters of the most recently accessed leaf
+        private int start;  // the offset of the first character of the most recently accessed leaf
+
+        @Override
+        public int length()
+        {
+            return root.length;
+        }
+
+        @Override
+        public char charAt(int index)
+          throws IndexOutOfBoundsException
+        {
+            int offset = index - start;
+            if (offset >= 0 && offset < chars.length) {
+                return chars[offset];
+            }
+            if (index < 0 || index >= root.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            int leafStart = 0;
+            Node n = root;
+            while (n instanceof Branch) {
+                Branch b = (Branch) n;
+                if (index - leafStart < b.left.length) {
+                    n = b.left;
+                } else {
+                    leafStart += b.left.length;
+                    n = b.right;
+                }
+            }
+            chars = ((Leaf) n).chars;
+            start = leafStart;
+            return chars[index - leafStart];
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int start, int end)
+          throws IndexOutOfBoundsException
+        {
+            return TextImpl.this.subSequence(start, end);
+        }
+
+        @Override
+        public @NotNull String toString()
+        {
+            return TextImpl.this.toString();
+        }
+    }
+
+    private final class TextReader
+      extends Reader
+    {
+        private final @NotNull LeafIterator leaves = new LeafIterator(root);
+        private char @Nullable [] chars = new char[0];  // the current leaf, or null at the end of the text
+        private int position;  // the offset of the next character in the current leaf
+
+        private boolean advance()
+        {
+            while (chars != null && position == chars.length) {
+                Leaf leaf = leaves.next();
+                chars = leaf != null ? leaf.chars : null;
+                position = 0;
+            }
+            return chars != null;
+        }
+
+        @Override
+        public int read()
+        {
+            return advance() ? chars[position++] : -1;
+        }
+
+        @Override
+        public int read(char @NotNull [] dest, int offset, int count)
+        {
+            if (offset < 0 || count < 0 || count > dest.length - offset) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (count == 0) {
+                return 0;
+            }
+            int total = 0;
+            while (total < count && advance()) {
+                int n = Math.min(count - total, chars.length - position);
+                System.arraycopy(chars, position, dest, offset + total, n);
+                position += n;
+                total += n;
+            }
+            return total > 0 ? total : -1;
+        }
+
+        @Override
+        public boolean ready()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
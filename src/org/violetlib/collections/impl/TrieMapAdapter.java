@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl;
+
+import org.violetlib.collections.Binding;
+import org.violetlib.collections.IIterator;
+import org.violetlib.collections.IMap;
+import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.util.Extensions;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.Immutable;
+
+/**
+  An implementation of {@link IMap} whose bindings are stored in a Patricia trie with primitive keys. The keys are
+  either Integer or Long values; they are boxed only when presented to clients. The bindings are visited in increasing
+  key order.
+
+  @param <K> The type of the keys.
+  @param <V> The type of the values.
+*/
+
+public final @Immutable class TrieMapAdapter<K,V>
+  implements IMap<K,V>
+{
+    /* package private */ static <V> @NotNull IMap<Long,V> createLongKeyed(@NotNull LongTrie.Node root)
+    {
+        return new TrieMapAdapter<>(root, false);
+    }
+
+    /* package private */ static <V> @NotNull IMap<Integer,V> createIntKeyed(@NotNull LongTrie.Node root)
+    {
+        return new TrieMapAdapter<>(root, true);
+    }
+
+    private final @Nullable LongTrie.Node root;
+    private final boolean isIntKeyed;
+
+    private TrieMapAdapter(@Nullable LongTrie.Node root, boolean isIntKeyed)
+    {
+        this.root = root;
+        this.isIntKeyed = isIntKeyed;
+    }
+
+    private boolean isKey(@NotNull Object key)
+    {
+        return isIntKeyed ? key instanceof Integer : key instanceof Long;
+    }
+
+    private @NotNull K toKey(long key)
+    {
+        return isIntKeyed ? (K) Integer.valueOf((int) key) : (K) Long.valueOf(key);
+    }
+
+    private static long fromKey(@NotNull Object key)
+    {
+        return ((Number) key).longValue();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return root == null;
+    }
+
+    @Override
+    public int size()
+    {
+        return LongTrie.size(root);
+    }
+
+    @Override
+    public @Nullable V get(@NotNull K key)
+    {
+        return isKey(key) ? (V) LongTrie.get(root, fromKey(key)) : null;
+    }
+
+    @Override
+    public boolean containsKey(@NotNull Object key)
+    {
+        return isKey(key) && LongTrie.get(root, fromKey(key)) != null;
+    }
+
+    @Override
+    public void visit(@NotNull Visitor<K,V> visitor)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            visitor.visit(toKey(leaf.getKey()), (V) leaf.value);
+        }
+    }
+
+    @Override
+    public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            LongTrie.Leaf leaf = it.next();
+            R result = visitor.visit(toKey(leaf.getKey()), (V) leaf.value);
+            if (result != null) {
+                return result;
+            }
+        }
+        return defaultResult;
+    }
+
+    @Override
+    public @NotNull ISet<K> keySet()
+    {
+        SetBuilder<K> b = ISet.builder();
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            b.add(toKey(it.next().getKey()));
+        }
+        return b.values();
+    }
+
+    @Override
+    public @NotNull ISet<V> values()
+    {
+        SetBuilder<V> b = ISet.builder();
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            b.add((V) it.next().value);
+        }
+        return b.values();
+    }
+
+    @Override
+    public @NotNull IMap<K,V> extending(@NotNull K key, @Nullable V value)
+    {
+        if (!isKey(key)) {
+            if (value == null) {
+                return this;
+            }
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+        LongTrie.Node newRoot = LongTrie.with(root, fromKey(key), value);
+        return newRoot == root ? this : create(newRoot);
+    }
+
+    @Override
+    public @NotNull IMap<K,V> extending(@NotNull IMap<K,V> bindings)
+    {
+        if (bindings instanceof TrieMapAdapter) {
+            TrieMapAdapter<?,?> other = (TrieMapAdapter<?,?>) bindings;
+            if (other.isIntKeyed == isIntKeyed) {
+                LongTrie.Node newRoot = LongTrie.merge(root, other.root, null);
+                return newRoot == root ? this : create(newRoot);
+            }
+        }
+        IMap<K,V> result = this;
+        for (Binding<K,V> b : bindings) {
+            result = result.extending(b.getKey(), b.getValue());
+        }
+        return result;
+    }
+
+    private @NotNull IMap<K,V> create(@Nullable LongTrie.Node root)
+    {
+        return root != null ? new TrieMapAdapter<>(root, isIntKeyed) : IMap.empty();
+    }
+
+    @Override
+    public @NotNull IIterator<Binding<K,V>> iterator()
+    {
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        return new IIterator<Binding<K,V>>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return it.hasNext();
+            }
+
+            @Override
+            public @NotNull Binding<K,V> next()
+            {
+                LongTrie.Leaf leaf = it.next();
+                return Binding.create(toKey(leaf.getKey()), (V) leaf.value);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return MapEquality.computeHashCode(this);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj)
+    {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof TrieMapAdapter) {
+            TrieMapAdapter<?,?> other = (TrieMapAdapter<?,?>) obj;
+            if (other.isIntKeyed == isIntKeyed) {
+                return LongTrie.isEqual(root, other.root);
+            }
+        }
+
+        IMap<?,?> otherMap = Extensions.getExtension(obj, IMap.class);
+        if (otherMap == null) {
+            return false;
+        }
+
+        return MapEquality.isEqual(this, otherMap);
+    }
+}
@@ -15,6 +15,23 @@ import org.violetlib.annotations.Immutable;
 
 /**
   A comparator that uses the natural sort order defined by list elements.
+  <p>
+  A comparable value is compared to another value using {@link Comparable#compareTo}, so values of different classes
+  that are comparable through a shared interface or superclass are ordered by that interface or superclass. Other
+  values are grouped by their comparison class, which is the declaring class of an enum constant, the most general
+  superclass that implements {@link Comparable} for other comparable values, and the class of the value for values
+  that are not comparable. Values of different comparison classes are ordered by the names of those classes. This
+  order is used when neither value is comparable, when only the second value is comparable, and when the
+  {@code compareTo} method of the first value rejects the second value by throwing {@link ClassCastException}. Values
+  of the same comparison class that are not comparable are considered equal, so a stable sort leaves them in their
+  original order.
+  <p>
+  The result is a total order when the {@code compareTo} methods of the values are consistent with each other. It is
+  not transitive in some edge cases: for example, values of distinct classes that have the same name (loaded by
+  different class loaders) and are not comparable with each other are considered equal, even if they are ordered
+  differently with respect to a third value.
+  <p>
+  Strings, integers, longs, and doubles are compared directly, without a call to {@code compareTo}.
 */
 
 public final @Immutable class UniversalComparator
@@ -27,6 +44,15 @@ public final @Immutable class UniversalComparator
 
     private static final @NotNull UniversalComparator INSTANCE = new UniversalComparator();
 
+    private static final @NotNull ClassValue<Class<?>> COMPARISON_CLASSES = new ClassValue<Class<?>>()
+    {
+        @Override
+        protected @NotNull Class<?> computeValue(@NotNull Class<?> c)
+        {
+            return getComparisonClass(c);
+        }
+    };
+
     private UniversalComparator()
     {
     }
@@ -34,11 +60,59 @@ public final @Immutable class UniversalComparator
     @Override
     public int compare(@NotNull Object a, @NotNull Object b)
     {
+        if (a == b) {
+            return 0;
+        }
+        Class<?> ac = a.getClass();
+        Class<?> bc = b.getClass();
+        if (ac == bc) {
+            if (ac == String.class) {
+                return ((String) a).compareTo((String) b);
+            }
+            if (ac == Integer.class) {
+                return Integer.compare((Integer) a, (Integer) b);
+            }
+            if (ac == Long.class) {
+                return Long.compare((Long) a, (Long) b);
+            }
+            if (ac == Double.class) {
+                return Double.compare((Double) a, (Double) b);
+            }
+            if (a instanceof Comparable) {
+                return ((Comparable<Object>) a).compareTo(b);
+            }
+            return 0;
+        }
+
         if (a instanceof Comparable) {
-            Comparable<Object> c = (Comparable) a;
-            return c.compareTo(b);
-        } else {
-            return -1;
+            try {
+                return ((Comparable<Object>) a).compareTo(b);
+            } catch (ClassCastException ex) {
+                // the values are not comparable with each other
+            }
+        }
+
+        Class<?> acc = COMPARISON_CLASSES.get(ac);
+        Class<?> bcc = COMPARISON_CLASSES.get(bc);
+        return acc == bcc ? 0 : acc.getName().compareTo(bcc.getName());
+    }
+
+    private static @NotNull Class<?> getComparisonClass(@NotNull Class<?> c)
+    {
+        if (Enum.class.isAssignableFrom(c)) {
+            while (c.getSuperclass() != Enum.class) {
+                c = c.getSuperclass();
+            }
+            return c;
+        }
+        if (!Comparable.class.isAssignableFrom(c)) {
+            return c;
+        }
+        Class<?> superclass = c.getSuperclass();
+        while (superclass != null && Comparable.class.isAssignableFrom(superclass)) {
+            c = superclass;
+            superclass = c.getSuperclass();
         }
+        return c;
     }
 }
@@ -8,22 +8,37 @@
 
 package org.violetlib.collections.impl;
 
+import java.lang.ref.WeakReference;
 import java.util.Map;
-import java.util.WeakHashMap;
 
 import org.violetlib.collections.Binding;
 import org.violetlib.collections.IIterator;
 import org.violetlib.collections.IMap;
 import org.violetlib.collections.ISet;
+import org.violetlib.collections.SetBuilder;
+import org.violetlib.collections.util.IteratorHelper;
 import org.violetlib.util.Extensions;
-import org.violetlib.util.VObjects;
 
 import org.jetbrains.annotations.*;
 import org.violetlib.annotations.Immutable;
 
 /**
-  A simple implementation of an immutable map using weak references for the keys. Null keys and values are not
-  permitted.
+  An implementation of an immutable map using weak references for the keys. Null keys and values are not
+  permitted. Keys are compared using {@code equals}.
+  <p>
+  The bindings are stored in a persistent Patricia trie indexed by the hash codes of the keys. The trie is never
+  modified, so the map may be read by multiple threads without locking, and extending the map creates only the nodes on
+  the path to one key.
+  <p>
+  When a key is collected, its binding disappears from the map, although the entry, and therefore the value, remains
+  in the trie until it is purged. Each map purges its own entries, so that no map depends on a purge performed by
+  another version of the map that may be discarded. When a map is extended, the cleared entries in the updated bucket
+  are dropped, and a few more buckets are swept, continuing from the position where the previous extension stopped.
+  As a result, a sequence of extensions starting from a map of N buckets sweeps every bucket within about N / 2
+  extensions.
+  <p>
+  Because entries may be cleared at any time, {@link #size} counts the live entries, which takes time proportional to
+  the number of entries.
 */
 
 public @Immutable class WeakMap<K,V>
@@ -36,68 +51,133 @@ public @Immutable class WeakMap<K,V>
 
     public static <K,V> @NotNull WeakMap<K,V> from(@NotNull Map<? extends K,? extends V> map)
     {
-        return new WeakMap<>(map);
+        WeakMap<K,V> result = empty();
+        for (Map.Entry<? extends K,? extends V> e : map.entrySet()) {
+            K key = e.getKey();
+            V value = e.getValue();
+            if (key != null && value != null) {
+                result = result.extending(key, value);
+            }
+        }
+        return result;
     }
 
-    private static final @NotNull WeakMap<Object,Object> EMPTY = new WeakMap<>();
+    private static final @NotNull WeakMap<Object,Object> EMPTY = new WeakMap<>(null, 0);
+
+    /**
+      The number of buckets swept for cleared entries each time the map is extended.
+    */
 
-    private final @NotNull Map<K,V> data;
+    private static final int SWEEP_COUNT = 2;
 
-    private WeakMap()
+    private final @Nullable LongTrie.Node root;  // the leaf values are buckets of alternating weak keys and values
+    private final long sweepKey;  // the stored key at which the next sweep starts
+
+    private WeakMap(@Nullable LongTrie.Node root, long sweepKey)
     {
-        this.data = new WeakHashMap<>();
+        this.root = root;
+        this.sweepKey = sweepKey;
     }
 
-    private WeakMap(@NotNull Map<? extends K,? extends V> initialBindings)
+    /**
+      A weak reference to a key that caches the hash code of the key.
+    */
+
+    private static final class WeakKey
+      extends WeakReference<Object>
     {
-        data = new WeakHashMap<>(initialBindings);
+        public final int hash;
+
+        public WeakKey(@NotNull Object key)
+        {
+            super(key);
+            this.hash = key.hashCode();
+        }
+
+        public boolean matches(@NotNull Object key)
+        {
+            Object k = get();
+            return k != null && (k == key || k.equals(key));
+        }
     }
 
     @Override
     public @NotNull IIterator<Binding<K,V>> iterator()
     {
-        return IMapBindingIterator.create(this);
+        return new MyIterator();
     }
 
     @Override
     public boolean isEmpty()
     {
-        return data.isEmpty();
+        return find((k, v) -> Boolean.TRUE, null) == null;
     }
 
     @Override
     public int size()
     {
-        return data.size();
+        int count = 0;
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                if (((WeakKey) bucket[i]).get() != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
     }
 
     @Override
     public @Nullable V get(@NotNull K key)
     {
-        return data.get(key);
+        Object[] bucket = (Object[]) LongTrie.get(root, key.hashCode());
+        if (bucket != null) {
+            for (int i = 0; i < bucket.length; i += 2) {
+                if (((WeakKey) bucket[i]).matches(key)) {
+                    return (V) bucket[i + 1];
+                }
+            }
+        }
+        return null;
     }
 
     @Override
     public boolean containsKey(@NotNull Object key)
     {
-        return data.containsKey(key);
+        return get((K) key) != null;
     }
 
     @Override
     public void visit(@NotNull Visitor<K,V> visitor)
     {
-        for (Map.Entry<K,V> entry : data.entrySet()) {
-            visitor.visit(entry.getKey(), entry.getValue());
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                Object key = ((WeakKey) bucket[i]).get();
+                if (key != null) {
+                    visitor.visit((K) key, (V) bucket[i + 1]);
+                }
+            }
         }
     }
 
     @Override
     public <R> @Nullable R find(@NotNull FVisitor<K,V,R> visitor, @Nullable R defaultResult)
     {
-        for (Map.Entry<K,V> entry : data.entrySet()) {
-            R result = visitor.visit(entry.getKey(), entry.getValue());
-            if (result != null) {
-                return result;
+        LongTrie.LeafIterator it = new LongTrie.LeafIterator(root);
+        while (it.hasNext()) {
+            Object[] bucket = (Object[]) it.next().value;
+            for (int i = 0; i < bucket.length; i += 2) {
+                Object key = ((WeakKey) bucket[i]).get();
+                if (key != null) {
+                    R result = visitor.visit((K) key, (V) bucket[i + 1]);
+                    if (result != null) {
+                        return result;
+                    }
+                }
             }
         }
         return defaultResult;
@@ -106,38 +186,116 @@ public @Immutable class WeakMap<K,V>
     @Override
     public @NotNull ISet<K> keySet()
     {
-        return ISet.create(data.keySet());
+        SetBuilder<K> b = ISet.builder();
+        visit((k, v) -> b.add(k));
+        return b.values();
     }
 
     @Override
     public @NotNull ISet<V> values()
     {
-        return ISet.create(data.values());
+        SetBuilder<V> b = ISet.builder();
+        visit((k, v) -> b.add(v));
+        return b.values();
     }
 
     @Override
-    public @NotNull IMap<K,V> extending(@NotNull K key, @Nullable V value)
+    public @NotNull WeakMap<K,V> extending(@NotNull K key, @Nullable V value)
     {
-        V existingValue = data.get(key);
-        if (VObjects.equals(existingValue, value)) {
+        if (value != null ? value.equals(get(key)) : !containsKey(key)) {
             return this;
-        } else {
-            WeakMap<K,V> result = new WeakMap<>(data);
-            if (value != null) {
-                result.data.put(key, value);
-            } else {
-                result.data.remove(key);
+        }
+
+        int hash = key.hashCode();
+        Object[] bucket = (Object[]) LongTrie.get(root, hash);
+        Object[] newBucket = updateBucket(bucket, key, value);
+        LongTrie.Node newRoot = LongTrie.with(root, hash, newBucket);
+
+        long nextSweepKey = sweepKey;
+        for (int i = 0; i < SWEEP_COUNT && newRoot != null; i++) {
+            LongTrie.Leaf leaf = LongTrie.getCeiling(newRoot, nextSweepKey);
+            if (leaf == null) {
+                leaf = LongTrie.getFirst(newRoot);
+                assert leaf != null;
             }
-            return result;
+            Object[] sweptBucket = removeCleared((Object[]) leaf.value);
+            if (sweptBucket != leaf.value) {
+                newRoot = LongTrie.with(newRoot, LongTrie.toStoredKey(leaf.key), sweptBucket);
+            }
+            nextSweepKey = leaf.key + 1;
         }
+
+        return newRoot != null ? new WeakMap<>(newRoot, nextSweepKey) : empty();
     }
 
     @Override
-    public @NotNull IMap<K,V> extending(@NotNull IMap<K,V> delta)
+    public @NotNull WeakMap<K,V> extending(@NotNull IMap<K,V> delta)
     {
-        Map<K,V> result = new WeakHashMap<>(data);
-        delta.visit(result::put);
-        return new WeakMap<>(result);
+        WeakMap<K,V> result = this;
+        for (Binding<K,V> b : delta) {
+            result = result.extending(b.getKey(), b.getValue());
+        }
+        return result;
+    }
+
+    /**
+      Return a bucket with the binding of a key replaced or removed. Cleared entries are dropped.
+      @return the new bucket, or null if the bucket would be empty.
+    */
+
+    private static @Nullable Object @Nullable [] updateBucket(@Nullable Object @Nullable [] bucket,
+                                                             @NotNull Object key,
+                                                             @Nullable Object value)
+    {
+        int length = bucket != null ? bucket.length : 0;
+        Object[] newBucket = new Object[length + 2];
+        int count = 0;
+        for (int i = 0; i < length; i += 2) {
+            WeakKey k = (WeakKey) bucket[i];
+            if (k.get() != null && !k.matches(key)) {
+                newBucket[count++] = k;
+                newBucket[count++] = bucket[i + 1];
+            }
+        }
+        if (value != null) {
+            newBucket[count++] = new WeakKey(key);
+            newBucket[count++] = value;
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (count < newBucket.length) {
+            Object[] trimmed = new Object[count];
+            System.arraycopy(newBucket, 0, trimmed, 0, count);
+            return trimmed;
+        }
+        return newBucket;
+    }
+
+    /**
+      Return a bucket without the entries whose keys have been collected.
+      @return the bucket, if it has no such entries, otherwise a new bucket, or null if the bucket would be empty.
+    */
+
+    private static @Nullable Object @Nullable [] removeCleared(@NotNull Object @NotNull [] bucket)
+    {
+        Object[] newBucket = new Object[bucket.length];
+        int count = 0;
+        for (int i = 0; i < bucket.length; i += 2) {
+            if (((WeakKey) bucket[i]).get() != null) {
+                newBucket[count++] = bucket[i];
+                newBucket[count++] = bucket[i + 1];
+            }
+        }
+        if (count == bucket.length) {
+            return bucket;
+        }
+        if (count == 0) {
+            return null;
+        }
+        Object[] trimmed = new Object[count];
+        System.arraycopy(newBucket, 0, trimmed, 0, count);
+        return trimmed;
     }
 
     @Override
@@ -164,4 +322,32 @@ public @Immutable class WeakMap<K,V>
 
         return MapEquality.isEqual(this, otherMap);
     }
+
+    private class MyIterator
+      extends IteratorHelper<Binding<K,V>>
+    {
+        private final @NotNull LongTrie.LeafIterator leaves = new LongTrie.LeafIterator(root);
+        private @Nullable Object @NotNull [] bucket = new Object[0];
+        private int index;
+
+        @Override
+        protected @Nullable Binding<K,V> provide()
+        {
+            for (;;) {
+                while (index < bucket.length) {
+                    int i = index;
+                    index += 2;
+                    Object key = ((WeakKey) bucket[i]).get();
+                    if (key != null) {
+                        return Binding.create((K) key, (V) bucket[i + 1]);
+                    }
+                }
+                if (!leaves.hasNext()) {
+                    return null;
+                }
+                bucket = (Object[]) leaves.next().value;
+                index = 0;
+            }
+        }
+    }
 }
@@ -77,6 +77,34 @@ public class RRBVectorIterator<V>
         return result;
     }
 
+    /**
+      Transfer the next elements of the iteration into an array. Elements are copied one leaf block at a time.
+      @param dest The array to receive the elements.
+      @param offset The index in {@code dest} where the first element is stored.
+      @param max The maximum number of elements to transfer.
+      @return the number of elements transferred.
+    */
+
+    public int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+    {
+        if (offset < 0 || max < 0 || offset > dest.length - max) {
+            throw new IndexOutOfBoundsException();
+        }
+        int count = 0;
+        while (count < max && _hasNext) {
+            int _lo = lo;
+            int n = Math.min(endLo - _lo, max - count);
+            System.arraycopy(display1, _lo, dest, offset + count, n);
+            count += n;
+            _lo += n;
+            lo = _lo;
+            if (_lo == endLo) {
+                gotoNextBlock();
+            }
+        }
+        return count;
+    }
+
     private void gotoNextBlock()
     {
         int oldBlockIndex = blockIndex;
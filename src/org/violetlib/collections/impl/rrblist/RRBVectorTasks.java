@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2023 Alan Snyder.
+ * All rights reserved.
+ *
+ * You may not use, copy or modify this file, except in compliance with the license agreement. For details see
+ * accompanying license terms.
+ */
+
+package org.violetlib.collections.impl.rrblist;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+import org.violetlib.collections.FindVisitor;
+import org.violetlib.types.UndefinedValueError;
+
+import org.jetbrains.annotations.*;
+import org.violetlib.annotations.NoInstances;
+
+import static org.violetlib.collections.impl.rrblist.RRBVectorConstants.*;
+
+/**
+  Fork/join operations on relaxed radix balanced vectors. The work is divided on node boundaries. Each subtree at
+  level {@link #SEQUENTIAL_LEVEL} or below (at most {@code WIDTH2} elements) is processed sequentially by a single task.
+*/
+
+public final @NoInstances class RRBVectorTasks
+{
+    private RRBVectorTasks()
+    {
+        throw new AssertionError("RRBVectorTasks may not be instantiated");
+    }
+
+    /**
+      The highest level of a subtree that is processed by a single task.
+    */
+
+    public static final int SEQUENTIAL_LEVEL = 2;
+
+    /**
+      Map the elements of a non-empty vector in parallel.
+      @param v The source vector.
+      @param mapper The mapper. The mapper must not return null. It may be invoked concurrently on multiple threads.
+      @param pool The pool used to run the tasks.
+      @return the root of a tree that has the same shape as the tree of {@code v} and contains the mapped elements.
+      Size tables are shared with the source tree.
+    */
+
+    public static <V,R> Object @NotNull [] map(@NotNull RRBVector<V> v,
+                                               @NotNull Function<@NotNull V,@NotNull R> mapper,
+                                               @NotNull ForkJoinPool pool)
+    {
+        assert v.endIndex > 0;
+        return pool.invoke(new MapTask<>(mapper, v.root, v.depth));
+    }
+
+    /**
+      Map the elements of a non-empty vector in parallel, discarding null results.
+      @param v The source vector.
+      @param mapper The mapper. It may be invoked concurrently on multiple threads.
+      @param pool The pool used to run the tasks.
+      @return a vector containing the non-null results of the mapper, in the order of the source elements. The partial
+      results of the subtasks are concatenated.
+    */
+
+    public static <V,R> @NotNull RRBVector<R> mapFilter(@NotNull RRBVector<V> v,
+                                                        @NotNull Function<@NotNull V,@Nullable R> mapper,
+                                                        @NotNull ForkJoinPool pool)
+    {
+        assert v.endIndex > 0;
+        return pool.invoke(new MapFilterTask<>(mapper, v.root, v.depth));
+    }
+
+    /**
+      Visit the elements of a vector in parallel until the visitor returns a non-null result.
+      @param v The source vector.
+      @param visitor The visitor. It may be invoked concurrently on multiple threads.
+      @param pool The pool used to run the tasks.
+      @return the non-null result returned by the visitor for the element with the lowest index, or null if none.
+      Subtrees that follow an element for which a result has been found are skipped.
+    */
+
+    public static <V,R> @Nullable R find(@NotNull RRBVector<V> v,
+                                         @NotNull FindVisitor<V,R> visitor,
+                                         @NotNull ForkJoinPool pool)
+    {
+        if (v.endIndex == 0) {
+            return null;
+        }
+        FindState<R> state = new FindState<>();
+        pool.invoke(new FindTask<>(visitor, state, v.root, v.depth, 0, v.endIndex));
+        return state.result;
+    }
+
+    private static <V,R> Object @NotNull [] mapBlock(@NotNull Function<@NotNull V,@NotNull R> mapper,
+                                                     Object @NotNull [] block,
+                                                     int level)
+    {
+        int blockLength = block.length;
+        Object[] resultBlock = new Object[blockLength];
+        if (level == 1) {
+            for (int offset = 0; offset < blockLength; offset++) {
+                R result = mapper.apply((V) block[offset]);
+                if (result == null) {
+                    throw UndefinedValueError.create("Mapper must not return null");
+                }
+                resultBlock[offset] = result;
+            }
+        } else {
+            for (int offset = 0; offset < blockLength - 1; offset++) {
+                resultBlock[offset] = mapBlock(mapper, (Object[]) block[offset], level - 1);
+            }
+            resultBlock[blockLength - 1] = block[blockLength - 1];
+        }
+        return resultBlock;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class MapTask<V,R>
+      extends RecursiveTask<Object[]>
+    {
+        private final @NotNull Function<@NotNull V,@NotNull R> mapper;
+        private final Object @NotNull [] block;
+        private final int level;
+
+        public MapTask(@NotNull Function<@NotNull V,@NotNull R> mapper, Object @NotNull [] block, int level)
+        {
+            this.mapper = mapper;
+            this.block = block;
+            this.level = level;
+        }
+
+        @Override
+        protected Object @NotNull [] compute()
+        {
+            if (level <= SEQUENTIAL_LEVEL) {
+                return mapBlock(mapper, block, level);
+            }
+            int childCount = block.length - 1;
+            MapTask<V,R>[] tasks = (MapTask<V,R>[]) new MapTask<?,?>[childCount];
+            for (int offset = 0; offset < childCount; offset++) {
+                tasks[offset] = new MapTask<>(mapper, (Object[]) block[offset], level - 1);
+            }
+            invokeAll(tasks);
+            Object[] resultBlock = new Object[block.length];
+            for (int offset = 0; offset < childCount; offset++) {
+                resultBlock[offset] = tasks[offset].join();
+            }
+            resultBlock[childCount] = block[childCount];
+            return resultBlock;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class MapFilterTask<V,R>
+      extends RecursiveTask<RRBVector<R>>
+    {
+        private final @NotNull Function<@NotNull V,@Nullable R> mapper;
+        private final Object @NotNull [] block;
+        private final int level;
+
+        public MapFilterTask(@NotNull Function<@NotNull V,@Nullable R> mapper, Object @NotNull [] block, int level)
+        {
+            this.mapper = mapper;
+            this.block = block;
+            this.level = level;
+        }
+
+        @Override
+        protected @NotNull RRBVector<R> compute()
+        {
+            MutableRRBVector<R> result = MutableRRBVector.create();
+            if (level <= SEQUENTIAL_LEVEL) {
+                Object[] buffer = new Object[WIDTH];
+                mapFilterBlock(result, buffer, block, level);
+                return result.asBasic();
+            }
+            int childCount = block.length - 1;
+            MapFilterTask<V,R>[] tasks = (MapFilterTask<V,R>[]) new MapFilterTask<?,?>[childCount];
+            for (int offset = 0; offset < childCount; offset++) {
+                tasks[offset] = new MapFilterTask<>(mapper, (Object[]) block[offset], level - 1);
+            }
+            invokeAll(tasks);
+            for (MapFilterTask<V,R> task : tasks) {
+                result.appendAll(task.join());
+            }
+            return result.asBasic();
+        }
+
+        private void mapFilterBlock(@NotNull MutableRRBVector<R> result,
+                                    Object @NotNull [] buffer,
+                                    Object @NotNull [] block,
+                                    int level)
+        {
+            if (level == 1) {
+                int count = 0;
+                for (Object element : block) {
+                    R value = mapper.apply((V) element);
+                    if (value != null) {
+                        buffer[count++] = value;
+                    }
+                }
+                if (count == buffer.length) {
+                    // appendArray copies the elements, so the buffer can be reused
+                    result.appendArray(buffer);
+                } else if (count > 0) {
+                    result.appendArray(copyOf(buffer, count));
+                }
+            } else {
+                for (int offset = 0; offset < block.length - 1; offset++) {
+                    mapFilterBlock(result, buffer, (Object[]) block[offset], level - 1);
+                }
+            }
+        }
+
+        private static Object @NotNull [] copyOf(Object @NotNull [] buffer, int count)
+        {
+            Object[] a = new Object[count];
+            System.arraycopy(buffer, 0, a, 0, count);
+            return a;
+        }
+    }
+
+    /**
+      The shared state of a parallel find operation. The result with the lowest index wins. Tasks whose elements all
+      follow that index are abandoned.
+    */
+
+    private static final class FindState<R>
+    {
+        volatile int bestIndex = Integer.MAX_VALUE;
+        @Nullable R result;
+
+        synchronized void offer(int index, @NotNull R value)
+        {
+            if (index < bestIndex) {
+                result = value;
+                bestIndex = index;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class FindTask<V,R>
+      extends RecursiveAction
+    {
+        private final @NotNull FindVisitor<V,R> visitor;
+        private final @NotNull FindState<R> state;
+        private final Object @NotNull [] block;
+        private final int level;
+        private final int firstIndexInBlock;
+        private final int endIndex;
+
+        public FindTask(@NotNull FindVisitor<V,R> visitor,
+                        @NotNull FindState<R> state,
+                        Object @NotNull [] block,
+                        int level,
+                        int firstIndexInBlock,
+                        int endIndex)
+        {
+            this.visitor = visitor;
+            this.state = state;
+            this.block = block;
+            this.level = level;
+            this.firstIndexInBlock = firstIndexInBlock;
+            this.endIndex = endIndex;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (firstIndexInBlock >= state.bestIndex) {
+                return;
+            }
+            if (level <= SEQUENTIAL_LEVEL) {
+                findInBlock(block, level, firstIndexInBlock);
+                return;
+            }
+            int childCount = block.length - 1;
+            int[] sizes = getSizes(level, block);
+            int fixedSubtreeSize = getMaximumTreeSize(level - 1);
+            FindTask<V,R>[] tasks = (FindTask<V,R>[]) new FindTask<?,?>[childCount];
+            int firstIndexInSubtree = firstIndexInBlock;
+            for (int offset = 0; offset < childCount; offset++) {
+                Object[] subtree = (Object[]) block[offset];
+                tasks[offset] = new FindTask<>(visitor, state, subtree, level - 1, firstIndexInSubtree, endIndex);
+                firstIndexInSubtree += sizes != null ? getSubtreeSize(sizes, offset) : fixedSubtreeSize;
+            }
+            invokeAll(tasks);
+        }
+
+        /**
+          Sequentially search a subtree.
+          @return true if the search should stop.
+        */
+
+        private boolean findInBlock(Object @NotNull [] block, int level, int firstIndexInBlock)
+        {
+            if (firstIndexInBlock >= state.bestIndex) {
+                return true;
+            }
+            if (level == 1) {
+                for (int offset = 0; offset < block.length; offset++) {
+                    int index = firstIndexInBlock + offset;
+                    if (index >= endIndex) {
+                        return true;
+                    }
+                    R result = visitor.visit((V) block[offset]);
+                    if (result != null) {
+                        state.offer(index, result);
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int childCount = block.length - 1;
+            int[] sizes = getSizes(level, block);
+            int fixedSubtreeSize = getMaximumTreeSize(level - 1);
+            int firstIndexInSubtree = firstIndexInBlock;
+            for (int offset = 0; offset < childCount; offset++) {
+                if (findInBlock((Object[]) block[offset], level - 1, firstIndexInSubtree)) {
+                    return true;
+                }
+                firstIndexInSubtree += sizes != null ? getSubtreeSize(sizes, offset) : fixedSubtreeSize;
+            }
+            return false;
+        }
+    }
+}
@@ -8,7 +8,6 @@
 
 package org.violetlib.collections.impl.treelist;
 
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.NoSuchElementException;
 import java.util.function.Function;
@@ -19,6 +18,8 @@ import org.violetlib.collections.IIterator;
 import org.violetlib.collections.IList;
 import org.violetlib.collections.ListBuilder;
 import org.violetlib.collections.Visitor;
+import org.violetlib.collections.impl.CollectionsUtils;
+import org.violetlib.collections.impl.SortSupport;
 import org.violetlib.util.Extensions;
 
 import org.jetbrains.annotations.*;
@@ -264,12 +265,7 @@ public final class TreeList1<V>
         if (newSize <= MAXIMUM_SIZE) {
             Object[] newElements = new Object[size + addedCount];
             System.arraycopy(elements, 0, newElements, 0, size);
-            int[] indexCell = new int[1];
-            indexCell[0] = size;
-            values.visit(v -> {
-                int index = indexCell[0]++;
-                newElements[index] = v;
-            });
+            CollectionsUtils.copyElements(values, newElements, size);
             return createWithPrivateArray(newElements);
         } else {
             ListBuilder<V> b = TreeListBuilder.create();
@@ -364,8 +360,8 @@ public final class TreeList1<V>
     @Override
     public @NotNull IList<V> sort(@NotNull Comparator<? super V> c)
     {
-        Object[] resultElements = toJavaArray(new Object[size]);
-        Arrays.sort(resultElements);
+        V[] resultElements = (V[]) toJavaArray(new Object[size]);
+        SortSupport.sort(resultElements, c);
         return new TreeList1<>(resultElements);
     }
 
@@ -24,6 +24,7 @@ import org.violetlib.collections.impl.ListEquality;
 import org.violetlib.collections.impl.ListImplSupport;
 import org.violetlib.collections.impl.ListOperations;
 import org.violetlib.collections.impl.ListReverseImpl;
+import org.violetlib.collections.impl.SortSupport;
 import org.violetlib.util.Extensions;
 
 import org.jetbrains.annotations.*;
@@ -75,15 +76,14 @@ public abstract class TreeListSlicesImpl<V>
     @Override
     public int indexOf(@NotNull Object element)
     {
-        Integer index = internalFind(ListImplSupport.createIndexOfVisitor(element));
-        return index != null ? index : -1;
+        TreeSliceFinder finder = TreeSliceFinder.get();
+        return finder.indexOf(this, element);
     }
 
     @Override
     public boolean contains(@NotNull Object element)
     {
-        Integer index = internalFind(ListImplSupport.createIndexOfVisitor(element));
-        return index != null;
+        return indexOf(element) >= 0;
     }
 
     @Override
@@ -163,7 +163,7 @@ public abstract class TreeListSlicesImpl<V>
     public @NotNull IList<V> sort(@NotNull Comparator<? super V> c)
     {
         List<V> list = toJavaList();
-        list.sort(c);
+        SortSupport.sort(list, c);
         return TreeList.fromList(list);
     }
 
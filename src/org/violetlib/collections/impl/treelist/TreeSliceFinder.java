@@ -139,6 +139,27 @@ public final @Immutable class TreeSliceFinder
         }
     }
 
+    /**
+      Return the index of the first element equal to the specified target.
+      @return the index, or -1 if no element is equal to the target.
+    */
+
+    public int indexOf(@NotNull TreeSlices slices, @NotNull Object target)
+    {
+        int sliceCount = slices.getSliceCount();
+        int firstIndexInSlice = 0;
+        for (int sn = 0; sn < sliceCount; sn++) {
+            Object[] top = slices.getSlice(sn);
+            int depth = slices.getSliceDepth(sn);
+            int result = indexOfInSlice(top, depth, target);
+            if (result >= 0) {
+                return firstIndexInSlice + result;
+            }
+            firstIndexInSlice += -result - 1;
+        }
+        return -1;
+    }
+
     public <V,R> @Nullable R find(@NotNull TreeSlices slices, int size, @NotNull FindVisitor<V,R> visitor)
     {
         int sliceCount = slices.getSliceCount();
@@ -195,6 +216,36 @@ public final @Immutable class TreeSliceFinder
         return null;
     }
 
+    /**
+      Search a slice for an element.
+      @return the index of the element in the slice if found, otherwise the negative of one more than the number of
+      elements in the slice.
+    */
+
+    private int indexOfInSlice(@NotNull Object[] top, int depth, @NotNull Object target)
+    {
+        if (depth == 1) {
+            int count = top.length;
+            for (int i = 0; i < count; i++) {
+                if (top[i].equals(target)) {
+                    return i;
+                }
+            }
+            return -count - 1;
+        }
+        int firstIndexInNode = 0;
+        if (depth > 1) {
+            for (Object o : top) {
+                int result = indexOfInSlice((Object[]) o, depth-1, target);
+                if (result >= 0) {
+                    return firstIndexInNode + result;
+                }
+                firstIndexInNode += -result - 1;
+            }
+        }
+        return -firstIndexInNode - 1;
+    }
+
     private <V,R> @Nullable R findInSlice(@NotNull Object[] top, int depth, @NotNull FindVisitor<V,R> visitor)
     {
         if (depth == 1) {
@@ -93,6 +93,25 @@ public final class TreeSliceIterator<V>
         return (V) currentLeaf[currentIndexInLeaf++];
     }
 
+    @Override
+    public int nextBatch(@Nullable Object @NotNull [] dest, int offset, int max)
+    {
+        if (offset < 0 || max < 0 || offset > dest.length - max) {
+            throw new IndexOutOfBoundsException();
+        }
+        int count = 0;
+        while (count < max && hasNext()) {
+            if (currentIndexInLeaf == currentLeafSize) {
+                advance();
+            }
+            int n = Math.min(currentLeafSize - currentIndexInLeaf, max - count);
+            System.arraycopy(currentLeaf, currentIndexInLeaf, dest, offset + count, n);
+            currentIndexInLeaf += n;
+            count += n;
+        }
+        return count;
+    }
+
     private void advance()
     {
         int elementsBeforeCurrentLeaf = size - remainingSizeFromCurrentLeaf;